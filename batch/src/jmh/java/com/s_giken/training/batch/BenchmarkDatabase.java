@@ -0,0 +1,148 @@
+package com.s_giken.training.batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * ベンチマーク用のアプリケーションコンテキストと合成データを用意するクラス
+ *
+ * H2 Databaseに、指定した件数の有効な加入者・料金を作成する。
+ * 加入者数がIN_MEMORY_MAX_MEMBERSを超える場合は、請求データでヒープが不足しないように、
+ * メモリ内ではなく一時ディレクトリのファイルにデータベースを作成する(終了時に削除する)。
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+	static final Date DATE = Date.valueOf("2023-04-01");
+	static final Date LAST_DATE = Date.valueOf("2023-04-30");
+
+	/**
+	 * メモリ内のデータベースを使用する加入者数の上限
+	 */
+	static final int IN_MEMORY_MAX_MEMBERS = 100000;
+
+	private static final int INSERT_BATCH_SIZE = 10000;
+	private static final Timestamp START_DATE = Timestamp.valueOf("2020-01-01 00:00:00");
+
+	private final ConfigurableApplicationContext context;
+	private final JdbcTemplate jdbcTemplate;
+	private final Path databaseDir;
+
+	private BenchmarkDatabase(ConfigurableApplicationContext context, Path databaseDir) {
+		this.context = context;
+		this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+		this.databaseDir = databaseDir;
+	}
+
+	/**
+	 * アプリケーションコンテキストを起動し、合成データを作成する
+	 *
+	 * @param memberCount 有効な加入者の件数
+	 * @param chargeCount 有効な料金の件数
+	 * @return ベンチマーク用データベース
+	 */
+	static BenchmarkDatabase start(int memberCount, int chargeCount) {
+		Path databaseDir = null;
+		String[] args = {};
+		if (memberCount > IN_MEMORY_MAX_MEMBERS) {
+			try {
+				databaseDir = Files.createTempDirectory("billingbench");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			//コマンドライン引数で指定し、application-jmh.propertiesのメモリ内のURLより優先させる
+			args = new String[] {"--spring.datasource.url=jdbc:h2:file:"
+					+ databaseDir.resolve("billingbench").toAbsolutePath()};
+		}
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(BatchApplication.class)
+				.web(WebApplicationType.NONE)
+				.profiles("jmh")
+				.run(args);
+		BenchmarkDatabase database = new BenchmarkDatabase(context, databaseDir);
+		database.generate(memberCount, chargeCount);
+		return database;
+	}
+
+	<T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	/**
+	 * 実行中のスレッドがこれまでに確保したヒープの累計バイト数を取得する
+	 */
+	static long currentThreadAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getCurrentThreadAllocatedBytes();
+	}
+
+	private void generate(int memberCount, int chargeCount) {
+		jdbcTemplate.update("DELETE FROM T_MEMBER");
+		jdbcTemplate.update("DELETE FROM T_CHARGE");
+
+		for (int from = 1; from <= memberCount; from += INSERT_BATCH_SIZE) {
+			int offset = from;
+			int size = Math.min(INSERT_BATCH_SIZE, memberCount - from + 1);
+			jdbcTemplate.batchUpdate(
+					"INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (?, ?, ?, ?, ?, ?, NULL, ?)",
+					new BatchPreparedStatementSetter() {
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							int memberId = offset + i;
+							ps.setInt(1, memberId);
+							ps.setInt(2, memberId);
+							ps.setString(3, "member" + memberId + "@s-giken.com");
+							ps.setString(4, "加入者" + memberId);
+							ps.setString(5, "東京都千代田区" + memberId);
+							ps.setTimestamp(6, START_DATE);
+							ps.setInt(7, memberId % 3 + 1);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return size;
+						}
+					});
+		}
+
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO T_CHARGE (charge_id, name, amount, start_date, end_date) VALUES (?, ?, ?, ?, NULL)",
+				new BatchPreparedStatementSetter() {
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setInt(1, i + 1);
+						ps.setString(2, "料金" + (i + 1));
+						ps.setInt(3, 100 * (i + 1));
+						ps.setTimestamp(4, START_DATE);
+					}
+
+					@Override
+					public int getBatchSize() {
+						return chargeCount;
+					}
+				});
+	}
+
+	@Override
+	public void close() {
+		context.close();
+		if (databaseDir != null) {
+			try (Stream<Path> paths = Files.walk(databaseDir)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
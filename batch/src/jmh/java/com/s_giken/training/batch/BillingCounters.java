@@ -0,0 +1,76 @@
+package com.s_giken.training.batch;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ベンチマーク結果に追加で出力するカウンタ
+ */
+public final class BillingCounters {
+	private BillingCounters() {
+	}
+
+	/**
+	 * 1秒あたりに処理した行数(rowsPerSec)・加入者数(membersPerSec)
+	 *
+	 * SingleShotTimeモードでは1回の反復で1回だけ呼び出すため、その呼び出しの処理時間から算出する。
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Rows {
+		private long rows;
+		private long members;
+		private long elapsedNanos;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			rows = 0;
+			members = 0;
+			elapsedNanos = 0;
+		}
+
+		void add(int memberCount, int chargeCount, long nanos) {
+			rows += memberCount + chargeCount;
+			members += memberCount;
+			elapsedNanos += nanos;
+		}
+
+		public double rowsPerSec() {
+			return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+		}
+
+		public double membersPerSec() {
+			return elapsedNanos == 0 ? 0 : members * 1e9 / elapsedNanos;
+		}
+	}
+
+	/**
+	 * 加入者1件あたりのヒープ確保量(バイト)
+	 *
+	 * H2はメモリ内で同じスレッドで動作するため、データベース側の確保量も含む。
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Allocation {
+		private long allocatedBytes;
+		private long memberCount;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			allocatedBytes = 0;
+			memberCount = 0;
+		}
+
+		void add(long bytes, int members) {
+			allocatedBytes += bytes;
+			memberCount += members;
+		}
+
+		public double bytesPerMember() {
+			return memberCount == 0 ? 0 : (double) allocatedBytes / memberCount;
+		}
+	}
+}
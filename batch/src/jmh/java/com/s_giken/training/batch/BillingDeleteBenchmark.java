@@ -0,0 +1,74 @@
+package com.s_giken.training.batch;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.BillingProperties.MonthStorage;
+
+/**
+ * 未確定請求情報の削除処理のベンチマーク
+ *
+ * 保存先(共有テーブル/月別パーティション)ごとに、1か月分の請求データ・請求明細データを削除する。
+ * 1回の反復で1か月分を1回だけ削除し(SingleShotTime)、削除する請求データの作成は反復の前に行う(計測に含めない)。
+ * 加入者数の既定値は10万件まで(100万件以上は-p memberCount=1000000のように指定する。BenchmarkDatabase参照)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BillingDeleteBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int memberCount;
+
+	@Param({"3", "10"})
+	public int chargeCount;
+
+	@Param({"SHARED", "PARTITIONED"})
+	public MonthStorage monthStorage;
+
+	private BenchmarkDatabase database;
+	private BatchApplication batchApplication;
+	private SqlBillingEngine sqlBillingEngine;
+	private countInsertBillingDataAndDetailData createdCount;
+
+	@Setup(Level.Trial)
+	public void startDatabase() {
+		database = BenchmarkDatabase.start(memberCount, chargeCount);
+		database.getBean(BillingProperties.class).setMonthStorage(monthStorage);
+		batchApplication = database.getBean(BatchApplication.class);
+		sqlBillingEngine = database.getBean(SqlBillingEngine.class);
+	}
+
+	@Setup(Level.Iteration)
+	public void createMonth() {
+		batchApplication.deleteBillingData(BenchmarkDatabase.DATE);
+		batchApplication.insertBillingStatus(BenchmarkDatabase.DATE);
+		createdCount = sqlBillingEngine.insertBillingDataAndDetailData(BenchmarkDatabase.DATE,
+				BenchmarkDatabase.LAST_DATE);
+	}
+
+	@Benchmark
+	public void deleteBillingData(BillingCounters.Rows rows,
+			BillingCounters.Allocation allocation) {
+		long allocatedBytes = BenchmarkDatabase.currentThreadAllocatedBytes();
+		long startedAt = System.nanoTime();
+		batchApplication.deleteBillingData(BenchmarkDatabase.DATE);
+		long elapsedNanos = System.nanoTime() - startedAt;
+		allocation.add(BenchmarkDatabase.currentThreadAllocatedBytes() - allocatedBytes,
+				createdCount.getMemberCount());
+		rows.add(createdCount.getMemberCount(), createdCount.getChargeCount(), elapsedNanos);
+	}
+
+	@TearDown(Level.Trial)
+	public void stopDatabase() {
+		database.close();
+	}
+}
@@ -0,0 +1,75 @@
+package com.s_giken.training.batch;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.BillingProperties.Engine;
+
+/**
+ * 請求データ・請求明細データの作成処理のベンチマーク
+ *
+ * 請求データの作成方式(JAVA/SQL)ごとに、1か月分の請求データ・請求明細データを作成する。
+ * 1回の反復で1か月分を1回だけ作成し(SingleShotTime)、請求年月の削除と請求ステータスの追加は反復の前に行う(計測に含めない)。
+ * 加入者数の既定値は10万件まで(100万件以上は-p memberCount=1000000のように指定する。BenchmarkDatabase参照)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BillingInsertBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int memberCount;
+
+	@Param({"3", "10"})
+	public int chargeCount;
+
+	@Param({"JAVA", "SQL"})
+	public Engine engine;
+
+	private BenchmarkDatabase database;
+	private BatchApplication batchApplication;
+	private SqlBillingEngine sqlBillingEngine;
+
+	@Setup(Level.Trial)
+	public void startDatabase() {
+		database = BenchmarkDatabase.start(memberCount, chargeCount);
+		batchApplication = database.getBean(BatchApplication.class);
+		sqlBillingEngine = database.getBean(SqlBillingEngine.class);
+	}
+
+	@Setup(Level.Iteration)
+	public void prepareMonth() {
+		batchApplication.deleteBillingData(BenchmarkDatabase.DATE);
+		batchApplication.insertBillingStatus(BenchmarkDatabase.DATE);
+	}
+
+	@Benchmark
+	public countInsertBillingDataAndDetailData insertBillingDataAndDetailData(
+			BillingCounters.Rows rows, BillingCounters.Allocation allocation) {
+		long allocatedBytes = BenchmarkDatabase.currentThreadAllocatedBytes();
+		long startedAt = System.nanoTime();
+		countInsertBillingDataAndDetailData count = engine == Engine.SQL
+				? sqlBillingEngine.insertBillingDataAndDetailData(BenchmarkDatabase.DATE,
+						BenchmarkDatabase.LAST_DATE)
+				: batchApplication.insertBillingDataAndDetailData(BenchmarkDatabase.DATE,
+						BenchmarkDatabase.LAST_DATE);
+		long elapsedNanos = System.nanoTime() - startedAt;
+		allocation.add(BenchmarkDatabase.currentThreadAllocatedBytes() - allocatedBytes,
+				count.getMemberCount());
+		rows.add(count.getMemberCount(), count.getChargeCount(), elapsedNanos);
+		return count;
+	}
+
+	@TearDown(Level.Trial)
+	public void stopDatabase() {
+		database.close();
+	}
+}
@@ -1,33 +1,93 @@
 package com.s_giken.training.batch;
 
-import java.time.LocalDate;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.transaction.annotation.Transactional;
-import java.sql.Timestamp;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.s_giken.training.batch.BillingProperties.DetailStorage;
+import com.s_giken.training.batch.BillingProperties.Engine;
+import com.s_giken.training.batch.BillingProperties.MonthStorage;
+import com.s_giken.training.batch.BillingProperties.ReadMode;
+import com.s_giken.training.common.StartupTimelineReporter;
 import java.sql.Date;
 import java.time.DateTimeException;
 
 
 @SpringBootApplication
+@EnableConfigurationProperties(BillingProperties.class)
+@Import(StartupTimelineReporter.class)
 public class BatchApplication implements CommandLineRunner {
+	private static final String RESUME_OPTION = "--resume";
+	private static final String DELTA_OPTION = "--delta";
+	private static final String EXPORT_OPTION = "--export";
+	private static final List<String> OPTIONS = List.of(RESUME_OPTION, DELTA_OPTION, EXPORT_OPTION);
 	private final Logger logger = LoggerFactory.getLogger(BatchApplication.class);
 	private final JdbcTemplate jdbcTemplate;
+	private final BillingProperties billingProperties;
+	private final SqlBillingEngine sqlBillingEngine;
+	private final ChargeSetStore chargeSetStore;
+	private final ChargeCatalog chargeCatalog;
+	private final BillingPartitionManager billingPartitionManager;
+	private final BillingMetrics billingMetrics;
+	private final BillingRunSummary billingRunSummary;
+	private final BillingExporter billingExporter;
+	private final PartitionedBillingExecutor partitionedBillingExecutor;
+	private final ChunkedBillingExecutor chunkedBillingExecutor;
+	private final DeltaBillingExecutor deltaBillingExecutor;
+	private final PipelinedMemberReader pipelinedMemberReader;
+	private final TransactionTemplate transactionTemplate;
 
 
 	public static void main(String[] args) {
-		SpringApplication.run(BatchApplication.class, args);
+		SpringApplication application = new SpringApplication(BatchApplication.class);
+		//起動処理の各ステップの所要時間を記録する(StartupTimelineReporterで出力)
+		application.setApplicationStartup(
+				new BufferingApplicationStartup(StartupTimelineReporter.STARTUP_STEP_CAPACITY));
+		application.run(args);
 	}
 
-	public BatchApplication(JdbcTemplate jdbcTemplate) {
+	public BatchApplication(JdbcTemplate jdbcTemplate, BillingProperties billingProperties,
+			SqlBillingEngine sqlBillingEngine, ChargeSetStore chargeSetStore,
+			ChargeCatalog chargeCatalog, BillingPartitionManager billingPartitionManager,
+			BillingMetrics billingMetrics, BillingRunSummary billingRunSummary,
+			BillingExporter billingExporter,
+			PartitionedBillingExecutor partitionedBillingExecutor,
+			ChunkedBillingExecutor chunkedBillingExecutor,
+			DeltaBillingExecutor deltaBillingExecutor,
+			PipelinedMemberReader pipelinedMemberReader,
+			TransactionTemplate transactionTemplate) {
 		this.jdbcTemplate = jdbcTemplate;
+		this.billingProperties = billingProperties;
+		this.sqlBillingEngine = sqlBillingEngine;
+		this.chargeSetStore = chargeSetStore;
+		this.chargeCatalog = chargeCatalog;
+		this.billingPartitionManager = billingPartitionManager;
+		this.billingMetrics = billingMetrics;
+		this.billingRunSummary = billingRunSummary;
+		this.billingExporter = billingExporter;
+		this.partitionedBillingExecutor = partitionedBillingExecutor;
+		this.chunkedBillingExecutor = chunkedBillingExecutor;
+		this.deltaBillingExecutor = deltaBillingExecutor;
+		this.pipelinedMemberReader = pipelinedMemberReader;
+		this.transactionTemplate = transactionTemplate;
 	}
 
 
@@ -40,6 +100,29 @@ public class BatchApplication implements CommandLineRunner {
 	}
 
 	public void deleteBillingData(Date date) {
+		//月別パーティションが存在する場合は、テーブルごと削除
+		billingPartitionManager.dropPartition(date);
+
+		//共有テーブルの請求明細データ・請求データ・チェックポイントを削除
+		deleteSharedBillingData(date);
+
+		//請求明細データの料金セットから該当する請求年月のレコードを削除
+		chargeSetStore.deleteByBillingYm(date);
+
+		//請求データ状況から該当する請求年月のレコードを削除
+		jdbcTemplate.update("DELETE FROM T_BILLING_STATUS WHERE billing_ym = ?",
+				date);
+	}
+
+	/**
+	 * 共有テーブルから請求年月の請求明細データ・請求データと、請求データ作成チェックポイントを削除する
+	 *
+	 * 月別パーティションに作成し直す場合は、公開中の月別パーティションと、それが参照する請求データ状況・料金セットを
+	 * 残したまま(公開の切り替えまで参照できるように)、このメソッドのみで未確定請求情報を削除する。
+	 *
+	 * @param date 請求年月(月初日)
+	 */
+	private void deleteSharedBillingData(Date date) {
 		//請求明細データから該当する請求年月のレコードを削除
 		jdbcTemplate.update("DELETE FROM T_BILLING_DETAIL_DATA WHERE billing_ym = ?",
 				date);
@@ -48,20 +131,22 @@ public class BatchApplication implements CommandLineRunner {
 		jdbcTemplate.update("DELETE FROM T_BILLING_DATA WHERE billing_ym = ?",
 				date);
 
-		//請求データ状況から該当する請求年月のレコードを削除
-		jdbcTemplate.update("DELETE FROM T_BILLING_STATUS WHERE billing_ym = ?",
+		//請求データ作成チェックポイントから該当する請求年月のレコードを削除
+		jdbcTemplate.update("DELETE FROM T_BILLING_CHECKPOINT WHERE billing_ym = ?",
 				date);
 	}
 
 	public int insertBillingStatus(Date date) {
-		//請求データ状況に入力された請求年月と確定状況falseのレコードを挿入
+		//請求データ状況に入力された請求年月と確定状況falseのレコードを挿入(月別パーティションに作成し直す場合は
+		//公開中の月別パーティションが参照するレコードが残っているため、作成日時を更新する)
+		//作成日時は差分更新で前回作成後に変更された加入者・料金を判定するために使用
 		int statusCount = jdbcTemplate.update(
-				"INSERT INTO T_BILLING_STATUS(billing_ym, is_commit) VALUES (?, ?)",
+				"MERGE INTO T_BILLING_STATUS(billing_ym, is_commit, generated_at) KEY(billing_ym) VALUES (?, ?, CURRENT_TIMESTAMP)",
 				date, false);
 		return statusCount;
 	}
 
-	public class countInsertBillingDataAndDetailData {
+	public static class countInsertBillingDataAndDetailData {
 		private int memberCount;
 		private int chargeCount;
 
@@ -70,120 +155,454 @@ public class BatchApplication implements CommandLineRunner {
 			this.chargeCount = chargeCount;
 
 		}
+
+		public int getMemberCount() {
+			return memberCount;
+		}
+
+		public int getChargeCount() {
+			return chargeCount;
+		}
 	}
 
 	public countInsertBillingDataAndDetailData insertBillingDataAndDetailData(Date date,
 			Date lastDate) {
-		int memberCount = 0;
-		int chargeCount = 0;
-
-		//chargeテーブルのリストを取得
-		List<Map<String, Object>> charge = jdbcTemplate.queryForList(
-				"SELECT * FROM T_CHARGE WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?) ",
-				lastDate, date);
-
-		//memberテーブルのリストを取得
-		List<Map<String, Object>> member = jdbcTemplate.queryForList(
-				"SELECT * FROM T_MEMBER WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?) ",
-				lastDate, date);
-
-		//料金合計のオブジェクト作成
-		int total = jdbcTemplate.queryForObject(
-				"SELECT SUM(amount) FROM T_CHARGE WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?) ",
-				Integer.class, lastDate, date);
-
-
-		for (Map<String, Object> memberRow : member) {
-			int memberId = (Integer) memberRow.get("member_id");
-			String memberMail = (String) memberRow.get("mail");
-			String memberName = (String) memberRow.get("name");
-			String memberAddress = (String) memberRow.get("address");
-			Timestamp memberStartDate = (Timestamp) memberRow.get("start_date");
-			Timestamp memberEndDate = (Timestamp) memberRow.get("end_date");
-			int paymentMethod = (Integer) memberRow.get("payment_method");
-
-			//請求データを挿入
-			int memberCounting = jdbcTemplate.update(
-					"INSERT INTO T_BILLING_DATA(billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
-					date, memberId, memberMail, memberName,
-					memberAddress, memberStartDate, memberEndDate, paymentMethod, total,
-					0.1, (total + (total * 0.1)));
-			memberCount += memberCounting;
-
-			for (Map<String, Object> chargeRow : charge) {
-				int chargeId = (Integer) chargeRow.get("charge_id");
-				String chargeName = (String) chargeRow.get("name");
-				int amount = (Integer) chargeRow.get("amount");
-				Timestamp chargeStartDate = (Timestamp) chargeRow.get("start_date");
-				Timestamp chargeEndDate = (Timestamp) chargeRow.get("end_date");
-
-				//請求明細データを挿入
-				int chargeCounting = jdbcTemplate.update(
-						"INSERT INTO T_BILLING_DETAIL_DATA(billing_ym, member_id, charge_id, name, amount, start_date, end_date) VALUES (?, ?, ?, ?, ?, ?, ?)",
-						date, memberId, chargeId, chargeName,
-						amount, chargeStartDate, chargeEndDate);
-				chargeCount += chargeCounting;
+		return insertBillingDataAndDetailData(date, lastDate, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	public countInsertBillingDataAndDetailData insertBillingDataAndDetailData(Date date,
+			Date lastDate, int fromMemberId, int toMemberId) {
+		return insertBillingDataAndDetailData(date, lastDate, "m.member_id BETWEEN ? AND ?",
+				fromMemberId, toMemberId);
+	}
+
+	/**
+	 * 条件に一致する有効な加入者の請求データ・請求明細データを、設定された読み込み方式で作成する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param memberCondition 加入者テーブル(別名m)に対する追加の検索条件
+	 * @param memberConditionArgs 追加の検索条件のパラメータ
+	 * @return 請求データ・請求明細データの挿入件数
+	 */
+	public countInsertBillingDataAndDetailData insertBillingDataAndDetailData(Date date,
+			Date lastDate, String memberCondition, Object... memberConditionArgs) {
+		return insertBillingDataAndDetailData(date, lastDate, billingProperties.getReadMode(),
+				memberCondition, memberConditionArgs);
+	}
+
+	/**
+	 * 条件に一致する有効な加入者の請求データ・請求明細データを作成する
+	 *
+	 * PIPELINEDモードでは加入者を別の接続(呼び出し元のトランザクションの外)で読み込むため、
+	 * 検索条件が呼び出し元のトランザクションで更新したテーブルを参照する場合(差分更新)は使用できない。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param readMode 加入者情報の読み込み方式
+	 * @param memberCondition 加入者テーブル(別名m)に対する追加の検索条件
+	 * @param memberConditionArgs 追加の検索条件のパラメータ
+	 * @return 請求データ・請求明細データの挿入件数
+	 */
+	countInsertBillingDataAndDetailData insertBillingDataAndDetailData(Date date, Date lastDate,
+			ReadMode readMode, String memberCondition, Object... memberConditionArgs) {
+		//請求年月の請求プラン(有効な料金情報と料金合計)を料金カタログから取得
+		BillingPlan plan = chargeCatalog.getPlan(date, lastDate);
+
+		//コンパクト形式の場合は、請求明細データの代わりに料金セットを参照する
+		Integer chargeSetId = billingProperties.getDetailStorage() == DetailStorage.COMPACT
+				? chargeSetStore.findOrCreate(plan)
+				: null;
+
+		//請求データ・請求明細データの書き込み(BATCHモードではバッチサイズごとにまとめて送信)
+		//(月別パーティションを作成中の場合は作成中のテーブル、公開中の場合は請求年月専用のテーブルに書き込む)
+		BillingDataWriter writer = new BillingDataWriter(jdbcTemplate, billingProperties, plan,
+				chargeSetId, billingPartitionManager.writeTablesFor(date), billingMetrics);
+		long startedAt = System.nanoTime();
+
+		String memberSql =
+				"SELECT * FROM T_MEMBER m WHERE m.start_date <= ? AND (m.end_date IS NULL OR m.end_date >= ?) "
+						+ "AND " + memberCondition;
+		Object[] memberArgs = new Object[memberConditionArgs.length + 2];
+		memberArgs[0] = lastDate;
+		memberArgs[1] = date;
+		System.arraycopy(memberConditionArgs, 0, memberArgs, 2, memberConditionArgs.length);
+		try {
+			if (readMode == ReadMode.STREAM) {
+				//memberテーブルを前方向専用カーソルで読み込み、1件ずつ請求データを作成
+				jdbcTemplate.query(con -> {
+					PreparedStatement ps = con.prepareStatement(memberSql,
+							ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+					ps.setFetchSize(billingProperties.getFetchSize());
+					new ArgumentPreparedStatementSetter(memberArgs).setValues(ps);
+					return ps;
+				}, (ResultSet rs) -> {
+					writer.add(BillingMember.mapRow(rs, rs.getRow()));
+				});
+			} else if (readMode == ReadMode.PIPELINED) {
+				//memberテーブルを別スレッドで読み込み、キューから取り出しながら請求データを作成
+				pipelinedMemberReader.forEach(memberSql, memberArgs, writer::add);
+			} else {
+				//memberテーブルのリストを取得
+				List<BillingMember> member =
+						jdbcTemplate.query(memberSql, BillingMember::mapRow, memberArgs);
+
+				for (BillingMember memberRow : member) {
+					writer.add(memberRow);
+				}
 			}
+			//バッファに残っている請求データ・請求明細データを送信
+			writer.flush();
+		} finally {
+			//BULKモードで取り込まれずに残った一時ファイルを削除
+			writer.discard();
 		}
-		return new countInsertBillingDataAndDetailData(memberCount, chargeCount);
+		//加入者情報の読み込み時間(書き込み時間を除く)を記録
+		billingMetrics.recordNanos(BillingMetrics.PHASE_READ,
+				System.nanoTime() - startedAt - writer.getWriteNanos());
+
+		return new countInsertBillingDataAndDetailData(writer.getBillingDataCount(),
+				writer.getBillingDetailDataCount());
+	}
+
+	/**
+	 * 請求年月の未確定請求情報を削除し、請求ステータスを追加する
+	 *
+	 * コンパクト形式の場合は、並列処理の各ワーカーが同じ料金セットを参照できるよう、ここで料金セットを作成する。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param year 請求年(ログ出力用)
+	 * @param month 請求月(ログ出力用)
+	 */
+	private void prepareBillingMonth(Date date, Date lastDate, String year, String month) {
+		if (billingProperties.getMonthStorage() == MonthStorage.PARTITIONED) {
+			//公開中の月別パーティションは、作成中のテーブルの公開時に置き換える
+			billingMetrics.record(BillingMetrics.PHASE_DELETE, () -> deleteSharedBillingData(date));
+		} else {
+			billingMetrics.record(BillingMetrics.PHASE_DELETE, () -> deleteBillingData(date));
+		}
+		logger.info("データベースから" + year + "年" + month + "月分の未確定請求情報を削除しました.");
+
+		logger.info(year + "年" + month + "月分の請求ステータス情報を追加しています。");
+
+		int statusCount =
+				billingMetrics.record(BillingMetrics.PHASE_STATUS, () -> insertBillingStatus(date));
+		logger.info(statusCount + "件追加しました。");
+
+		if (billingProperties.getDetailStorage() == DetailStorage.COMPACT) {
+			chargeSetStore.findOrCreate(chargeCatalog.getPlan(date, lastDate));
+		}
+	}
+
+	/**
+	 * 加入者IDの範囲を指定して、設定された作成方式で請求データ・請求明細データを作成する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param readMode 加入者情報の読み込み方式(Javaのループで作成する場合)
+	 * @param fromMemberId 対象とする加入者IDの下限(この値を含む)
+	 * @param toMemberId 対象とする加入者IDの上限(この値を含む)
+	 * @return 請求データ・請求明細データの挿入件数
+	 */
+	private countInsertBillingDataAndDetailData createBillingData(Date date, Date lastDate,
+			ReadMode readMode, int fromMemberId, int toMemberId) {
+		//請求データの作成方式に応じて、Javaのループまたは集合演算のSQLで請求データを作成
+		if (billingProperties.getEngine() == Engine.SQL) {
+			return sqlBillingEngine.insertBillingDataAndDetailData(date, lastDate, fromMemberId,
+					toMemberId);
+		}
+		return insertBillingDataAndDetailData(date, lastDate, readMode,
+				"m.member_id BETWEEN ? AND ?", fromMemberId, toMemberId);
+	}
+
+	/**
+	 * 実行方法に応じた加入者情報の読み込み方式を取得する
+	 *
+	 * PIPELINEDモードは読み込みスレッドが別の接続を使用するため、以下の場合はSTREAMモードで読み込む。
+	 * <ul>
+	 * <li>差分更新: 同じトランザクションで削除した請求データが読み込み側の接続からは見えず、削除した加入者が作成し直されない</li>
+	 * <li>並列処理: ワーカーごとに接続が2つ必要になり、コネクションプールが枯渇する</li>
+	 * <li>チャンク処理: チャンクごとに読み込みスレッドを起動するため、並行して読み込む効果がない</li>
+	 * </ul>
+	 *
+	 * @param delta 差分更新の場合はtrue
+	 * @return 加入者情報の読み込み方式
+	 */
+	private ReadMode effectiveReadMode(boolean delta) {
+		ReadMode readMode = billingProperties.getReadMode();
+		if (readMode == ReadMode.PIPELINED && (delta || billingProperties.getChunkSize() > 0
+				|| billingProperties.getParallelism() > 1)) {
+			logger.warn("差分更新・並列処理・チャンク処理ではPIPELINEDモードを使用できないため、STREAMモードで読み込みます。");
+			return ReadMode.STREAM;
+		}
+		return readMode;
 	}
 
 	@Override
-	@Transactional
 	public void run(String... args) throws RuntimeException {
 		logger.info("-".repeat(40));
-		String inputDate = args[0];
-		String year = inputDate.substring(0, 4);
-		String month = inputDate.substring(4);
-		int yearNum = 0;
-		int monthNum = 0;
+		//入力値の条件指定 
+		List<String> options = args.length > 1
+				? Arrays.asList(args).subList(1, args.length)
+				: List.of();
+		if (args.length == 0 || !args[0].matches("^\\d{6}(-\\d{6})?$")
+				|| !OPTIONS.containsAll(options)) {
+			logger.info("yyyyMMまたはyyyyMM-yyyyMMの形式で年月を入力してください。");
+			logger.info("-".repeat(40));
+			return;
+		}
+		boolean resume = options.contains(RESUME_OPTION);
+		boolean delta = options.contains(DELTA_OPTION);
+		boolean export = options.contains(EXPORT_OPTION);
+		//yyyyMM-yyyyMMの形式の場合は、開始年月から終了年月までの各月を請求対象とする
+		String[] inputDates = args[0].split("-");
+
+		if (resume && billingProperties.getChunkSize() <= 0) {
+			logger.error(RESUME_OPTION + "はbilling.chunk-sizeを指定した場合のみ使用できます。");
+			logger.info("-".repeat(40));
+			return;
+		}
+		if (resume && delta) {
+			logger.error(RESUME_OPTION + "と" + DELTA_OPTION + "は同時に指定できません。");
+			logger.info("-".repeat(40));
+			return;
+		}
 
+		YearMonth fromYearMonth;
+		YearMonth toYearMonth;
 		try {
-			yearNum = Integer.parseInt(year);
-			monthNum = Integer.parseInt(month);
+			fromYearMonth = parseYearMonth(inputDates[0]);
+			toYearMonth = parseYearMonth(inputDates[inputDates.length - 1]);
 		} catch (NumberFormatException e) {
 			logger.error("数字をyyyyMMの形式で入力してください。");
 			logger.info("-".repeat(40));
 			return;
+		} catch (DateTimeException e) {
+			logger.error("正しい年月を入力してください。");
+			logger.info("-".repeat(40));
+			return;
+		}
+		if (toYearMonth.isBefore(fromYearMonth)) {
+			logger.error("終了年月には開始年月以降の年月を入力してください。");
+			logger.info("-".repeat(40));
+			return;
 		}
 
-		//入力値の条件指定 
-		if (args.length != 1 || !args[0].matches("^\\d{6}$")) {
-			logger.info("yyyyMMの形式で年月を入力してください。");
+		ReadMode readMode = effectiveReadMode(delta);
+
+		//請求対象期間の料金情報をまとめて読み込み、各月の請求プランの作成に使い回す
+		try {
+			chargeCatalog.load(Date.valueOf(fromYearMonth.atDay(1)),
+					Date.valueOf(toYearMonth.atEndOfMonth()));
+		} catch (DataAccessException e) {
+			logger.error("データベースアクセス中にエラーが発生しました。");
 			logger.info("-".repeat(40));
 			return;
 		}
+		//処理時間・件数・ヒープ使用量を計測し、終了時に実行結果の概要をファイルに出力する
+		Instant startedAt = Instant.now();
+		billingMetrics.startRun(
+				(int) ChronoUnit.MONTHS.between(fromYearMonth, toYearMonth) + 1);
+		billingRunSummary.startHeapSampling();
 		try {
-			LocalDate firstLocalDate = LocalDate.of(yearNum, monthNum, 1);
-			LocalDate lastDayOfMonth =
-					firstLocalDate.withDayOfMonth(firstLocalDate.lengthOfMonth());
-			Date date = Date.valueOf(firstLocalDate);
-			Date lastDate = Date.valueOf(lastDayOfMonth);
-			int count = countBillingStatusRecord(date);
+			for (YearMonth yearMonth = fromYearMonth; !yearMonth.isAfter(toYearMonth);
+					yearMonth = yearMonth.plusMonths(1)) {
+				String result = billMonth(yearMonth, resume, delta, readMode);
+				//請求情報を作成できなかった月(エラー・有効な加入者なし)は出力しない
+				if (export && BillingMetrics.RESULT_SKIPPED.equals(result)) {
+					exportMonth(yearMonth, true);
+				} else if (export && (BillingMetrics.RESULT_CREATED.equals(result)
+						|| BillingMetrics.RESULT_DELTA.equals(result))) {
+					exportMonth(yearMonth, false);
+				}
+			}
+		} finally {
+			chargeCatalog.clear();
+			billingRunSummary.write(startedAt, Instant.now(), Arrays.asList(args));
+		}
+	}
 
-			if (count > 0) {
-				logger.info("指定された年月の請求情報は既に存在します。");
+	/**
+	 * 1か月分の請求データを支払方法ごとのファイルに出力する
+	 *
+	 * @param yearMonth 請求年月
+	 * @param requireCommit 確定済み(is_commit = TRUE)の請求情報のみ出力する場合はtrue
+	 *        (この実行で作成し直した月は、作成が完了していることを処理結果で確認済みのためfalse)
+	 */
+	private void exportMonth(YearMonth yearMonth, boolean requireCommit) {
+		String year = String.valueOf(yearMonth.getYear());
+		String month = String.format("%02d", yearMonth.getMonthValue());
+		try {
+			Date date = Date.valueOf(yearMonth.atDay(1));
+			int statusCount = jdbcTemplate.queryForObject(
+					"SELECT COUNT(*) FROM T_BILLING_STATUS WHERE billing_ym = ?"
+							+ (requireCommit ? " AND is_commit = TRUE" : ""),
+					Integer.class, date);
+			if (statusCount == 0) {
+				logger.error(year + "年" + month + "月分の請求情報が存在しないため、ファイルを出力できません。");
+				logger.info("-".repeat(40));
 				return;
 			}
-			logger.info(year + "年" + month + "月分の請求情報を確認しています。");
+			logger.info(year + "年" + month + "月分の請求データをファイルに出力しています。");
+			BillingExporter.ExportResult exportResult = billingMetrics.record(
+					BillingMetrics.PHASE_EXPORT, () -> {
+						try {
+							return billingExporter.export(date);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+			for (Path file : exportResult.files()) {
+				logger.info(file + "を出力しました。");
+			}
+			logger.info("請求データ" + exportResult.memberCount() + "件を出力しました。");
+		} catch (DataAccessException e) {
+			logger.error("データベースアクセス中にエラーが発生しました。");
+		} catch (UncheckedIOException e) {
+			logger.error("ファイルの出力中にエラーが発生しました。", e.getCause());
+		}
+		logger.info("-".repeat(40));
+	}
 
-			deleteBillingData(date);
-			logger.info("データベースから" + year + "年" + month + "月分の未確定請求情報を削除しました.");
+	/**
+	 * yyyyMMの形式の文字列を年月に変換する
+	 *
+	 * @param inputDate yyyyMMの形式の文字列
+	 * @return 年月
+	 * @throws NumberFormatException 数字でない場合
+	 * @throws DateTimeException 存在しない年月の場合
+	 */
+	private static YearMonth parseYearMonth(String inputDate) {
+		int yearNum = Integer.parseInt(inputDate.substring(0, 4));
+		int monthNum = Integer.parseInt(inputDate.substring(4));
+		return YearMonth.of(yearNum, monthNum);
+	}
 
-			logger.info(year + "年" + month + "月分の請求ステータス情報を追加しています。");
+	/**
+	 * 1か月分の請求情報を作成する
+	 *
+	 * @param yearMonth 請求年月
+	 * @param resume チェックポイントから処理を再開する場合はtrue
+	 * @param delta 前回作成後に変更された加入者分のみ作成し直す場合はtrue
+	 * @param readMode 加入者情報の読み込み方式
+	 * @return 処理結果(BillingMetrics.RESULT_*)
+	 */
+	private String billMonth(YearMonth yearMonth, boolean resume, boolean delta,
+			ReadMode readMode) {
+		String year = String.valueOf(yearMonth.getYear());
+		String month = String.format("%02d", yearMonth.getMonthValue());
+		long startedAt = System.nanoTime();
+		String result = BillingMetrics.RESULT_FAILED;
+		countInsertBillingDataAndDetailData createdData = null;
+		billingMetrics.startMonth();
+		try {
+			Date date = Date.valueOf(yearMonth.atDay(1));
+			Date lastDate = Date.valueOf(yearMonth.atEndOfMonth());
+			int count = billingMetrics.record(BillingMetrics.PHASE_CHECK,
+					() -> countBillingStatusRecord(date));
 
-			int statusCount = insertBillingStatus(date);
-			logger.info(statusCount + "件追加しました。");
+			if (count > 0) {
+				logger.info("指定された年月の請求情報は既に存在します。");
+				result = BillingMetrics.RESULT_SKIPPED;
+				return result;
+			}
+			logger.info(year + "年" + month + "月分の請求情報を確認しています。");
+
+			if (delta) {
+				//前回作成後に変更された加入者分のみ、1つのトランザクションで作成し直す
+				//(差分更新は作成方式の設定に関わらずJavaのループで請求データを作成する)
+				//作成途中の月別パーティションが残っている場合は、公開中のテーブルを更新するよう先に削除する
+				billingPartitionManager.discardStaging(date);
+				logger.info(year + "年" + month + "月分の請求データ情報を差分更新しています。");
+				countInsertBillingDataAndDetailData deltaData = billingMetrics.record(
+						BillingMetrics.PHASE_DELTA,
+						() -> transactionTemplate.execute(status -> deltaBillingExecutor.execute(
+								date, lastDate, (memberCondition, memberConditionArgs) ->
+										insertBillingDataAndDetailData(date, lastDate, readMode,
+												memberCondition, memberConditionArgs))));
+				if (deltaData != null) {
+					logger.info("請求データ" + deltaData.memberCount + "件、請求明細データ"
+							+ deltaData.chargeCount + "件を作成し直しました。");
+					logger.info("-".repeat(40));
+					result = BillingMetrics.RESULT_DELTA;
+					createdData = deltaData;
+					return result;
+				}
+				logger.info(year + "年" + month + "月分の請求データ情報を全件作成し直します。");
+			}
 
-			logger.info(year + "年" + month + "月分の請求データ情報を追加しています。");
-			countInsertBillingDataAndDetailData countInsertlData =
-					insertBillingDataAndDetailData(date, lastDate);
+			//月別パーティションの場合は、作成中のテーブル(公開中でない方の組)に作成し、完了後に公開する
+			//(テーブルの作成・公開・削除はコミットを伴うため、請求年月のトランザクションの外で行う)
+			boolean partitioned =
+					billingProperties.getMonthStorage() == MonthStorage.PARTITIONED;
+			countInsertBillingDataAndDetailData countInsertlData;
+			if (billingProperties.getChunkSize() > 0) {
+				//チェックポイントから再開する場合は、コミット済みの請求データ(作成中のテーブル)を削除しない
+				if (resume && chunkedBillingExecutor.hasCheckpoint(date)) {
+					logger.info(year + "年" + month + "月分の請求データ情報の作成を再開します。");
+				} else {
+					if (partitioned) {
+						billingPartitionManager.createStaging(date);
+					}
+					transactionTemplate.executeWithoutResult(
+							status -> prepareBillingMonth(date, lastDate, year, month));
+				}
+				//加入者をチャンクに分割し、チャンクごとにコミット
+				//(失敗した場合、作成中のテーブルは再開のために残す)
+				logger.info(year + "年" + month + "月分の請求データ情報を追加しています。");
+				countInsertlData = chunkedBillingExecutor.execute(date, lastDate, resume,
+						(fromMemberId, toMemberId) -> createBillingData(date, lastDate,
+								readMode, fromMemberId, toMemberId));
+			} else if (billingProperties.getParallelism() > 1) {
+				//未確定請求情報の削除と請求ステータスの追加を先にコミットし、
+				//加入者IDの範囲ごとにワーカースレッドで並列に請求データを作成
+				if (partitioned) {
+					billingPartitionManager.createStaging(date);
+				}
+				transactionTemplate.executeWithoutResult(
+						status -> prepareBillingMonth(date, lastDate, year, month));
+				logger.info(year + "年" + month + "月分の請求データ情報を追加しています。");
+				//いずれかのパーティションが失敗した場合は、コミット済みのパーティションを含めて請求年月の請求情報を削除
+				//(月別パーティションの場合は作成中のテーブルのみ削除し、公開中のテーブルは残す)
+				countInsertlData = partitionedBillingExecutor.execute(date, lastDate,
+						(fromMemberId, toMemberId) -> createBillingData(date, lastDate,
+								readMode, fromMemberId, toMemberId),
+						partitioned
+								? () -> billingPartitionManager.discardStaging(date)
+								: () -> deleteBillingData(date));
+			} else {
+				if (partitioned) {
+					billingPartitionManager.createStaging(date);
+				}
+				//請求月全体を1つのトランザクションで処理
+				try {
+					countInsertlData = transactionTemplate.execute(status -> {
+						prepareBillingMonth(date, lastDate, year, month);
+						logger.info(year + "年" + month + "月分の請求データ情報を追加しています。");
+						return createBillingData(date, lastDate, readMode, Integer.MIN_VALUE,
+								Integer.MAX_VALUE);
+					});
+				} catch (RuntimeException e) {
+					//ロールバックされた作成中のテーブルを削除する(公開中のテーブルは残す)
+					if (partitioned) {
+						billingPartitionManager.discardStaging(date);
+					}
+					throw e;
+				}
+			}
+			if (partitioned) {
+				billingPartitionManager.publish(date);
+			}
 
+			createdData = countInsertlData;
 			if (countInsertlData.memberCount == 0) {
 				logger.error("有効な加入者情報が存在しませんでした。");
 				logger.info("-".repeat(40));
-				return;
+				result = BillingMetrics.RESULT_NO_MEMBER;
+				return result;
 			}
+			result = BillingMetrics.RESULT_CREATED;
 			//請求データの挿入レコード数
 			logger.info(countInsertlData.memberCount + "件追加しました。");
 
@@ -194,11 +613,21 @@ public class BatchApplication implements CommandLineRunner {
 
 		} catch (DataAccessException e) {
 			logger.error("データベースアクセス中にエラーが発生しました。");
-		} catch (NullPointerException e) {
+		} catch (NoActiveChargeException | NullPointerException e) {
 			logger.error("有効な料金情報が存在しませんでした。");
-		} catch (DateTimeException e) {
-			logger.error("正しい年月を入力してください。");
+		} catch (UncheckedIOException e) {
+			//BULK書き込みの一時ファイルの書き出し・取り込みに失敗した場合
+			logger.error("請求データの一時ファイルの入出力中にエラーが発生しました。", e.getCause());
+		} catch (IllegalStateException e) {
+			//並列処理のパーティション・先読みの読み込みスレッドが失敗・中断した場合
+			logger.error("請求データの作成中にエラーが発生しました。", e);
+		} finally {
+			billingMetrics.finishMonth(new BillingMetrics.MonthResult(yearMonth, result,
+					System.nanoTime() - startedAt,
+					createdData == null ? 0 : createdData.memberCount,
+					createdData == null ? 0 : createdData.chargeCount));
 		}
 		logger.info("-".repeat(40));
+		return result;
 	}
 }
@@ -0,0 +1,364 @@
+package com.s_giken.training.batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.s_giken.training.batch.BillingProperties.FlushPolicy;
+import com.s_giken.training.batch.BillingProperties.WriteMode;
+
+/**
+ * 請求データ・請求明細データを書き込むクラス
+ *
+ * BATCHモードでは加入者をバッファに溜め、JdbcTemplate.batchUpdateでまとめて送信する。
+ * 請求明細データは送信時に加入者と請求プランの料金情報から直接パラメータを設定するため、行ごとの配列を作成しない。
+ * 請求明細データは請求データを外部キーで参照するため、送信時は必ず請求データを先に送信する。
+ * 料金セットIDを指定した場合(コンパクト形式)は、請求データに料金セットIDを設定し、請求明細データは書き込まない。
+ * BULKモードでは一時ファイルに書き出し、flushでCSVREADを使ってまとめて取り込む(BulkBillingLoader)。
+ */
+public class BillingDataWriter {
+	private final Logger logger = LoggerFactory.getLogger(BillingDataWriter.class);
+	private final JdbcTemplate jdbcTemplate;
+	private final BillingMetrics billingMetrics;
+	private final String insertBillingDataSql;
+	private final String insertBillingDetailDataSql;
+	private final BillingPlan plan;
+	private final Integer chargeSetId;
+	private final WriteMode writeMode;
+	private final int batchSize;
+	private final FlushPolicy flushPolicy;
+	private final BillingTables tables;
+	private final Path stagingDir;
+	private final int stagingBufferSize;
+	private final List<BillingMember> members = new ArrayList<>();
+	private BulkBillingLoader bulkLoader;
+	private int billingDataCount = 0;
+	private int billingDetailDataCount = 0;
+	private long writeNanos = 0;
+
+	/**
+	 * 請求データ書き込みクラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate 書き込みに使用するJdbcTemplate
+	 * @param billingProperties 請求バッチの設定値
+	 * @param plan 請求年月の請求プラン
+	 * @param chargeSetId 請求データが参照する料金セットID(請求明細データを展開して保存する場合はnull)
+	 * @param tables 書き込み先のテーブル
+	 * @param billingMetrics 書き込み時間・件数の記録先
+	 */
+	public BillingDataWriter(JdbcTemplate jdbcTemplate, BillingProperties billingProperties,
+			BillingPlan plan, Integer chargeSetId, BillingTables tables,
+			BillingMetrics billingMetrics) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.billingMetrics = billingMetrics;
+		this.insertBillingDataSql = "INSERT INTO " + tables.billingData()
+				+ "(billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total, charge_set_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		this.insertBillingDetailDataSql = "INSERT INTO " + tables.billingDetailData()
+				+ "(billing_ym, member_id, charge_id, name, amount, start_date, end_date) VALUES (?, ?, ?, ?, ?, ?, ?)";
+		this.plan = plan;
+		this.chargeSetId = chargeSetId;
+		this.writeMode = billingProperties.getWriteMode();
+		this.batchSize = Math.max(1, billingProperties.getBatchSize());
+		this.flushPolicy = billingProperties.getFlushPolicy();
+		this.tables = tables;
+		this.stagingDir = Path.of(billingProperties.getStagingDir());
+		this.stagingBufferSize = billingProperties.getBulkBufferSize();
+	}
+
+	/**
+	 * 加入者1件分の請求データと、請求プランの全料金分の請求明細データを書き込む
+	 *
+	 * @param member 加入者情報
+	 */
+	public void add(BillingMember member) {
+		if (writeMode == WriteMode.ROW) {
+			long startedAt = System.nanoTime();
+			insertRow(member);
+			recordWrite(startedAt);
+			return;
+		}
+		if (writeMode == WriteMode.BULK) {
+			long startedAt = System.nanoTime();
+			stage(member);
+			recordWrite(startedAt);
+			return;
+		}
+		members.add(member);
+		int bufferedRows = flushPolicy == FlushPolicy.MEMBERS || chargeSetId != null
+				? members.size()
+				: members.size() * plan.size();
+		if (bufferedRows >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * バッファに溜まっている請求データ・請求明細データをデータベースへ送信する
+	 */
+	public void flush() {
+		if (bulkLoader != null) {
+			long startedAt = System.nanoTime();
+			int[] counts = loadStaged();
+			recordWrite(startedAt);
+			billingMetrics.addRows(counts[0], counts[1]);
+			return;
+		}
+		if (members.isEmpty()) {
+			return;
+		}
+		long startedAt = System.nanoTime();
+		int billingDataCountBefore = billingDataCount;
+		int billingDetailDataCountBefore = billingDetailDataCount;
+		sendBatch();
+		recordWrite(startedAt);
+		billingMetrics.addRows(billingDataCount - billingDataCountBefore,
+				billingDetailDataCount - billingDetailDataCountBefore);
+	}
+
+	/**
+	 * バッファに溜まっている請求データ・請求明細データをJDBCバッチで送信する
+	 */
+	private void sendBatch() {
+		//請求明細データが参照する請求データを先に送信する
+		int memberCounting = sumUpdateCounts(jdbcTemplate.batchUpdate(insertBillingDataSql,
+				new BatchPreparedStatementSetter() {
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						setBillingDataValues(ps, members.get(i));
+					}
+
+					@Override
+					public int getBatchSize() {
+						return members.size();
+					}
+				}));
+		if (chargeSetId != null) {
+			//請求明細データは料金セットで参照できるため、参照される件数のみ数える
+			members.clear();
+			billingDataCount += memberCounting;
+			billingDetailDataCount += memberCounting * plan.size();
+			logger.debug("料金セット{}を参照する請求データ{}件をバッチ送信しました。", chargeSetId, memberCounting);
+			return;
+		}
+		int chargeCounting = sumUpdateCounts(jdbcTemplate.batchUpdate(
+				insertBillingDetailDataSql,
+				new BatchPreparedStatementSetter() {
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						setBillingDetailDataValues(ps, members.get(i / plan.size()),
+								plan.getCharge(i % plan.size()));
+					}
+
+					@Override
+					public int getBatchSize() {
+						return members.size() * plan.size();
+					}
+				}));
+		members.clear();
+
+		billingDataCount += memberCounting;
+		billingDetailDataCount += chargeCounting;
+		logger.debug("請求データ{}件、請求明細データ{}件をバッチ送信しました。", memberCounting, chargeCounting);
+	}
+
+	/**
+	 * 加入者1件分の請求データ・請求明細データを一時ファイルに書き出す
+	 */
+	private void stage(BillingMember member) {
+		try {
+			if (bulkLoader == null) {
+				bulkLoader = new BulkBillingLoader(stagingDir, stagingBufferSize, tables,
+						chargeSetId == null);
+			}
+			bulkLoader.writeBillingData(plan, member, chargeSetId);
+			if (chargeSetId == null) {
+				for (int i = 0; i < plan.size(); i++) {
+					bulkLoader.writeBillingDetailData(plan, member, plan.getCharge(i));
+				}
+			}
+		} catch (IOException e) {
+			closeBulkLoader();
+			throw new UncheckedIOException("請求データの一時ファイルへの書き出しに失敗しました。", e);
+		}
+	}
+
+	/**
+	 * 一時ファイルの請求データ・請求明細データを取り込み、一時ファイルを削除する
+	 *
+	 * @return 請求データ・請求明細データの取り込み件数
+	 */
+	private int[] loadStaged() {
+		try {
+			int[] counts = bulkLoader.load(jdbcTemplate);
+			int memberCounting = counts[0];
+			//コンパクト形式の場合は、料金セットで参照される件数を請求明細データの件数とする
+			int chargeCounting = chargeSetId == null ? counts[1] : memberCounting * plan.size();
+			billingDataCount += memberCounting;
+			billingDetailDataCount += chargeCounting;
+			logger.debug("請求データ{}件、請求明細データ{}件を一時ファイルから取り込みました。", memberCounting,
+					chargeCounting);
+			return new int[] {memberCounting, chargeCounting};
+		} catch (IOException e) {
+			throw new UncheckedIOException("請求データの一時ファイルの取り込みに失敗しました。", e);
+		} finally {
+			closeBulkLoader();
+		}
+	}
+
+	/**
+	 * 取り込まれていない一時ファイルを削除する(BULKモード以外では何もしない)
+	 *
+	 * 書き込みの途中で例外が発生した場合に一時ファイルが残らないよう、flushの後に必ず呼び出す。
+	 */
+	public void discard() {
+		if (bulkLoader != null) {
+			closeBulkLoader();
+		}
+	}
+
+	/**
+	 * 一時ファイルを閉じて削除する(削除に失敗した場合は警告のみ出力する)
+	 */
+	private void closeBulkLoader() {
+		try {
+			bulkLoader.close();
+		} catch (IOException e) {
+			logger.warn("請求データの一時ファイルを削除できませんでした。", e);
+		} finally {
+			bulkLoader = null;
+		}
+	}
+
+	/**
+	 * 書き込みにかかった時間を取得する
+	 *
+	 * @return データベースへの送信にかかった時間の合計(ナノ秒)
+	 */
+	public long getWriteNanos() {
+		return writeNanos;
+	}
+
+	/**
+	 * 書き込んだ請求データの件数を取得する
+	 *
+	 * @return 送信済みの請求データ件数
+	 */
+	public int getBillingDataCount() {
+		return billingDataCount;
+	}
+
+	/**
+	 * 書き込んだ請求明細データの件数を取得する
+	 *
+	 * コンパクト形式の場合は、料金セットを展開した場合の件数を返す。
+	 *
+	 * @return 送信済みの請求明細データ件数
+	 */
+	public int getBillingDetailDataCount() {
+		return billingDetailDataCount;
+	}
+
+	/**
+	 * 書き込み時間を記録する
+	 */
+	private void recordWrite(long startedAt) {
+		long nanos = System.nanoTime() - startedAt;
+		writeNanos += nanos;
+		billingMetrics.recordNanos(BillingMetrics.PHASE_WRITE, nanos);
+	}
+
+	/**
+	 * 加入者1件分の請求データ・請求明細データを1件ずつINSERT文で書き込む
+	 */
+	private void insertRow(BillingMember member) {
+		int memberCounting = jdbcTemplate.update(insertBillingDataSql,
+				ps -> setBillingDataValues(ps, member));
+		billingDataCount += memberCounting;
+		if (chargeSetId != null) {
+			billingDetailDataCount += memberCounting * plan.size();
+			billingMetrics.addRows(memberCounting, memberCounting * plan.size());
+			return;
+		}
+		int chargeCounting = 0;
+		for (int i = 0; i < plan.size(); i++) {
+			BillingPlan.Charge charge = plan.getCharge(i);
+			chargeCounting += jdbcTemplate.update(insertBillingDetailDataSql,
+					ps -> setBillingDetailDataValues(ps, member, charge));
+		}
+		billingDetailDataCount += chargeCounting;
+		billingMetrics.addRows(memberCounting, chargeCounting);
+	}
+
+	/**
+	 * 請求データのINSERT文にパラメータを設定する
+	 */
+	private void setBillingDataValues(PreparedStatement ps, BillingMember member)
+			throws SQLException {
+		ps.setDate(1, plan.getBillingYm());
+		ps.setInt(2, member.memberId());
+		ps.setString(3, member.mail());
+		ps.setString(4, member.name());
+		ps.setString(5, member.address());
+		setTimestamp(ps, 6, member.startDate());
+		setTimestamp(ps, 7, member.endDate());
+		ps.setInt(8, member.paymentMethod());
+		ps.setInt(9, plan.getTotal());
+		ps.setDouble(10, BillingPlan.TAX_RATIO);
+		ps.setDouble(11, plan.getTaxIncludedTotal());
+		if (chargeSetId == null) {
+			ps.setNull(12, Types.INTEGER);
+		} else {
+			ps.setInt(12, chargeSetId);
+		}
+	}
+
+	/**
+	 * 請求明細データのINSERT文にパラメータを設定する
+	 */
+	private void setBillingDetailDataValues(PreparedStatement ps, BillingMember member,
+			BillingPlan.Charge charge) throws SQLException {
+		ps.setDate(1, plan.getBillingYm());
+		ps.setInt(2, member.memberId());
+		ps.setInt(3, charge.chargeId());
+		ps.setString(4, charge.name());
+		ps.setInt(5, charge.amount());
+		setTimestamp(ps, 6, charge.startDate());
+		setTimestamp(ps, 7, charge.endDate());
+	}
+
+	private static void setTimestamp(PreparedStatement ps, int index, Timestamp value)
+			throws SQLException {
+		if (value == null) {
+			ps.setNull(index, Types.TIMESTAMP);
+		} else {
+			ps.setTimestamp(index, value);
+		}
+	}
+
+	/**
+	 * batchUpdateの戻り値から更新件数を合計する
+	 *
+	 * ドライバが件数を返さない場合(SUCCESS_NO_INFO)は1件として数える。
+	 */
+	private static int sumUpdateCounts(int[] updateCounts) {
+		int sum = 0;
+		for (int updateCount : updateCounts) {
+			if (updateCount >= 0) {
+				sum += updateCount;
+			} else if (updateCount == Statement.SUCCESS_NO_INFO) {
+				sum += 1;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,252 @@
+package com.s_giken.training.batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 請求データを支払方法ごとのファイルに出力するクラス
+ *
+ * 請求データと請求明細データを加入者IDの順に前方向専用カーソルで読み込み、加入者ごとに突き合わせて出力する。
+ * (コンパクト形式の請求データは、料金セットを展開して出力する)
+ * 読み込み・書き込みとも1行ずつ処理するため、出力件数に関わらずメモリ使用量は一定になる。
+ *
+ * 出力ファイル(billing-yyyyMM-支払方法.csv)の形式は以下のとおり。
+ * <pre>
+ * H,請求年月(yyyyMM),支払方法
+ * B,加入者ID,氏名,メールアドレス,住所,料金合計,税率,税込合計  (加入者ごと)
+ * C,加入者ID,料金ID,料金名,金額                                (料金ごと)
+ * T,加入者数,税込合計の総額
+ * </pre>
+ */
+@Component
+public class BillingExporter {
+	private static final DateTimeFormatter BILLING_YM_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+	/**
+	 * 請求データの出力結果
+	 *
+	 * @param memberCount 出力した加入者の件数
+	 * @param files 出力したファイル
+	 */
+	public record ExportResult(int memberCount, List<Path> files) {
+	}
+
+	/**
+	 * 料金セットの料金情報
+	 */
+	private record ChargeItem(int chargeId, String name, long amount) {
+	}
+
+	/**
+	 * 支払方法ごとの出力ファイル
+	 */
+	private static final class PaymentMethodFile {
+		private final Path tempPath;
+		private final Path path;
+		private final ExportFileWriter writer;
+		private int memberCount = 0;
+		private long totalSum = 0;
+
+		private PaymentMethodFile(Path tempPath, Path path, ExportFileWriter writer) {
+			this.tempPath = tempPath;
+			this.path = path;
+			this.writer = writer;
+		}
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private final BillingProperties billingProperties;
+	private final BillingPartitionManager billingPartitionManager;
+
+	/**
+	 * 請求データ出力クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 * @param billingProperties 請求バッチの設定値
+	 * @param billingPartitionManager 月別パーティション管理クラス
+	 */
+	public BillingExporter(JdbcTemplate jdbcTemplate, BillingProperties billingProperties,
+			BillingPartitionManager billingPartitionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.billingProperties = billingProperties;
+		this.billingPartitionManager = billingPartitionManager;
+	}
+
+	/**
+	 * 請求年月の請求データを支払方法ごとのファイルに出力する
+	 *
+	 * ファイルは一時ファイルに書き込み、全件の出力が完了してから置き換える。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 出力結果
+	 * @throws IOException ファイルの出力に失敗した場合
+	 */
+	public ExportResult export(Date date) throws IOException {
+		String billingYm = date.toLocalDate().format(BILLING_YM_FORMAT);
+		Path exportDir = Path.of(billingProperties.getExportDir());
+		Files.createDirectories(exportDir);
+
+		BillingTables tables = billingPartitionManager.tablesFor(date);
+		Map<Integer, List<ChargeItem>> chargeSets = loadChargeSets(date);
+		Map<Integer, PaymentMethodFile> files = new TreeMap<>();
+		int[] memberCount = {0};
+		try {
+			jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+				try (PreparedStatement memberPs = con.prepareStatement(
+						"SELECT member_id, name, mail, address, payment_method, amount, tax_ratio, total, charge_set_id FROM "
+								+ tables.billingData() + " WHERE billing_ym = ? ORDER BY member_id",
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+						PreparedStatement detailPs = con.prepareStatement(
+								"SELECT member_id, charge_id, name, amount FROM "
+										+ tables.billingDetailData()
+										+ " WHERE billing_ym = ? ORDER BY member_id, charge_id",
+								ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+					memberPs.setFetchSize(billingProperties.getFetchSize());
+					memberPs.setDate(1, date);
+					detailPs.setFetchSize(billingProperties.getFetchSize());
+					detailPs.setDate(1, date);
+					try (ResultSet members = memberPs.executeQuery();
+							ResultSet details = detailPs.executeQuery()) {
+						StringBuilder line = new StringBuilder();
+						boolean hasDetail = details.next();
+						while (members.next()) {
+							int memberId = members.getInt("member_id");
+							int paymentMethod = members.getInt("payment_method");
+							long total = members.getLong("total");
+							PaymentMethodFile file = files.get(paymentMethod);
+							if (file == null) {
+								file = open(exportDir, billingYm, paymentMethod);
+								files.put(paymentMethod, file);
+							}
+
+							line.setLength(0);
+							line.append('B').append(',').append(memberId);
+							appendField(line, members.getString("name"));
+							appendField(line, members.getString("mail"));
+							appendField(line, members.getString("address"));
+							line.append(',').append(members.getLong("amount"));
+							line.append(',').append(members.getBigDecimal("tax_ratio").toPlainString());
+							line.append(',').append(total);
+							file.writer.writeLine(line);
+							file.memberCount++;
+							file.totalSum += total;
+							memberCount[0]++;
+
+							int chargeSetId = members.getInt("charge_set_id");
+							if (!members.wasNull()) {
+								//コンパクト形式の場合は料金セットを展開して出力
+								for (ChargeItem item : chargeSets.getOrDefault(chargeSetId, List.of())) {
+									writeCharge(file, line, memberId, item.chargeId(), item.name(),
+											item.amount());
+								}
+								continue;
+							}
+							//請求明細データのカーソルを加入者IDで突き合わせる(どちらも加入者IDの昇順)
+							while (hasDetail && details.getInt("member_id") < memberId) {
+								hasDetail = details.next();
+							}
+							while (hasDetail && details.getInt("member_id") == memberId) {
+								writeCharge(file, line, memberId, details.getInt("charge_id"),
+										details.getString("name"), details.getLong("amount"));
+								hasDetail = details.next();
+							}
+						}
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return null;
+			});
+
+			List<Path> paths = new ArrayList<>();
+			for (Map.Entry<Integer, PaymentMethodFile> entry : files.entrySet()) {
+				PaymentMethodFile file = entry.getValue();
+				file.writer.writeLine("T," + file.memberCount + "," + file.totalSum);
+				file.writer.close();
+				Files.move(file.tempPath, file.path, StandardCopyOption.REPLACE_EXISTING);
+				paths.add(file.path);
+			}
+			return new ExportResult(memberCount[0], paths);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			for (PaymentMethodFile file : files.values()) {
+				file.writer.close();
+				Files.deleteIfExists(file.tempPath);
+			}
+		}
+	}
+
+	/**
+	 * 支払方法の出力ファイル(一時ファイル)を作成し、ヘッダー行を書き込む
+	 */
+	private PaymentMethodFile open(Path exportDir, String billingYm, int paymentMethod)
+			throws IOException {
+		String fileName = "billing-" + billingYm + "-" + paymentMethod + ".csv"
+				+ (billingProperties.isExportGzip() ? ".gz" : "");
+		Path path = exportDir.resolve(fileName);
+		Path tempPath = exportDir.resolve(fileName + ".tmp");
+		ExportFileWriter writer = new ExportFileWriter(tempPath, billingProperties.isExportGzip(),
+				billingProperties.getExportBufferSize());
+		writer.writeLine("H," + billingYm + "," + paymentMethod);
+		return new PaymentMethodFile(tempPath, path, writer);
+	}
+
+	private static void writeCharge(PaymentMethodFile file, StringBuilder line, int memberId,
+			int chargeId, String name, long amount) throws IOException {
+		line.setLength(0);
+		line.append('C').append(',').append(memberId).append(',').append(chargeId);
+		appendField(line, name);
+		line.append(',').append(amount);
+		file.writer.writeLine(line);
+	}
+
+	/**
+	 * CSVの項目を追加する(カンマ・ダブルクォート・改行を含む場合はダブルクォートで囲む)
+	 */
+	private static void appendField(StringBuilder line, String value) {
+		line.append(',');
+		if (value == null) {
+			return;
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+				&& value.indexOf('\r') < 0) {
+			line.append(value);
+			return;
+		}
+		line.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+
+	/**
+	 * 請求年月の料金セット(コンパクト形式)の料金情報を読み込む
+	 */
+	private Map<Integer, List<ChargeItem>> loadChargeSets(Date date) {
+		Map<Integer, List<ChargeItem>> chargeSets = new HashMap<>();
+		jdbcTemplate.query(
+				"SELECT i.charge_set_id, i.charge_id, i.name, i.amount FROM T_BILLING_CHARGE_SET_ITEM i "
+						+ "JOIN T_BILLING_CHARGE_SET s ON s.charge_set_id = i.charge_set_id "
+						+ "WHERE s.billing_ym = ? ORDER BY i.charge_set_id, i.charge_id",
+				(ResultSet rs) -> {
+					chargeSets.computeIfAbsent(rs.getInt("charge_set_id"), id -> new ArrayList<>())
+							.add(new ChargeItem(rs.getInt("charge_id"), rs.getString("name"),
+									rs.getLong("amount")));
+				},
+				date);
+		return chargeSets;
+	}
+}
@@ -0,0 +1,39 @@
+package com.s_giken.training.batch;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * 請求データの作成対象となる加入者情報
+ *
+ * @param memberId 加入者ID
+ * @param mail メールアドレス
+ * @param name 氏名
+ * @param address 住所
+ * @param startDate 加入日
+ * @param endDate 解約日
+ * @param paymentMethod 支払方法
+ */
+public record BillingMember(int memberId, String mail, String name, String address,
+		Timestamp startDate, Timestamp endDate, int paymentMethod) {
+
+	/**
+	 * 加入者テーブルの検索結果の現在行を加入者情報に変換する
+	 *
+	 * @param rs 加入者テーブルの検索結果
+	 * @param rowNum 行番号
+	 * @return 加入者情報
+	 * @throws SQLException 検索結果の読み込みに失敗した場合
+	 */
+	public static BillingMember mapRow(ResultSet rs, int rowNum) throws SQLException {
+		return new BillingMember(
+				rs.getInt("member_id"),
+				rs.getString("mail"),
+				rs.getString("name"),
+				rs.getString("address"),
+				rs.getTimestamp("start_date"),
+				rs.getTimestamp("end_date"),
+				rs.getInt("payment_method"));
+	}
+}
@@ -0,0 +1,190 @@
+package com.s_giken.training.batch;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 請求バッチの処理時間・件数を計測するクラス
+ *
+ * 処理段階(phase)ごとの処理時間をbilling.phaseタイマー、作成した行数をbilling.rowsカウンター、
+ * 実行中の進捗をbilling.progress.*ゲージとして記録する。
+ * MeterRegistryのBeanが存在しない場合は、SimpleMeterRegistryに記録する。
+ */
+@Component
+public class BillingMetrics {
+	/** 請求ステータスの確定状況の確認 */
+	public static final String PHASE_CHECK = "check";
+	/** 未確定請求情報の削除 */
+	public static final String PHASE_DELETE = "delete";
+	/** 請求ステータスの追加 */
+	public static final String PHASE_STATUS = "status";
+	/** 加入者情報の読み込み(JAVA方式で、書き込みを除いた時間) */
+	public static final String PHASE_READ = "read";
+	/** 請求データ・請求明細データの書き込み(SQL方式では読み込みを含む) */
+	public static final String PHASE_WRITE = "write";
+	/** 差分更新(変更された加入者の削除と作成し直しを含む) */
+	public static final String PHASE_DELTA = "delta";
+	/** 請求データのファイル出力 */
+	public static final String PHASE_EXPORT = "export";
+
+	/** 請求データを作成した */
+	public static final String RESULT_CREATED = "CREATED";
+	/** 差分更新で請求データを作成し直した */
+	public static final String RESULT_DELTA = "DELTA";
+	/** 確定済みのため処理しなかった */
+	public static final String RESULT_SKIPPED = "SKIPPED";
+	/** 有効な加入者が存在しなかった */
+	public static final String RESULT_NO_MEMBER = "NO_MEMBER";
+	/** エラーが発生したため作成できなかった(次の請求年月の処理は続ける) */
+	public static final String RESULT_FAILED = "FAILED";
+
+	/**
+	 * 1か月分の請求処理の結果
+	 *
+	 * @param yearMonth 請求年月
+	 * @param result 処理結果
+	 * @param durationNanos 処理時間(ナノ秒)
+	 * @param billingDataCount 作成した請求データの件数
+	 * @param billingDetailDataCount 作成した請求明細データの件数
+	 */
+	public record MonthResult(YearMonth yearMonth, String result, long durationNanos,
+			long billingDataCount, long billingDetailDataCount) {
+	}
+
+	private final MeterRegistry registry;
+	private final Counter billingDataRows;
+	private final Counter billingDetailDataRows;
+	private final AtomicLong progressMembers = new AtomicLong();
+	private final AtomicInteger completedMonths = new AtomicInteger();
+	private final AtomicInteger totalMonths = new AtomicInteger();
+	private final List<MonthResult> monthResults = Collections.synchronizedList(new ArrayList<>());
+
+	/**
+	 * 請求バッチ計測クラスのコンストラクタ
+	 *
+	 * @param registry MeterRegistry(Beanが存在しない場合はSimpleMeterRegistryを使用する)
+	 */
+	public BillingMetrics(ObjectProvider<MeterRegistry> registry) {
+		this.registry = registry.getIfAvailable(SimpleMeterRegistry::new);
+		this.billingDataRows = Counter.builder("billing.rows").tag("table", "billing_data")
+				.register(this.registry);
+		this.billingDetailDataRows = Counter.builder("billing.rows")
+				.tag("table", "billing_detail_data").register(this.registry);
+		Gauge.builder("billing.progress.members", progressMembers, AtomicLong::get)
+				.description("処理中の請求年月で作成した請求データの件数").register(this.registry);
+		Gauge.builder("billing.progress.months.completed", completedMonths, AtomicInteger::get)
+				.register(this.registry);
+		Gauge.builder("billing.progress.months.total", totalMonths, AtomicInteger::get)
+				.register(this.registry);
+	}
+
+	/**
+	 * 処理段階の処理時間を計測する
+	 *
+	 * @param phase 処理段階
+	 * @param supplier 計測する処理
+	 * @return 処理の戻り値
+	 */
+	public <T> T record(String phase, Supplier<T> supplier) {
+		return phaseTimer(phase).record(supplier);
+	}
+
+	/**
+	 * 処理段階の処理時間を計測する
+	 *
+	 * @param phase 処理段階
+	 * @param runnable 計測する処理
+	 */
+	public void record(String phase, Runnable runnable) {
+		phaseTimer(phase).record(runnable);
+	}
+
+	/**
+	 * 計測済みの処理時間を記録する
+	 *
+	 * @param phase 処理段階
+	 * @param nanos 処理時間(ナノ秒)
+	 */
+	public void recordNanos(String phase, long nanos) {
+		phaseTimer(phase).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 作成した請求データ・請求明細データの件数を加算する(複数スレッドから呼び出せる)
+	 *
+	 * @param billingDataCount 請求データの件数
+	 * @param billingDetailDataCount 請求明細データの件数
+	 */
+	public void addRows(int billingDataCount, int billingDetailDataCount) {
+		billingDataRows.increment(billingDataCount);
+		billingDetailDataRows.increment(billingDetailDataCount);
+		progressMembers.addAndGet(billingDataCount);
+	}
+
+	/**
+	 * 請求バッチの実行開始時に、処理対象の月数を設定する
+	 *
+	 * @param months 処理対象の月数
+	 */
+	public void startRun(int months) {
+		totalMonths.set(months);
+		completedMonths.set(0);
+		monthResults.clear();
+	}
+
+	/**
+	 * 請求年月の処理開始時に、進捗をリセットする
+	 */
+	public void startMonth() {
+		progressMembers.set(0);
+	}
+
+	/**
+	 * 請求年月の処理結果を記録する
+	 *
+	 * @param monthResult 請求年月の処理結果
+	 */
+	public void finishMonth(MonthResult monthResult) {
+		monthResults.add(monthResult);
+		completedMonths.incrementAndGet();
+		Timer.builder("billing.month").tag("result", monthResult.result()).register(registry)
+				.record(monthResult.durationNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 記録した請求年月の処理結果を取得する
+	 *
+	 * @return 請求年月の処理結果
+	 */
+	public List<MonthResult> getMonthResults() {
+		synchronized (monthResults) {
+			return List.copyOf(monthResults);
+		}
+	}
+
+	/**
+	 * 処理段階ごとのタイマーを取得する
+	 *
+	 * @return 処理段階ごとのタイマー
+	 */
+	public List<Timer> getPhaseTimers() {
+		return List.copyOf(registry.find("billing.phase").timers());
+	}
+
+	private Timer phaseTimer(String phase) {
+		return Timer.builder("billing.phase").tag("phase", phase).register(registry);
+	}
+}
@@ -0,0 +1,279 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 請求年月専用の請求データ・請求明細データのテーブル(月別パーティション)を管理するクラス
+ *
+ * 月別パーティションを公開した請求年月はT_BILLING_PARTITIONに登録し、請求データはT_BILLING_DATA_yyyyMM、
+ * 請求明細データはT_BILLING_DETAIL_DATA_yyyyMM(または組1のT_BILLING_DATA_yyyyMM_1など)に保存する。
+ * 請求年月の削除はDELETEではなくテーブルの削除で行う。
+ * 月別パーティションの各テーブルも請求データ状況(T_BILLING_STATUS)を外部キーで参照する。
+ * 共有テーブルと公開中の全ての月別パーティションの請求データはV_BILLING_DATA、請求明細データはV_BILLING_DETAIL_DATAで参照できる。
+ *
+ * 請求年月を作成し直す場合は、公開中でない方の組のテーブル(作成中のテーブル)に作成し、請求年月のトランザクションの
+ * コミット後に公開する組を切り替えてビューを作成し直す(切り替えるまでは、公開中の請求データがそのまま参照される)。
+ * H2ではテーブルの作成・削除でトランザクションがコミットされるため、テーブルの作成・公開・破棄は請求年月の
+ * トランザクションの外で呼び出すこと。
+ */
+@Component
+public class BillingPartitionManager {
+	private static final String BILLING_DATA_COLUMNS =
+			"billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total, charge_set_id, created_at, modified_at";
+	private static final String BILLING_DETAIL_DATA_COLUMNS =
+			"billing_ym, member_id, charge_id, name, amount, start_date, end_date";
+
+	private final Logger logger = LoggerFactory.getLogger(BillingPartitionManager.class);
+	private final JdbcTemplate jdbcTemplate;
+
+	/**
+	 * 月別パーティション管理クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 */
+	public BillingPartitionManager(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * 請求年月の請求データ・請求明細データを公開しているテーブルを取得する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 月別パーティションが存在する場合は請求年月専用のテーブル、存在しない場合は共有テーブル
+	 */
+	public BillingTables tablesFor(Date date) {
+		Integer slot = publishedSlot(date);
+		return slot != null ? BillingTables.forMonth(date, slot) : BillingTables.SHARED;
+	}
+
+	/**
+	 * 請求年月の請求データ・請求明細データを書き込むテーブルを取得する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 作成中のテーブルが存在する場合は作成中のテーブル、存在しない場合は公開しているテーブル
+	 */
+	public BillingTables writeTablesFor(Date date) {
+		BillingTables staging = stagingTablesFor(date);
+		return tableExists(staging.billingData()) ? staging : tablesFor(date);
+	}
+
+	/**
+	 * 請求年月の月別パーティションが存在するか確認する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 存在する場合はtrue
+	 */
+	public boolean hasPartition(Date date) {
+		return publishedSlot(date) != null;
+	}
+
+	/**
+	 * 請求年月を作成し直すテーブル(公開中でない方の組)を作成する
+	 *
+	 * 前回の作成中のテーブルが残っている場合は削除してから作成する。
+	 * 作成したテーブルはpublishで公開するまでビューから参照されない。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 作成したテーブル
+	 */
+	public BillingTables createStaging(Date date) {
+		BillingTables tables = stagingTablesFor(date);
+		dropTables(tables);
+		String billingYm = "DATE '" + date + "'";
+		jdbcTemplate.execute("CREATE TABLE " + tables.billingData() + " ("
+				+ "billing_ym DATE NOT NULL CHECK (billing_ym = " + billingYm + "), "
+				+ "member_id INTEGER NOT NULL, "
+				+ "mail VARCHAR(256) NOT NULL, "
+				+ "name VARCHAR(32) NOT NULL, "
+				+ "address VARCHAR(128) NOT NULL, "
+				+ "start_date DATE NOT NULL, "
+				+ "end_date DATE, "
+				+ "payment_method INTEGER NOT NULL, "
+				+ "amount NUMBER(10,0) NOT NULL, "
+				+ "tax_ratio NUMBER(5,2) NOT NULL, "
+				+ "total NUMBER(10,0) NOT NULL, "
+				+ "charge_set_id INTEGER, "
+				+ "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+				+ "modified_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+				+ "PRIMARY KEY (member_id), "
+				+ "FOREIGN KEY (billing_ym) REFERENCES T_BILLING_STATUS(billing_ym), "
+				+ "FOREIGN KEY (charge_set_id) REFERENCES T_BILLING_CHARGE_SET(charge_set_id))");
+		jdbcTemplate.execute("CREATE TABLE " + tables.billingDetailData() + " ("
+				+ "billing_ym DATE NOT NULL CHECK (billing_ym = " + billingYm + "), "
+				+ "member_id INTEGER NOT NULL, "
+				+ "charge_id INTEGER NOT NULL, "
+				+ "name VARCHAR(64) NOT NULL, "
+				+ "amount NUMBER(10,0) NOT NULL, "
+				+ "start_date DATE NOT NULL, "
+				+ "end_date DATE, "
+				+ "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+				+ "modified_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+				+ "PRIMARY KEY (member_id, charge_id), "
+				+ "FOREIGN KEY (member_id) REFERENCES " + tables.billingData() + "(member_id))");
+		logger.info("作成中の月別パーティション{}, {}を作成しました。", tables.billingData(),
+				tables.billingDetailData());
+		return tables;
+	}
+
+	/**
+	 * 作成中のテーブルを公開する(請求年月のトランザクションのコミット後に呼び出す)
+	 *
+	 * 公開する組を切り替えてビューを作成し直した後、それまで公開していたテーブルを削除する。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 公開したテーブル
+	 */
+	public BillingTables publish(Date date) {
+		BillingTables staging = stagingTablesFor(date);
+		if (!tableExists(staging.billingData())) {
+			throw new IllegalStateException(staging.billingData() + "が存在しないため、公開できません。");
+		}
+		Integer publishedSlot = publishedSlot(date);
+		jdbcTemplate.update("MERGE INTO T_BILLING_PARTITION(billing_ym, slot) KEY(billing_ym) VALUES (?, ?)",
+				date, publishedSlot == null || publishedSlot == 1 ? 0 : 1);
+		refreshViews();
+		if (publishedSlot != null) {
+			dropTables(BillingTables.forMonth(date, publishedSlot));
+		}
+		logger.info("月別パーティション{}, {}を公開しました。", staging.billingData(),
+				staging.billingDetailData());
+		return staging;
+	}
+
+	/**
+	 * 作成中のテーブルを削除する(作成に失敗した場合・差分更新の前に呼び出す)
+	 *
+	 * 公開中のテーブルは変更しない。請求データ状況の作成日時は公開中の請求データと一致しなくなるため消去する
+	 * (次回の差分更新は全件の作成となる)。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 削除した場合はtrue、作成中のテーブルが存在しない場合はfalse
+	 */
+	public boolean discardStaging(Date date) {
+		BillingTables staging = stagingTablesFor(date);
+		if (!tableExists(staging.billingData()) && !tableExists(staging.billingDetailData())) {
+			return false;
+		}
+		dropTables(staging);
+		jdbcTemplate.update("UPDATE T_BILLING_STATUS SET generated_at = NULL WHERE billing_ym = ?",
+				date);
+		logger.info("作成中の月別パーティション{}, {}を削除しました。", staging.billingData(),
+				staging.billingDetailData());
+		return true;
+	}
+
+	/**
+	 * 請求年月の月別パーティション(公開中・作成中のテーブル)を削除する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 削除した場合はtrue、月別パーティションが存在しない場合はfalse
+	 */
+	public boolean dropPartition(Date date) {
+		boolean dropped = false;
+		if (hasPartition(date)) {
+			//ビューが参照しているテーブルは削除できないため、先にビューから外す
+			jdbcTemplate.update("DELETE FROM T_BILLING_PARTITION WHERE billing_ym = ?", date);
+			refreshViews();
+			dropped = true;
+		}
+		for (int slot = 0; slot <= 1; slot++) {
+			dropped |= dropTables(BillingTables.forMonth(date, slot));
+		}
+		if (dropped) {
+			logger.info("{}年{}月分の月別パーティションを削除しました。", date.toLocalDate().getYear(),
+					date.toLocalDate().getMonthValue());
+		}
+		return dropped;
+	}
+
+	/**
+	 * 起動時(schema.sqlの実行後)に、月別パーティションを含めてビューを作成し直す
+	 */
+	@EventListener(ApplicationStartedEvent.class)
+	public void onApplicationStarted() {
+		int count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_BILLING_PARTITION",
+				Integer.class);
+		if (count > 0) {
+			refreshViews();
+		}
+	}
+
+	/**
+	 * 共有テーブルと全ての月別パーティションを参照するビューを作成し直す
+	 */
+	void refreshViews() {
+		List<BillingTables> tablesList = new ArrayList<>();
+		tablesList.add(BillingTables.SHARED);
+		jdbcTemplate.query("SELECT billing_ym, slot FROM T_BILLING_PARTITION ORDER BY billing_ym",
+				(rs, rowNum) -> BillingTables.forMonth(rs.getDate("billing_ym"), rs.getInt("slot")))
+				.forEach(tablesList::add);
+
+		List<String> billingData = new ArrayList<>();
+		List<String> billingDetailData = new ArrayList<>();
+		for (BillingTables tables : tablesList) {
+			billingData.add("SELECT " + BILLING_DATA_COLUMNS + " FROM " + tables.billingData());
+			billingDetailData.add("SELECT " + BILLING_DETAIL_DATA_COLUMNS + " FROM "
+					+ tables.billingDetailData());
+			billingDetailData.add(
+					"SELECT b.billing_ym, b.member_id, i.charge_id, i.name, i.amount, i.start_date, i.end_date FROM "
+							+ tables.billingData()
+							+ " b JOIN T_BILLING_CHARGE_SET_ITEM i ON i.charge_set_id = b.charge_set_id");
+		}
+		jdbcTemplate.execute("CREATE OR REPLACE VIEW V_BILLING_DATA AS "
+				+ String.join(" UNION ALL ", billingData));
+		jdbcTemplate.execute("CREATE OR REPLACE VIEW V_BILLING_DETAIL_DATA AS "
+				+ String.join(" UNION ALL ", billingDetailData));
+	}
+
+	/**
+	 * 公開中のテーブルの組を取得する
+	 *
+	 * @return 公開中のテーブルの組。月別パーティションが存在しない場合はnull
+	 */
+	private Integer publishedSlot(Date date) {
+		List<Integer> slots = jdbcTemplate.queryForList(
+				"SELECT slot FROM T_BILLING_PARTITION WHERE billing_ym = ?", Integer.class, date);
+		return slots.isEmpty() ? null : slots.get(0);
+	}
+
+	/**
+	 * 作成中のテーブル(公開中でない方の組。月別パーティションが存在しない場合は組0)を取得する
+	 */
+	private BillingTables stagingTablesFor(Date date) {
+		Integer slot = publishedSlot(date);
+		return BillingTables.forMonth(date, slot == null || slot == 1 ? 0 : 1);
+	}
+
+	/**
+	 * 存在するテーブルのみ削除する(存在しない場合はDDLを実行しないため、トランザクションはコミットされない)
+	 *
+	 * @return 削除した場合はtrue
+	 */
+	private boolean dropTables(BillingTables tables) {
+		boolean dropped = false;
+		if (tableExists(tables.billingDetailData())) {
+			jdbcTemplate.execute("DROP TABLE " + tables.billingDetailData());
+			dropped = true;
+		}
+		if (tableExists(tables.billingData())) {
+			jdbcTemplate.execute("DROP TABLE " + tables.billingData());
+			dropped = true;
+		}
+		return dropped;
+	}
+
+	private boolean tableExists(String tableName) {
+		int count = jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?",
+				Integer.class, tableName);
+		return count > 0;
+	}
+}
@@ -0,0 +1,125 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 請求年月ごとの請求プラン
+ *
+ * 請求年月に有効な料金情報と料金合計を請求年月ごとに一度だけ読み込んで保持する。
+ * 加入者ごとの請求データ作成では、このプランを使い回して料金情報の検索や型変換を行わない。
+ */
+public final class BillingPlan {
+	/** 税率 */
+	public static final double TAX_RATIO = 0.1;
+
+	/**
+	 * 請求明細データとなる料金情報
+	 *
+	 * @param chargeId 料金ID
+	 * @param name 料金名
+	 * @param amount 月額料金
+	 * @param startDate 適用開始日
+	 * @param endDate 適用終了日
+	 */
+	public record Charge(int chargeId, String name, int amount, Timestamp startDate,
+			Timestamp endDate) {
+	}
+
+	private final Date billingYm;
+	private final Charge[] charges;
+	private final int total;
+	private final double taxIncludedTotal;
+
+	private BillingPlan(Date billingYm, List<Charge> charges) {
+		this.billingYm = billingYm;
+		this.charges = charges.toArray(new Charge[0]);
+		int sum = 0;
+		for (Charge charge : this.charges) {
+			sum += charge.amount();
+		}
+		this.total = sum;
+		this.taxIncludedTotal = total + (total * TAX_RATIO);
+	}
+
+	/**
+	 * 有効な料金情報から請求プランを作成する
+	 *
+	 * @param billingYm 請求年月(月初日)
+	 * @param charges 請求年月に有効な料金情報
+	 * @return 請求プラン
+	 * @throws NoActiveChargeException 有効な料金情報が存在しない場合
+	 */
+	public static BillingPlan of(Date billingYm, List<Charge> charges) {
+		if (charges.isEmpty()) {
+			throw new NoActiveChargeException(billingYm);
+		}
+		return new BillingPlan(billingYm, charges);
+	}
+
+	/**
+	 * 請求年月に有効な料金情報をデータベースから読み込み、請求プランを作成する
+	 *
+	 * @param jdbcTemplate JdbcTemplate
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @return 請求プラン
+	 * @throws NoActiveChargeException 有効な料金情報が存在しない場合
+	 */
+	public static BillingPlan load(JdbcTemplate jdbcTemplate, Date date, Date lastDate) {
+		return of(date, loadCharges(jdbcTemplate, date, lastDate));
+	}
+
+	/**
+	 * 期間内に有効な料金情報を料金IDの昇順でデータベースから読み込む
+	 *
+	 * @param jdbcTemplate JdbcTemplate
+	 * @param date 期間の開始日
+	 * @param lastDate 期間の終了日
+	 * @return 期間内に有効な料金情報
+	 */
+	public static List<Charge> loadCharges(JdbcTemplate jdbcTemplate, Date date, Date lastDate) {
+		return jdbcTemplate.query(
+				"SELECT charge_id, name, amount, start_date, end_date FROM T_CHARGE WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?) ORDER BY charge_id",
+				(rs, rowNum) -> new Charge(
+						rs.getInt("charge_id"),
+						rs.getString("name"),
+						rs.getInt("amount"),
+						rs.getTimestamp("start_date"),
+						rs.getTimestamp("end_date")),
+				lastDate, date);
+	}
+
+	public Date getBillingYm() {
+		return billingYm;
+	}
+
+	/**
+	 * 料金情報の件数を取得する
+	 *
+	 * @return 料金情報の件数
+	 */
+	public int size() {
+		return charges.length;
+	}
+
+	/**
+	 * 料金情報を取得する
+	 *
+	 * @param index 料金情報の位置(料金IDの昇順)
+	 * @return 料金情報
+	 */
+	public Charge getCharge(int index) {
+		return charges[index];
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public double getTaxIncludedTotal() {
+		return taxIncludedTotal;
+	}
+}
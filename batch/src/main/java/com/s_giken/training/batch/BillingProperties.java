@@ -0,0 +1,96 @@
+package com.s_giken.training.batch;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import lombok.Data;
+
+/**
+ * 請求バッチの設定値クラス
+ *
+ * application.propertiesの「billing.」で始まる設定値を保持する。
+ */
+@Data
+@ConfigurationProperties(prefix = "billing")
+public class BillingProperties {
+	/**
+	 * 請求データ・請求明細データの書き込み方式
+	 */
+	public enum WriteMode {
+		/** 1件ごとにINSERT文を発行する */
+		ROW,
+		/** JDBCバッチでまとめてINSERT文を発行する */
+		BATCH,
+		/** 一時ファイル(CSV)に書き出し、CSVREADでまとめて取り込む */
+		BULK
+	}
+
+	/**
+	 * バッチ書き込み時にバッファをデータベースへ送信するタイミング
+	 */
+	public enum FlushPolicy {
+		/** バッファ内の請求明細データ件数がバッチサイズに達したら送信する */
+		ROWS,
+		/** バッファ内の請求データ件数(加入者数)がバッチサイズに達したら送信する */
+		MEMBERS
+	}
+
+	/**
+	 * 加入者情報の読み込み方式
+	 */
+	public enum ReadMode {
+		/** 全件をリストに読み込んでから処理する */
+		LIST,
+		/** 前方向専用カーソルで1件ずつ読み込みながら処理する */
+		STREAM,
+		/** 別スレッドで前方向専用カーソルから読み込み、上限付きのキューを介して書き込みと並行して処理する */
+		PIPELINED
+	}
+
+	/**
+	 * 請求データの作成方式
+	 */
+	public enum Engine {
+		/** 加入者×料金のループをJavaで処理し、1行ずつ請求データを作成する */
+		JAVA,
+		/** INSERT ... SELECTの集合演算でデータベースに請求データを作成させる */
+		SQL
+	}
+
+	/**
+	 * 請求明細データの保存形式
+	 */
+	public enum DetailStorage {
+		/** 加入者ごとに全料金分の請求明細データを保存する */
+		EXPANDED,
+		/** 料金情報の組み合わせを料金セットとして1組だけ保存し、請求データから参照する */
+		COMPACT
+	}
+
+	/**
+	 * 請求データ・請求明細データの保存先
+	 */
+	public enum MonthStorage {
+		/** 全請求年月で共有するテーブルに保存する */
+		SHARED,
+		/** 請求年月専用のテーブル(月別パーティション)に保存し、請求年月の削除はテーブルの削除で行う */
+		PARTITIONED
+	}
+
+	private Engine engine = Engine.JAVA;
+	private WriteMode writeMode = WriteMode.BATCH;
+	private int batchSize = 1000;
+	private String stagingDir = "staging";
+	private int bulkBufferSize = 65536;
+	private FlushPolicy flushPolicy = FlushPolicy.ROWS;
+	private ReadMode readMode = ReadMode.STREAM;
+	private int fetchSize = 1000;
+	private int pipelineQueueCapacity = 4;
+	private int parallelism = 1;
+	private int partitionCount = 0;
+	private int chunkSize = 0;
+	private DetailStorage detailStorage = DetailStorage.EXPANDED;
+	private MonthStorage monthStorage = MonthStorage.SHARED;
+	private String summaryDir = "summary";
+	private String exportDir = "export";
+	private boolean exportGzip = false;
+	private int exportBufferSize = 65536;
+}
@@ -0,0 +1,181 @@
+package com.s_giken.training.batch;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 請求バッチの実行結果の概要(処理時間・件数・スループット・ヒープ使用量)をJSONファイルに出力するクラス
+ *
+ * 月ごとの処理性能の推移を比較できるよう、実行ごとに別のファイル(billing-summary-yyyyMMddHHmmss.json)を出力する。
+ * ヒープ使用量のピーク値は、実行中に一定間隔でヒープ全体の使用量を取得した値の最大値とする
+ * (ヒープ領域ごとのピーク値はそれぞれ異なる時点の値のため、合計してもヒープ全体のピーク値にならない)。
+ */
+@Component
+public class BillingRunSummary {
+	private static final DateTimeFormatter FILE_NAME_FORMAT =
+			DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneId.systemDefault());
+	private static final long HEAP_SAMPLE_INTERVAL_MILLIS = 100;
+
+	private final Logger logger = LoggerFactory.getLogger(BillingRunSummary.class);
+	private final BillingMetrics billingMetrics;
+	private final BillingProperties billingProperties;
+	private final ObjectMapper objectMapper =
+			new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+	private final AtomicLong peakHeapBytes = new AtomicLong();
+	private ScheduledExecutorService heapSampler;
+
+	/**
+	 * 実行結果出力クラスのコンストラクタ
+	 *
+	 * @param billingMetrics 請求バッチ計測クラス
+	 * @param billingProperties 請求バッチの設定値
+	 */
+	public BillingRunSummary(BillingMetrics billingMetrics, BillingProperties billingProperties) {
+		this.billingMetrics = billingMetrics;
+		this.billingProperties = billingProperties;
+	}
+
+	/**
+	 * ヒープ使用量の取得を開始する(請求バッチの実行開始時に呼び出す。実行結果の出力時に終了する)
+	 */
+	public synchronized void startHeapSampling() {
+		stopHeapSampling();
+		peakHeapBytes.set(0);
+		sampleHeap();
+		heapSampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "heap-sampler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		heapSampler.scheduleAtFixedRate(this::sampleHeap, HEAP_SAMPLE_INTERVAL_MILLIS,
+				HEAP_SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * ヒープ使用量の取得を終了する(実行結果の出力時・アプリケーションの終了時)
+	 */
+	@PreDestroy
+	public synchronized void stopHeapSampling() {
+		if (heapSampler != null) {
+			heapSampler.shutdownNow();
+			heapSampler = null;
+		}
+	}
+
+	/**
+	 * 実行結果の概要をJSONファイルに出力する
+	 *
+	 * @param startedAt 実行開始日時
+	 * @param finishedAt 実行終了日時
+	 * @param args コマンドライン引数
+	 */
+	public void write(Instant startedAt, Instant finishedAt, List<String> args) {
+		sampleHeap();
+		stopHeapSampling();
+		String summaryDir = billingProperties.getSummaryDir();
+		if (summaryDir == null || summaryDir.isBlank()) {
+			return;
+		}
+		Path file = Path.of(summaryDir,
+				"billing-summary-" + FILE_NAME_FORMAT.format(startedAt) + ".json");
+		try {
+			Files.createDirectories(file.getParent());
+			objectMapper.writeValue(file.toFile(), summarize(startedAt, finishedAt, args));
+			logger.info("実行結果を" + file + "に出力しました。");
+		} catch (IOException e) {
+			logger.error("実行結果の出力中にエラーが発生しました。", e);
+		}
+	}
+
+	private Map<String, Object> summarize(Instant startedAt, Instant finishedAt, List<String> args) {
+		long durationNanos = Duration.between(startedAt, finishedAt).toNanos();
+		long billingDataCount = 0;
+		long billingDetailDataCount = 0;
+		List<Map<String, Object>> months = new ArrayList<>();
+		for (BillingMetrics.MonthResult monthResult : billingMetrics.getMonthResults()) {
+			Map<String, Object> month = new LinkedHashMap<>();
+			month.put("billingYm", monthResult.yearMonth().toString());
+			month.put("result", monthResult.result());
+			month.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(monthResult.durationNanos()));
+			month.put("billingDataRows", monthResult.billingDataCount());
+			month.put("billingDetailDataRows", monthResult.billingDetailDataCount());
+			month.put("rowsPerSecond", rowsPerSecond(
+					monthResult.billingDataCount() + monthResult.billingDetailDataCount(),
+					monthResult.durationNanos()));
+			months.add(month);
+			billingDataCount += monthResult.billingDataCount();
+			billingDetailDataCount += monthResult.billingDetailDataCount();
+		}
+
+		Map<String, Object> phases = new LinkedHashMap<>();
+		for (Timer timer : billingMetrics.getPhaseTimers()) {
+			Map<String, Object> phase = new LinkedHashMap<>();
+			phase.put("count", timer.count());
+			phase.put("totalMillis", (long) timer.totalTime(TimeUnit.MILLISECONDS));
+			phase.put("maxMillis", (long) timer.max(TimeUnit.MILLISECONDS));
+			phases.put(timer.getId().getTag("phase"), phase);
+		}
+
+		Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("engine", billingProperties.getEngine());
+		settings.put("writeMode", billingProperties.getWriteMode());
+		settings.put("batchSize", billingProperties.getBatchSize());
+		settings.put("readMode", billingProperties.getReadMode());
+		settings.put("fetchSize", billingProperties.getFetchSize());
+		settings.put("pipelineQueueCapacity", billingProperties.getPipelineQueueCapacity());
+		settings.put("parallelism", billingProperties.getParallelism());
+		settings.put("chunkSize", billingProperties.getChunkSize());
+		settings.put("detailStorage", billingProperties.getDetailStorage());
+		settings.put("monthStorage", billingProperties.getMonthStorage());
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("arguments", args);
+		summary.put("startedAt", startedAt.toString());
+		summary.put("finishedAt", finishedAt.toString());
+		summary.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(durationNanos));
+		summary.put("billingDataRows", billingDataCount);
+		summary.put("billingDetailDataRows", billingDetailDataCount);
+		summary.put("rowsPerSecond",
+				rowsPerSecond(billingDataCount + billingDetailDataCount, durationNanos));
+		summary.put("peakHeapBytes", peakHeapBytes.get());
+		summary.put("heapSampleIntervalMillis", HEAP_SAMPLE_INTERVAL_MILLIS);
+		summary.put("settings", settings);
+		summary.put("months", months);
+		summary.put("phases", phases);
+		return summary;
+	}
+
+	private static long rowsPerSecond(long rows, long nanos) {
+		return nanos > 0 ? rows * TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+	}
+
+	/**
+	 * ヒープ全体の使用量を取得し、ピーク値を更新する
+	 */
+	private void sampleHeap() {
+		peakHeapBytes.accumulateAndGet(memoryMXBean.getHeapMemoryUsage().getUsed(), Math::max);
+	}
+}
@@ -0,0 +1,44 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 請求年月の請求データ・請求明細データを保存するテーブル名
+ *
+ * @param billingData 請求データのテーブル名
+ * @param billingDetailData 請求明細データのテーブル名
+ */
+public record BillingTables(String billingData, String billingDetailData) {
+	/**
+	 * 全請求年月で共有するテーブル
+	 */
+	public static final BillingTables SHARED =
+			new BillingTables("T_BILLING_DATA", "T_BILLING_DETAIL_DATA");
+
+	private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+	/**
+	 * 請求年月専用のテーブル名を取得する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return 請求年月専用のテーブル名(T_BILLING_DATA_yyyyMM, T_BILLING_DETAIL_DATA_yyyyMM)
+	 */
+	public static BillingTables forMonth(Date date) {
+		return forMonth(date, 0);
+	}
+
+	/**
+	 * 請求年月専用のテーブルの組を指定して、テーブル名を取得する
+	 *
+	 * 作成し直す請求年月は公開中でない方の組に作成し、完了後に公開する組を切り替える。
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param slot テーブルの組(0または1)
+	 * @return 請求年月専用のテーブル名(組0はT_BILLING_DATA_yyyyMM、組1はT_BILLING_DATA_yyyyMM_1)
+	 */
+	public static BillingTables forMonth(Date date, int slot) {
+		String suffix = date.toLocalDate().format(SUFFIX_FORMAT) + (slot == 0 ? "" : "_" + slot);
+		return new BillingTables("T_BILLING_DATA_" + suffix, "T_BILLING_DETAIL_DATA_" + suffix);
+	}
+}
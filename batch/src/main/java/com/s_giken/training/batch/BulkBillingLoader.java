@@ -0,0 +1,193 @@
+package com.s_giken.training.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 請求データ・請求明細データを一時ファイル(CSV)に書き出し、CSVREADでまとめて取り込むクラス
+ *
+ * 一時ファイルへはExportFileWriterで順次書き込み、取り込みは「INSERT INTO ... SELECT ... FROM CSVREAD(...)」の
+ * 1文で行うため、行ごとのINSERT文の送信・解析が不要になる。取り込みは呼び出し元のトランザクション内で実行される。
+ * CSVREADはデータベースサーバー側のファイルを読み込むため、データベースと同じマシン(組み込みモード)でのみ使用できる。
+ *
+ * 一時ファイルの形式はヘッダー行なしのCSVで、文字列は常にダブルクォートで囲み、nullは空の項目(囲まない)で表す。
+ */
+final class BulkBillingLoader implements Closeable {
+	private static final String BILLING_DATA_COLUMNS =
+			"billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total, charge_set_id";
+	private static final String BILLING_DETAIL_DATA_COLUMNS =
+			"billing_ym, member_id, charge_id, name, amount, start_date, end_date";
+
+	private final BillingTables tables;
+	private final Path billingDataPath;
+	private final Path billingDetailDataPath;
+	private final ExportFileWriter billingDataWriter;
+	private final ExportFileWriter billingDetailDataWriter;
+	private final StringBuilder line = new StringBuilder();
+	private boolean closed = false;
+
+	/**
+	 * 一時ファイルを作成する
+	 *
+	 * @param stagingDir 一時ファイルの作成先ディレクトリ
+	 * @param bufferSize 一時ファイルの書き込みバッファのサイズ(バイト)
+	 * @param tables 取り込み先のテーブル
+	 * @param detail 請求明細データも書き出す場合はtrue(コンパクト形式の場合はfalse)
+	 * @throws IOException 一時ファイルを作成できない場合
+	 */
+	BulkBillingLoader(Path stagingDir, int bufferSize, BillingTables tables, boolean detail)
+			throws IOException {
+		this.tables = tables;
+		Files.createDirectories(stagingDir);
+		this.billingDataPath =
+				Files.createTempFile(stagingDir, "billing-data-", ".csv").toAbsolutePath();
+		this.billingDataWriter = new ExportFileWriter(billingDataPath, false, bufferSize);
+		if (detail) {
+			this.billingDetailDataPath = Files
+					.createTempFile(stagingDir, "billing-detail-data-", ".csv").toAbsolutePath();
+			this.billingDetailDataWriter =
+					new ExportFileWriter(billingDetailDataPath, false, bufferSize);
+		} else {
+			this.billingDetailDataPath = null;
+			this.billingDetailDataWriter = null;
+		}
+	}
+
+	/**
+	 * 請求データ1件を一時ファイルに書き出す
+	 *
+	 * @param plan 請求年月の請求プラン
+	 * @param member 加入者情報
+	 * @param chargeSetId 請求データが参照する料金セットID(請求明細データを展開して保存する場合はnull)
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	void writeBillingData(BillingPlan plan, BillingMember member, Integer chargeSetId)
+			throws IOException {
+		line.setLength(0);
+		line.append(plan.getBillingYm());
+		line.append(',').append(member.memberId());
+		appendString(member.mail());
+		appendString(member.name());
+		appendString(member.address());
+		appendTimestamp(member.startDate());
+		appendTimestamp(member.endDate());
+		line.append(',').append(member.paymentMethod());
+		line.append(',').append(plan.getTotal());
+		line.append(',').append(BillingPlan.TAX_RATIO);
+		line.append(',').append(plan.getTaxIncludedTotal());
+		line.append(',');
+		if (chargeSetId != null) {
+			line.append(chargeSetId.intValue());
+		}
+		billingDataWriter.writeLine(line);
+	}
+
+	/**
+	 * 請求明細データ1件を一時ファイルに書き出す
+	 *
+	 * @param plan 請求年月の請求プラン
+	 * @param member 加入者情報
+	 * @param charge 料金情報
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	void writeBillingDetailData(BillingPlan plan, BillingMember member, BillingPlan.Charge charge)
+			throws IOException {
+		line.setLength(0);
+		line.append(plan.getBillingYm());
+		line.append(',').append(member.memberId());
+		line.append(',').append(charge.chargeId());
+		appendString(charge.name());
+		line.append(',').append(charge.amount());
+		appendTimestamp(charge.startDate());
+		appendTimestamp(charge.endDate());
+		billingDetailDataWriter.writeLine(line);
+	}
+
+	/**
+	 * 一時ファイルを閉じ、請求データ・請求明細データの順にテーブルへ取り込む
+	 *
+	 * 請求明細データは請求データを外部キーで参照するため、請求データを先に取り込む。
+	 *
+	 * @param jdbcTemplate 取り込みに使用するJdbcTemplate
+	 * @return 請求データ・請求明細データの取り込み件数(請求明細データを書き出さない場合は0件)
+	 * @throws IOException 一時ファイルを閉じられない場合
+	 */
+	int[] load(JdbcTemplate jdbcTemplate) throws IOException {
+		closeWriters();
+		int billingDataCount = jdbcTemplate.update("INSERT INTO " + tables.billingData() + "("
+				+ BILLING_DATA_COLUMNS + ") "
+				+ "SELECT CAST(billing_ym AS DATE), CAST(member_id AS INTEGER), mail, name, address, "
+				+ "CAST(start_date AS TIMESTAMP), CAST(end_date AS TIMESTAMP), CAST(payment_method AS INTEGER), "
+				+ "CAST(amount AS INTEGER), CAST(tax_ratio AS DOUBLE PRECISION), CAST(total AS DOUBLE PRECISION), "
+				+ "CAST(charge_set_id AS INTEGER) "
+				+ "FROM " + csvRead(billingDataPath, BILLING_DATA_COLUMNS));
+		if (billingDetailDataPath == null) {
+			return new int[] {billingDataCount, 0};
+		}
+		int billingDetailDataCount = jdbcTemplate.update("INSERT INTO "
+				+ tables.billingDetailData() + "(" + BILLING_DETAIL_DATA_COLUMNS + ") "
+				+ "SELECT CAST(billing_ym AS DATE), CAST(member_id AS INTEGER), CAST(charge_id AS INTEGER), name, "
+				+ "CAST(amount AS INTEGER), CAST(start_date AS TIMESTAMP), CAST(end_date AS TIMESTAMP) "
+				+ "FROM " + csvRead(billingDetailDataPath, BILLING_DETAIL_DATA_COLUMNS));
+		return new int[] {billingDataCount, billingDetailDataCount};
+	}
+
+	/**
+	 * 一時ファイルを閉じて削除する
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			closeWriters();
+		} finally {
+			closed = true;
+			Files.deleteIfExists(billingDataPath);
+			if (billingDetailDataPath != null) {
+				Files.deleteIfExists(billingDetailDataPath);
+			}
+		}
+	}
+
+	private void closeWriters() throws IOException {
+		try {
+			billingDataWriter.close();
+		} finally {
+			if (billingDetailDataWriter != null) {
+				billingDetailDataWriter.close();
+			}
+		}
+	}
+
+	/**
+	 * 一時ファイルを読み込むCSVREAD関数の呼び出しを作成する(列名は大文字で指定する)
+	 */
+	private static String csvRead(Path path, String columns) {
+		return "CSVREAD('" + path.toString().replace("'", "''") + "', '"
+				+ columns.replace(" ", "").toUpperCase() + "', 'charset=UTF-8')";
+	}
+
+	/**
+	 * 文字列の項目を追加する(空文字とnullを区別するため、常にダブルクォートで囲む)
+	 */
+	private void appendString(String value) {
+		line.append(',');
+		if (value == null) {
+			return;
+		}
+		line.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+
+	private void appendTimestamp(Timestamp value) {
+		line.append(',');
+		if (value != null) {
+			line.append(value);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import com.s_giken.training.common.EffectiveDateIndex;
+
+/**
+ * 請求バッチの実行中に料金情報を保持する料金カタログ
+ *
+ * 請求対象期間(複数月)に有効な料金情報をまとめて一度だけ読み込み、請求年月ごとの請求プランをメモリ上で作成して使い回す。
+ * 読み込んでいない期間の請求プランを要求された場合は、データベースから読み込んで作成する(使い回さない)。
+ * 読み込んだ料金情報は適用期間の索引(EffectiveDateIndex)に格納し、請求年月ごとに全件を走査せずに抽出する。
+ */
+@Component
+public class ChargeCatalog {
+	/**
+	 * 読み込んだ料金情報と作成済みの請求プラン
+	 */
+	private record Snapshot(Date from, Date to,
+			EffectiveDateIndex<Integer, BillingPlan.Charge> charges, Map<Date, BillingPlan> plans) {
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private volatile Snapshot snapshot;
+
+	/**
+	 * 料金カタログのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 */
+	public ChargeCatalog(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * 請求対象期間に有効な料金情報を読み込む
+	 *
+	 * @param from 請求対象期間の開始日(最初の請求年月の月初日)
+	 * @param to 請求対象期間の終了日(最後の請求年月の月末日)
+	 */
+	public void load(Date from, Date to) {
+		List<BillingPlan.Charge> charges = BillingPlan.loadCharges(jdbcTemplate, from, to);
+		snapshot = new Snapshot(from, to,
+				EffectiveDateIndex.of(charges, BillingPlan.Charge::chargeId,
+						BillingPlan.Charge::startDate, BillingPlan.Charge::endDate),
+				new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * 読み込んだ料金情報と作成済みの請求プランを破棄する
+	 */
+	public void clear() {
+		snapshot = null;
+	}
+
+	/**
+	 * 請求年月の請求プランを取得する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @return 請求プラン
+	 * @throws NoActiveChargeException 有効な料金情報が存在しない場合
+	 */
+	public BillingPlan getPlan(Date date, Date lastDate) {
+		Snapshot current = snapshot;
+		if (current == null || date.before(current.from()) || lastDate.after(current.to())) {
+			return BillingPlan.load(jdbcTemplate, date, lastDate);
+		}
+		return current.plans().computeIfAbsent(date,
+				billingYm -> BillingPlan.of(billingYm, filter(current.charges(), date, lastDate)));
+	}
+
+	/**
+	 * 請求年月に有効な料金情報を料金IDの昇順で抽出する
+	 *
+	 * データベースの検索条件(start_date <= 月末日 AND (end_date IS NULL OR end_date >= 月初日))と同じ判定を行う。
+	 */
+	private static List<BillingPlan.Charge> filter(
+			EffectiveDateIndex<Integer, BillingPlan.Charge> charges, Date date, Date lastDate) {
+		Timestamp firstDay = Timestamp.valueOf(date.toLocalDate().atStartOfDay());
+		Timestamp lastDay = Timestamp.valueOf(lastDate.toLocalDate().atStartOfDay());
+		return charges.findEffective(firstDay, lastDay);
+	}
+}
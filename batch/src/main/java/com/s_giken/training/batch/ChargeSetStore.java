@@ -0,0 +1,99 @@
+package com.s_giken.training.batch;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.util.HexFormat;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 請求明細データの料金セットを保存するクラス(コンパクト形式)
+ *
+ * 請求年月の料金情報の組み合わせを料金セットとして1組だけ保存し、請求データからは料金セットIDで参照する。
+ * 同じ組み合わせの料金セットが既に存在する場合は、そのIDを使い回す。
+ */
+@Component
+public class ChargeSetStore {
+	private final JdbcTemplate jdbcTemplate;
+
+	/**
+	 * 料金セット保存クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 */
+	public ChargeSetStore(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * 請求プランの料金情報と同じ料金セットのIDを取得する。存在しない場合は料金セットを保存する。
+	 *
+	 * @param plan 請求年月の請求プラン
+	 * @return 料金セットID
+	 */
+	public int findOrCreate(BillingPlan plan) {
+		Date billingYm = plan.getBillingYm();
+		String hash = hash(plan);
+		Integer chargeSetId = find(billingYm, hash);
+		if (chargeSetId != null) {
+			return chargeSetId;
+		}
+
+		jdbcTemplate.update(
+				"INSERT INTO T_BILLING_CHARGE_SET(billing_ym, charge_set_hash) VALUES (?, ?)",
+				billingYm, hash);
+		int createdId = find(billingYm, hash);
+		for (int i = 0; i < plan.size(); i++) {
+			BillingPlan.Charge charge = plan.getCharge(i);
+			jdbcTemplate.update(
+					"INSERT INTO T_BILLING_CHARGE_SET_ITEM(charge_set_id, charge_id, name, amount, start_date, end_date) VALUES (?, ?, ?, ?, ?, ?)",
+					createdId, charge.chargeId(), charge.name(), charge.amount(),
+					charge.startDate(), charge.endDate());
+		}
+		return createdId;
+	}
+
+	/**
+	 * 請求年月の料金セットを削除する
+	 *
+	 * @param billingYm 請求年月(月初日)
+	 */
+	public void deleteByBillingYm(Date billingYm) {
+		jdbcTemplate.update(
+				"DELETE FROM T_BILLING_CHARGE_SET_ITEM WHERE charge_set_id IN (SELECT charge_set_id FROM T_BILLING_CHARGE_SET WHERE billing_ym = ?)",
+				billingYm);
+		jdbcTemplate.update("DELETE FROM T_BILLING_CHARGE_SET WHERE billing_ym = ?", billingYm);
+	}
+
+	private Integer find(Date billingYm, String hash) {
+		List<Integer> ids = jdbcTemplate.queryForList(
+				"SELECT charge_set_id FROM T_BILLING_CHARGE_SET WHERE billing_ym = ? AND charge_set_hash = ?",
+				Integer.class, billingYm, hash);
+		return ids.isEmpty() ? null : ids.get(0);
+	}
+
+	/**
+	 * 料金情報の組み合わせを識別するハッシュ値(SHA-256)を計算する
+	 */
+	private static String hash(BillingPlan plan) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < plan.size(); i++) {
+			BillingPlan.Charge charge = plan.getCharge(i);
+			sb.append(charge.chargeId()).append('\t')
+					.append(charge.name()).append('\t')
+					.append(charge.amount()).append('\t')
+					.append(charge.startDate()).append('\t')
+					.append(charge.endDate()).append('\n');
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of()
+					.formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.PartitionedBillingExecutor.PartitionTask;
+
+/**
+ * 一定の加入者数(チャンク)ごとにコミットしながら請求データを作成するクラス
+ *
+ * チャンクをコミットするたびに、処理済みの最後の加入者IDを請求データ作成チェックポイントに記録する。
+ * 処理が途中で失敗した場合は、チェックポイントの次の加入者から処理を再開できる。
+ */
+@Component
+public class ChunkedBillingExecutor {
+	private final Logger logger = LoggerFactory.getLogger(ChunkedBillingExecutor.class);
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final BillingProperties billingProperties;
+
+	/**
+	 * チャンク単位請求データ作成クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 * @param transactionTemplate TransactionTemplate(SpringのDIコンテナから渡される)
+	 * @param billingProperties 請求バッチの設定値
+	 */
+	public ChunkedBillingExecutor(JdbcTemplate jdbcTemplate,
+			TransactionTemplate transactionTemplate, BillingProperties billingProperties) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.billingProperties = billingProperties;
+	}
+
+	/**
+	 * 請求年月のチェックポイントが存在するか確認する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @return チェックポイントが存在する場合はtrue
+	 */
+	public boolean hasCheckpoint(Date date) {
+		int count = jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM T_BILLING_CHECKPOINT WHERE billing_ym = ?",
+				Integer.class, date);
+		return count > 0;
+	}
+
+	/**
+	 * 有効な加入者を加入者IDの昇順にチャンクへ分割し、チャンクごとにコミットしながら請求データを作成する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param resume チェックポイントから処理を再開する場合はtrue
+	 * @param task 加入者IDの範囲を指定した請求データ作成処理
+	 * @return 請求年月全体の挿入件数(再開前にコミット済みの件数を含む)
+	 */
+	public countInsertBillingDataAndDetailData execute(Date date, Date lastDate, boolean resume,
+			PartitionTask task) {
+		int lastMemberId = Integer.MIN_VALUE;
+		int memberCount = 0;
+		int chargeCount = 0;
+
+		if (resume) {
+			//前回コミット済みのチャンクの続きから再開
+			List<Map<String, Object>> checkpoint = jdbcTemplate.queryForList(
+					"SELECT last_member_id, member_count, charge_count FROM T_BILLING_CHECKPOINT WHERE billing_ym = ?",
+					date);
+			if (!checkpoint.isEmpty()) {
+				lastMemberId = (Integer) checkpoint.get(0).get("last_member_id");
+				memberCount = (Integer) checkpoint.get(0).get("member_count");
+				chargeCount = (Integer) checkpoint.get(0).get("charge_count");
+				logger.info("加入者ID {} まで処理済みのチェックポイントから再開します。", lastMemberId);
+			}
+		}
+
+		int chunkSize = billingProperties.getChunkSize();
+		while (true) {
+			//次のチャンクに含まれる最後の加入者IDを取得
+			Integer chunkLastMemberId = jdbcTemplate.queryForObject(
+					"SELECT MAX(member_id) FROM (SELECT member_id FROM T_MEMBER WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?) AND member_id > ? ORDER BY member_id LIMIT ?)",
+					Integer.class, lastDate, date, lastMemberId, chunkSize);
+			if (chunkLastMemberId == null) {
+				break;
+			}
+
+			//チャンクの請求データ作成とチェックポイントの更新を同じトランザクションでコミット
+			int fromMemberId = lastMemberId + 1;
+			int committedMemberCount = memberCount;
+			int committedChargeCount = chargeCount;
+			countInsertBillingDataAndDetailData chunkResult = transactionTemplate.execute(status -> {
+				countInsertBillingDataAndDetailData result =
+						task.run(fromMemberId, chunkLastMemberId);
+				saveCheckpoint(date, chunkLastMemberId,
+						committedMemberCount + result.getMemberCount(),
+						committedChargeCount + result.getChargeCount());
+				return result;
+			});
+
+			lastMemberId = chunkLastMemberId;
+			memberCount += chunkResult.getMemberCount();
+			chargeCount += chunkResult.getChargeCount();
+			logger.info("加入者ID {} までコミットしました。(請求データ{}件、請求明細データ{}件)", lastMemberId,
+					memberCount, chargeCount);
+		}
+		return new countInsertBillingDataAndDetailData(memberCount, chargeCount);
+	}
+
+	/**
+	 * 請求年月のチェックポイントを登録または更新する
+	 */
+	private void saveCheckpoint(Date date, int lastMemberId, int memberCount, int chargeCount) {
+		jdbcTemplate.update(
+				"MERGE INTO T_BILLING_CHECKPOINT(billing_ym, last_member_id, member_count, charge_count, modified_at) KEY(billing_ym) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)",
+				date, lastMemberId, memberCount, chargeCount);
+	}
+}
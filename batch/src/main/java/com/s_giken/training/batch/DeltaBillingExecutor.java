@@ -0,0 +1,134 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+
+/**
+ * 未確定の請求年月を、前回作成後に変更された加入者分のみ作成し直すクラス
+ *
+ * 請求データ状況の作成日時(generated_at)より後に更新された加入者と、有効でなくなった加入者の請求データを削除し、
+ * 請求データが存在しない有効な加入者の分だけ請求データを作成する。
+ * 料金が変更された場合は全加入者の料金合計が変わるため、差分更新は行わない。
+ */
+@Component
+public class DeltaBillingExecutor {
+	/**
+	 * 条件に一致する加入者の請求データ作成処理
+	 */
+	@FunctionalInterface
+	public interface MemberTask {
+		/**
+		 * 条件に一致する有効な加入者の請求データを作成する
+		 *
+		 * @param memberCondition 加入者テーブル(別名m)に対する追加の検索条件
+		 * @param memberConditionArgs 追加の検索条件のパラメータ
+		 * @return 請求データ・請求明細データの挿入件数
+		 */
+		countInsertBillingDataAndDetailData run(String memberCondition,
+				Object... memberConditionArgs);
+	}
+
+	//前回作成後に更新された加入者、または請求年月に有効でなくなった加入者
+	private static final String CHANGED_MEMBER_CONDITION =
+			"(member_id IN (SELECT member_id FROM T_MEMBER WHERE updated_date > ?) "
+					+ "OR member_id NOT IN (SELECT member_id FROM T_MEMBER WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?)))";
+
+	private final Logger logger = LoggerFactory.getLogger(DeltaBillingExecutor.class);
+	private final JdbcTemplate jdbcTemplate;
+	private final BillingPartitionManager billingPartitionManager;
+
+	/**
+	 * 差分請求データ作成クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 * @param billingPartitionManager 月別パーティション管理クラス
+	 */
+	public DeltaBillingExecutor(JdbcTemplate jdbcTemplate,
+			BillingPartitionManager billingPartitionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.billingPartitionManager = billingPartitionManager;
+	}
+
+	/**
+	 * 前回作成後に変更された加入者分の請求データ・請求明細データを作成し直す
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param task 条件に一致する加入者の請求データ作成処理
+	 * @return 作成し直した請求データ・請求明細データの件数。全件作成し直す必要がある場合はnull
+	 */
+	public countInsertBillingDataAndDetailData execute(Date date, Date lastDate, MemberTask task) {
+		//前回の作成日時を取得
+		List<Timestamp> generatedAt = jdbcTemplate.queryForList(
+				"SELECT generated_at FROM T_BILLING_STATUS WHERE billing_ym = ? AND is_commit = FALSE",
+				Timestamp.class, date);
+		if (generatedAt.isEmpty() || generatedAt.get(0) == null) {
+			logger.info("前回の作成日時が記録された未確定の請求情報がありません。");
+			return null;
+		}
+		Timestamp lastGeneratedAt = generatedAt.get(0);
+		Timestamp startedAt =
+				jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class);
+
+		BillingTables tables = billingPartitionManager.tablesFor(date);
+		if (isChargeChanged(date, lastDate, lastGeneratedAt, tables)) {
+			logger.info("前回作成後に料金情報が変更されています。");
+			return null;
+		}
+
+		//変更された加入者・有効でなくなった加入者の請求明細データ・請求データを削除
+		int deletedChargeCount = jdbcTemplate.update(
+				"DELETE FROM " + tables.billingDetailData() + " WHERE billing_ym = ? AND "
+						+ CHANGED_MEMBER_CONDITION,
+				date, lastGeneratedAt, lastDate, date);
+		int deletedMemberCount = jdbcTemplate.update(
+				"DELETE FROM " + tables.billingData() + " WHERE billing_ym = ? AND "
+						+ CHANGED_MEMBER_CONDITION,
+				date, lastGeneratedAt, lastDate, date);
+		logger.info("請求データ{}件、請求明細データ{}件を削除しました。", deletedMemberCount,
+				deletedChargeCount);
+
+		//請求データが存在しない有効な加入者の請求データを作成
+		countInsertBillingDataAndDetailData result = task.run(
+				"NOT EXISTS (SELECT 1 FROM " + tables.billingData()
+						+ " b WHERE b.billing_ym = ? AND b.member_id = m.member_id)",
+				date);
+
+		//今回の作成日時を記録
+		jdbcTemplate.update("UPDATE T_BILLING_STATUS SET generated_at = ? WHERE billing_ym = ?",
+				startedAt, date);
+		return result;
+	}
+
+	/**
+	 * 前回作成後に請求年月の料金情報が変更されたか確認する
+	 *
+	 * 有効な料金が更新された場合に加え、料金の削除や適用期間の変更で有効な料金の組み合わせが変わった場合も変更ありとする。
+	 */
+	private boolean isChargeChanged(Date date, Date lastDate, Timestamp lastGeneratedAt,
+			BillingTables tables) {
+		int updatedCount = jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM T_CHARGE WHERE updated_date > ? AND start_date <= ? AND (end_date IS NULL OR end_date >= ?) ",
+				Integer.class, lastGeneratedAt, lastDate, date);
+		if (updatedCount > 0) {
+			return true;
+		}
+
+		//請求明細データの料金(全加入者で同じため先頭の加入者分)と現在有効な料金を比較
+		//(コンパクト形式の料金セットも展開して比較するため、ビューから取得する)
+		List<Integer> billedChargeIds = jdbcTemplate.queryForList(
+				"SELECT charge_id FROM V_BILLING_DETAIL_DATA WHERE billing_ym = ? AND member_id = (SELECT MIN(member_id) FROM "
+						+ tables.billingData() + " WHERE billing_ym = ?) ORDER BY charge_id",
+				Integer.class, date, date);
+		List<Integer> activeChargeIds = jdbcTemplate.queryForList(
+				"SELECT charge_id FROM T_CHARGE WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?) ORDER BY charge_id",
+				Integer.class, lastDate, date);
+		return !billedChargeIds.equals(activeChargeIds);
+	}
+}
@@ -0,0 +1,113 @@
+package com.s_giken.training.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 出力ファイルに1行ずつ書き込むクラス
+ *
+ * 文字列をUTF-8でバッファにエンコードし、バッファが一杯になるたびにファイルへ書き込む。
+ * 圧縮しない場合は、ダイレクトバッファをFileChannelに直接書き込む(ヒープ上の配列からのコピーが発生しない)。
+ * gzip圧縮する場合は、圧縮にbyte配列が必要なため、ヒープ上のバッファをGZIPOutputStream(FileChannelの出力ストリーム)に書き込む。
+ * バッファはファイルごとに固定サイズで使い回すため、出力件数に関わらずメモリ使用量は一定になる。
+ */
+final class ExportFileWriter implements Closeable {
+	private final FileChannel channel;
+	private final OutputStream gzipOutput;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final ByteBuffer buffer;
+	private boolean closed = false;
+
+	/**
+	 * 出力ファイルを作成する
+	 *
+	 * @param path 出力ファイルのパス
+	 * @param gzip gzip圧縮する場合はtrue
+	 * @param bufferSize バッファのサイズ(バイト)
+	 * @throws IOException ファイルを作成できない場合
+	 */
+	ExportFileWriter(Path path, boolean gzip, int bufferSize) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		if (gzip) {
+			try {
+				this.gzipOutput =
+						new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			this.buffer = ByteBuffer.allocate(bufferSize);
+		} else {
+			this.gzipOutput = null;
+			this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+	}
+
+	/**
+	 * 1行分の文字列と改行を書き込む
+	 *
+	 * @param line 書き込む文字列(改行を含まない)
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	void writeLine(CharSequence line) throws IOException {
+		encode(CharBuffer.wrap(line));
+		encode(CharBuffer.wrap("\n"));
+	}
+
+	/**
+	 * バッファに残っている内容を書き込んでファイルを閉じる(閉じた後に呼び出した場合は何もしない)
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		//gzip圧縮する場合は、GZIPOutputStreamを閉じるとFileChannelも閉じられる
+		try (Closeable output = gzipOutput != null ? gzipOutput : channel) {
+			encoder.encode(CharBuffer.allocate(0), buffer, true);
+			encoder.flush(buffer);
+			drain();
+		}
+	}
+
+	private void encode(CharBuffer chars) throws IOException {
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, false);
+			if (result.isOverflow()) {
+				drain();
+			} else if (result.isUnderflow()) {
+				return;
+			} else {
+				result.throwException();
+			}
+		}
+	}
+
+	/**
+	 * バッファの内容をファイルに書き込み、バッファを空にする
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		if (gzipOutput != null) {
+			gzipOutput.write(buffer.array(), 0, buffer.limit());
+		} else {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,17 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+
+/**
+ * 請求年月に有効な料金情報が存在しない場合の例外クラス
+ */
+public class NoActiveChargeException extends RuntimeException {
+	/**
+	 * コンストラクタ
+	 *
+	 * @param billingYm 請求年月(月初日)
+	 */
+	public NoActiveChargeException(Date billingYm) {
+		super(String.format("%sに有効な料金情報が存在しません。", billingYm));
+	}
+}
@@ -0,0 +1,188 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+
+/**
+ * 加入者IDの範囲で分割した請求データ作成を並列に実行するクラス
+ *
+ * 有効な加入者を加入者IDの順に件数がほぼ等しくなるように分割し(NTILE)、分割した範囲(パーティション)ごとに
+ * ワーカースレッドを割り当て、それぞれ別の接続・トランザクションで処理する。
+ * いずれかのパーティションが失敗した場合は、全パーティションの終了を待ってから請求年月の請求情報を削除し、
+ * 一部のパーティションのみコミットされた状態を残さない。
+ */
+@Component
+public class PartitionedBillingExecutor {
+	/**
+	 * パーティション1つ分の請求データ作成処理
+	 */
+	@FunctionalInterface
+	public interface PartitionTask {
+		/**
+		 * 加入者IDの範囲を指定して請求データを作成する
+		 *
+		 * @param fromMemberId 対象とする加入者IDの下限(この値を含む)
+		 * @param toMemberId 対象とする加入者IDの上限(この値を含む)
+		 * @return 請求データ・請求明細データの挿入件数
+		 */
+		countInsertBillingDataAndDetailData run(int fromMemberId, int toMemberId);
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(PartitionedBillingExecutor.class);
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final BillingProperties billingProperties;
+
+	/**
+	 * 並列請求データ作成クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 * @param transactionTemplate TransactionTemplate(SpringのDIコンテナから渡される)
+	 * @param billingProperties 請求バッチの設定値
+	 */
+	public PartitionedBillingExecutor(JdbcTemplate jdbcTemplate,
+			TransactionTemplate transactionTemplate, BillingProperties billingProperties) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.billingProperties = billingProperties;
+	}
+
+	/**
+	 * 有効な加入者を加入者IDの範囲で分割し、パーティションごとに並列で請求データを作成する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param task パーティション1つ分の請求データ作成処理
+	 * @param rollback いずれかのパーティションが失敗した場合に、コミット済みのパーティションを取り消す処理
+	 *        (全パーティションの終了後に、トランザクション内で実行する)
+	 * @return 全パーティションの挿入件数の合計
+	 */
+	public countInsertBillingDataAndDetailData execute(Date date, Date lastDate,
+			PartitionTask task, Runnable rollback) {
+		int parallelism = billingProperties.getParallelism();
+		int partitionCount = billingProperties.getPartitionCount() > 0
+				? billingProperties.getPartitionCount()
+				: parallelism;
+		List<int[]> partitions = split(date, lastDate, partitionCount);
+		if (partitions.isEmpty()) {
+			return new countInsertBillingDataAndDetailData(0, 0);
+		}
+		logger.info("加入者ID {}～{} を{}個のパーティションに分割し、{}スレッドで処理します。",
+				partitions.get(0)[0], partitions.get(partitions.size() - 1)[1], partitions.size(),
+				parallelism);
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "billing-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			//パーティションごとに別のトランザクションで請求データを作成
+			List<Future<countInsertBillingDataAndDetailData>> futures = new ArrayList<>();
+			for (int[] partition : partitions) {
+				futures.add(executor.submit(() -> transactionTemplate
+						.execute(status -> task.run(partition[0], partition[1]))));
+			}
+
+			//各パーティションの挿入件数を合計
+			int memberCount = 0;
+			int chargeCount = 0;
+			try {
+				for (Future<countInsertBillingDataAndDetailData> future : futures) {
+					countInsertBillingDataAndDetailData partitionResult = getResult(future);
+					memberCount += partitionResult.getMemberCount();
+					chargeCount += partitionResult.getChargeCount();
+				}
+			} catch (RuntimeException e) {
+				//未開始のパーティションは取り消し、実行中のパーティションの終了を待ってから
+				//コミット済みのパーティションを取り消す
+				futures.forEach(future -> future.cancel(false));
+				boolean interrupted = awaitAll(futures);
+				logger.error("パーティションの請求データ作成に失敗したため、請求年月の請求情報を削除します。");
+				transactionTemplate.executeWithoutResult(status -> rollback.run());
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				throw e;
+			}
+			return new countInsertBillingDataAndDetailData(memberCount, chargeCount);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 有効な加入者を加入者IDの順に、件数がほぼ等しくなるように指定された数の範囲に分割する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param partitionCount 分割数
+	 * @return 分割した範囲(下限, 上限)のリスト(加入者IDの昇順。有効な加入者が存在しない場合は空)
+	 */
+	List<int[]> split(Date date, Date lastDate, int partitionCount) {
+		//分割数はNTILEの引数に定数で指定する(数値のためSQLインジェクションの恐れはない)
+		return jdbcTemplate.query(
+				"SELECT MIN(member_id) AS from_id, MAX(member_id) AS to_id FROM (SELECT member_id, NTILE("
+						+ Math.max(1, partitionCount)
+						+ ") OVER (ORDER BY member_id) AS tile FROM T_MEMBER WHERE start_date <= ? AND (end_date IS NULL OR end_date >= ?)) GROUP BY tile ORDER BY tile",
+				(rs, rowNum) -> new int[] {rs.getInt("from_id"), rs.getInt("to_id")},
+				lastDate, date);
+	}
+
+	/**
+	 * 全パーティションの終了を待つ(各パーティションの例外は呼び出し元で扱うため無視する)
+	 *
+	 * @return 待機中に割り込みが発生した場合はtrue(取り消し処理の後で割り込み状態に戻す)
+	 */
+	private static boolean awaitAll(List<Future<countInsertBillingDataAndDetailData>> futures) {
+		boolean interrupted = false;
+		for (Future<countInsertBillingDataAndDetailData> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					//取り消し処理の前に、実行中のパーティションの終了を確実に待つ
+					interrupted = true;
+				} catch (ExecutionException | CancellationException e) {
+					break;
+				}
+			}
+		}
+		return interrupted;
+	}
+
+	/**
+	 * パーティションの処理結果を取得する
+	 *
+	 * ワーカースレッドで発生した実行時例外は、呼び出し元でそのまま扱えるように再送出する。
+	 */
+	private static countInsertBillingDataAndDetailData getResult(
+			Future<countInsertBillingDataAndDetailData> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("請求データ作成の待機中に割り込みが発生しました。", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("請求データ作成中にエラーが発生しました。", e.getCause());
+		}
+	}
+}
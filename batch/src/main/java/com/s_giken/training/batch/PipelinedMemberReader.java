@@ -0,0 +1,253 @@
+package com.s_giken.training.batch;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 加入者情報の読み込みと請求データの書き込みを並行して行うクラス
+ *
+ * 読み込みスレッドが加入者テーブルを前方向専用カーソルで読み込み、フェッチサイズ件ずつの塊にして上限付きのキューに入れる。
+ * 呼び出し元のスレッドはキューから取り出した加入者を書き込み処理に渡すため、データベースへの送信中も次の加入者の読み込みが進む。
+ * キューが満杯の場合は読み込みスレッドが待機するため、書き込みが遅くてもメモリ上に溜まる加入者は
+ * (キューの容量 + 1) × フェッチサイズ件までとなる。
+ *
+ * 書き込みは呼び出し元のスレッド(呼び出し元のトランザクション)で行い、読み込みは別の接続で行う。
+ * 読み込み側からは呼び出し元のトランザクションの未コミットの更新が見えないため、検索条件がそのトランザクションで
+ * 更新したテーブルを参照する場合(差分更新)には使用しないこと(BatchApplication.effectiveReadMode参照)。
+ * 書き込み側で例外が発生した場合は、読み込みスレッドを止めて終了を待ってから(接続・カーソルを閉じてから)例外を送出する。
+ * 読み込みスレッドは請求年月・パーティションをまたいで使い回す。
+ */
+@Component
+public class PipelinedMemberReader {
+	/**
+	 * 読み込みの終了を表す塊
+	 */
+	private static final List<BillingMember> END_OF_MEMBERS = List.of();
+
+	/**
+	 * 読み込みスレッドがキューの空きを待つ間隔(ミリ秒)
+	 */
+	private static final long OFFER_INTERVAL_MILLIS = 100;
+
+	/**
+	 * 読み込みを中断した読み込みスレッドの終了を待つ時間の上限(秒)
+	 */
+	private static final long STOP_TIMEOUT_SECONDS = 30;
+
+	private final Logger logger = LoggerFactory.getLogger(PipelinedMemberReader.class);
+	private final JdbcTemplate jdbcTemplate;
+	private final BillingProperties billingProperties;
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "billing-reader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * 加入者情報の並行読み込みクラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 * @param billingProperties 請求バッチの設定値
+	 */
+	public PipelinedMemberReader(JdbcTemplate jdbcTemplate, BillingProperties billingProperties) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.billingProperties = billingProperties;
+	}
+
+	/**
+	 * 加入者情報を別スレッドで読み込みながら、呼び出し元のスレッドで1件ずつ処理する
+	 *
+	 * @param memberSql 加入者テーブルの検索SQL
+	 * @param memberArgs 検索SQLのパラメータ
+	 * @param consumer 加入者1件分の処理(呼び出し元のスレッドで実行される)
+	 */
+	public void forEach(String memberSql, Object[] memberArgs, Consumer<BillingMember> consumer) {
+		int chunkSize = Math.max(1, billingProperties.getFetchSize());
+		BlockingQueue<List<BillingMember>> queue =
+				new ArrayBlockingQueue<>(Math.max(1, billingProperties.getPipelineQueueCapacity()));
+		Reader reader = new Reader(memberSql, memberArgs, chunkSize, queue);
+
+		boolean completed = false;
+		try {
+			Future<?> future = executor.submit(reader);
+			while (true) {
+				List<BillingMember> chunk = take(queue, future);
+				if (chunk == END_OF_MEMBERS) {
+					break;
+				}
+				for (BillingMember member : chunk) {
+					consumer.accept(member);
+				}
+			}
+			//読み込みスレッドの例外を確認
+			getResult(future);
+			completed = true;
+		} finally {
+			if (!completed) {
+				//書き込み側で例外が発生した場合は、読み込みスレッドを止め、接続・カーソルが閉じられるまで待つ
+				//(呼び出し元のトランザクションのロールバック後に読み込みが続かないようにする)
+				reader.cancel();
+				reader.awaitStopped();
+			}
+		}
+	}
+
+	/**
+	 * 読み込みスレッドを停止する(アプリケーションの終了時)
+	 */
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * キューから加入者の塊を取り出す
+	 *
+	 * 読み込みスレッドが例外で終了した場合は、終了の塊を待たずに例外を送出する。
+	 */
+	private static List<BillingMember> take(BlockingQueue<List<BillingMember>> queue,
+			Future<?> future) {
+		try {
+			while (true) {
+				List<BillingMember> chunk = queue.poll(OFFER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if (chunk != null) {
+					return chunk;
+				}
+				if (future.isDone()) {
+					getResult(future);
+					//正常終了した場合は終了の塊がキューに入っている
+					return queue.take();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("加入者情報の読み込み待機中に割り込みが発生しました。", e);
+		}
+	}
+
+	/**
+	 * 読み込みスレッドの処理結果を確認する
+	 *
+	 * 読み込みスレッドで発生した実行時例外は、呼び出し元でそのまま扱えるように再送出する。
+	 */
+	private static void getResult(Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("加入者情報の読み込み待機中に割り込みが発生しました。", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("加入者情報の読み込み中にエラーが発生しました。", e.getCause());
+		}
+	}
+
+	/**
+	 * 加入者テーブルを読み込んでキューに入れる処理(読み込みスレッドで実行される)
+	 */
+	private class Reader implements Runnable {
+		private final String memberSql;
+		private final Object[] memberArgs;
+		private final int chunkSize;
+		private final BlockingQueue<List<BillingMember>> queue;
+		private final CountDownLatch stopped = new CountDownLatch(1);
+		private volatile boolean cancelled = false;
+
+		Reader(String memberSql, Object[] memberArgs, int chunkSize,
+				BlockingQueue<List<BillingMember>> queue) {
+			this.memberSql = memberSql;
+			this.memberArgs = memberArgs;
+			this.chunkSize = chunkSize;
+			this.queue = queue;
+		}
+
+		void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * 読み込みの終了(接続・カーソルのクローズ)を待つ(STOP_TIMEOUT_SECONDS秒まで)
+		 */
+		void awaitStopped() {
+			try {
+				if (!stopped.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+					logger.warn("加入者情報の読み込みスレッドが{}秒以内に終了しませんでした。",
+							STOP_TIMEOUT_SECONDS);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				read();
+			} finally {
+				stopped.countDown();
+			}
+		}
+
+		private void read() {
+			List<List<BillingMember>> chunks = new ArrayList<>(1);
+			chunks.add(new ArrayList<>(chunkSize));
+			jdbcTemplate.query(con -> {
+				PreparedStatement ps = con.prepareStatement(memberSql,
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				ps.setFetchSize(chunkSize);
+				new ArgumentPreparedStatementSetter(memberArgs).setValues(ps);
+				return ps;
+			}, (ResultSet rs) -> {
+				if (cancelled) {
+					throw new IllegalStateException("加入者情報の読み込みを中断しました。");
+				}
+				List<BillingMember> chunk = chunks.get(0);
+				chunk.add(BillingMember.mapRow(rs, rs.getRow()));
+				if (chunk.size() >= chunkSize) {
+					put(chunk);
+					chunks.set(0, new ArrayList<>(chunkSize));
+				}
+			});
+			if (!chunks.get(0).isEmpty()) {
+				put(chunks.get(0));
+			}
+			put(END_OF_MEMBERS);
+		}
+
+		/**
+		 * 加入者の塊をキューに入れる(キューが満杯の場合は空くまで待機する)
+		 */
+		private void put(List<BillingMember> chunk) {
+			try {
+				while (!queue.offer(chunk, OFFER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (cancelled) {
+						throw new IllegalStateException("加入者情報の読み込みを中断しました。");
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("加入者情報の読み込み中に割り込みが発生しました。", e);
+			}
+			logger.trace("加入者情報{}件をキューに入れました。", chunk.size());
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.BillingProperties.DetailStorage;
+
+/**
+ * 集合演算(INSERT ... SELECT)で請求データを作成するクラス
+ *
+ * 加入者×料金の組み合わせをJavaでループせず、データベース内で請求データ・請求明細データを作成する。
+ * 作成される行はBatchApplication.insertBillingDataAndDetailDataと同一になる。
+ */
+@Component
+public class SqlBillingEngine {
+	private final JdbcTemplate jdbcTemplate;
+	private final BillingProperties billingProperties;
+	private final ChargeSetStore chargeSetStore;
+	private final ChargeCatalog chargeCatalog;
+	private final BillingPartitionManager billingPartitionManager;
+	private final BillingMetrics billingMetrics;
+
+	/**
+	 * 集合演算による請求データ作成クラスのコンストラクタ
+	 *
+	 * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+	 * @param billingProperties 請求バッチの設定値
+	 * @param chargeSetStore 料金セット保存クラス
+	 * @param chargeCatalog 料金カタログ
+	 * @param billingPartitionManager 月別パーティション管理クラス
+	 * @param billingMetrics 請求バッチ計測クラス
+	 */
+	public SqlBillingEngine(JdbcTemplate jdbcTemplate, BillingProperties billingProperties,
+			ChargeSetStore chargeSetStore, ChargeCatalog chargeCatalog,
+			BillingPartitionManager billingPartitionManager, BillingMetrics billingMetrics) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.billingProperties = billingProperties;
+		this.chargeSetStore = chargeSetStore;
+		this.chargeCatalog = chargeCatalog;
+		this.billingPartitionManager = billingPartitionManager;
+		this.billingMetrics = billingMetrics;
+	}
+
+	/**
+	 * 請求データ・請求明細データを作成する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @return 請求データ・請求明細データの挿入件数
+	 */
+	public countInsertBillingDataAndDetailData insertBillingDataAndDetailData(Date date,
+			Date lastDate) {
+		return insertBillingDataAndDetailData(date, lastDate, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 加入者IDの範囲を指定して請求データ・請求明細データを作成する
+	 *
+	 * @param date 請求年月(月初日)
+	 * @param lastDate 請求年月の月末日
+	 * @param fromMemberId 対象とする加入者IDの下限(この値を含む)
+	 * @param toMemberId 対象とする加入者IDの上限(この値を含む)
+	 * @return 請求データ・請求明細データの挿入件数
+	 */
+	public countInsertBillingDataAndDetailData insertBillingDataAndDetailData(Date date,
+			Date lastDate, int fromMemberId, int toMemberId) {
+		//料金合計を請求プランから取得(有効な料金が無い場合はJavaのループと同じくNoActiveChargeExceptionとなる)
+		BillingPlan plan = chargeCatalog.getPlan(date, lastDate);
+
+		//コンパクト形式の場合は、請求明細データの代わりに料金セットを参照する
+		Integer chargeSetId = billingProperties.getDetailStorage() == DetailStorage.COMPACT
+				? chargeSetStore.findOrCreate(plan)
+				: null;
+
+		//書き込み先のテーブル(月別パーティションを作成中の場合は作成中のテーブル)
+		BillingTables tables = billingPartitionManager.writeTablesFor(date);
+
+		//読み込みと書き込みはデータベース内で同時に行われるため、書き込み時間として記録する
+		long startedAt = System.nanoTime();
+
+		//有効な加入者ごとに請求データを挿入
+		int memberCount = jdbcTemplate.update(
+				"INSERT INTO " + tables.billingData() + "(billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total, charge_set_id) "
+						+ "SELECT ?, m.member_id, m.mail, m.name, m.address, m.start_date, m.end_date, m.payment_method, ?, ?, ?, ? "
+						+ "FROM T_MEMBER m WHERE m.start_date <= ? AND (m.end_date IS NULL OR m.end_date >= ?) "
+						+ "AND m.member_id BETWEEN ? AND ? ",
+				date, plan.getTotal(), BillingPlan.TAX_RATIO, plan.getTaxIncludedTotal(),
+				chargeSetId, lastDate, date, fromMemberId, toMemberId);
+
+		if (chargeSetId != null) {
+			//請求明細データは料金セットで参照できるため、参照される件数のみ数える
+			return recordWrite(startedAt, new countInsertBillingDataAndDetailData(memberCount,
+					memberCount * plan.size()));
+		}
+
+		//有効な加入者と有効な料金の全ての組み合わせで請求明細データを挿入
+		int chargeCount = jdbcTemplate.update(
+				"INSERT INTO " + tables.billingDetailData() + "(billing_ym, member_id, charge_id, name, amount, start_date, end_date) "
+						+ "SELECT ?, m.member_id, c.charge_id, c.name, c.amount, c.start_date, c.end_date "
+						+ "FROM T_MEMBER m CROSS JOIN T_CHARGE c "
+						+ "WHERE m.start_date <= ? AND (m.end_date IS NULL OR m.end_date >= ?) "
+						+ "AND m.member_id BETWEEN ? AND ? "
+						+ "AND c.start_date <= ? AND (c.end_date IS NULL OR c.end_date >= ?) ",
+				date, lastDate, date, fromMemberId, toMemberId, lastDate, date);
+
+		return recordWrite(startedAt,
+				new countInsertBillingDataAndDetailData(memberCount, chargeCount));
+	}
+
+	/**
+	 * 書き込み時間と作成した件数を記録する
+	 */
+	private countInsertBillingDataAndDetailData recordWrite(long startedAt,
+			countInsertBillingDataAndDetailData count) {
+		billingMetrics.recordNanos(BillingMetrics.PHASE_WRITE, System.nanoTime() - startedAt);
+		billingMetrics.addRows(count.getMemberCount(), count.getChargeCount());
+		return count;
+	}
+}
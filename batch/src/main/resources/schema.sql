@@ -39,4 +39,85 @@ CREATE TABLE IF NOT EXISTS T_BILLING_DETAIL_DATA (
     PRIMARY KEY (billing_ym, member_id, charge_id),
     FOREIGN KEY (billing_ym, member_id) 
         REFERENCES T_BILLING_DATA(billing_ym, member_id)
-);
\ No newline at end of file
+);
+
+
+CREATE TABLE IF NOT EXISTS T_BILLING_CHECKPOINT (
+    billing_ym DATE PRIMARY KEY,
+    last_member_id INTEGER NOT NULL,
+    member_count INTEGER NOT NULL,
+    charge_count INTEGER NOT NULL,
+    modified_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    FOREIGN KEY (billing_ym)
+        REFERENCES T_BILLING_STATUS(billing_ym)
+);
+
+
+-- 請求データの作成日時(差分更新で前回作成後に変更された加入者・料金を判定するために使用)
+ALTER TABLE T_BILLING_STATUS ADD COLUMN IF NOT EXISTS generated_at TIMESTAMP;
+
+
+-- 請求明細データの料金情報を、請求年月ごとの料金セットとして1組だけ保持する(コンパクト形式)
+CREATE TABLE IF NOT EXISTS T_BILLING_CHARGE_SET (
+    charge_set_id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    billing_ym DATE NOT NULL,
+    charge_set_hash VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (charge_set_id),
+    UNIQUE (billing_ym, charge_set_hash),
+    FOREIGN KEY (billing_ym)
+        REFERENCES T_BILLING_STATUS(billing_ym)
+);
+
+
+CREATE TABLE IF NOT EXISTS T_BILLING_CHARGE_SET_ITEM (
+    charge_set_id INTEGER NOT NULL,
+    charge_id INTEGER NOT NULL,
+    name VARCHAR(64) NOT NULL,
+    amount NUMBER(10,0) NOT NULL,
+    start_date DATE NOT NULL,
+    end_date DATE,
+
+    PRIMARY KEY (charge_set_id, charge_id),
+    FOREIGN KEY (charge_set_id)
+        REFERENCES T_BILLING_CHARGE_SET(charge_set_id)
+);
+
+
+-- コンパクト形式で作成した請求データが参照する料金セット(展開形式の場合はNULL)
+ALTER TABLE T_BILLING_DATA ADD COLUMN IF NOT EXISTS charge_set_id INTEGER;
+ALTER TABLE T_BILLING_DATA ADD CONSTRAINT IF NOT EXISTS FK_BILLING_DATA_CHARGE_SET
+    FOREIGN KEY (charge_set_id) REFERENCES T_BILLING_CHARGE_SET(charge_set_id);
+
+
+-- 展開形式・コンパクト形式のどちらで作成した請求明細データも、展開した形で参照するためのビュー
+CREATE OR REPLACE VIEW V_BILLING_DETAIL_DATA AS
+SELECT billing_ym, member_id, charge_id, name, amount, start_date, end_date
+FROM T_BILLING_DETAIL_DATA
+UNION ALL
+SELECT b.billing_ym, b.member_id, i.charge_id, i.name, i.amount, i.start_date, i.end_date
+FROM T_BILLING_DATA b
+JOIN T_BILLING_CHARGE_SET_ITEM i ON i.charge_set_id = b.charge_set_id;
+
+
+-- 請求データを請求年月専用のテーブル(T_BILLING_DATA_yyyyMM, T_BILLING_DETAIL_DATA_yyyyMM)に保存している請求年月
+CREATE TABLE IF NOT EXISTS T_BILLING_PARTITION (
+    billing_ym DATE PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    FOREIGN KEY (billing_ym)
+        REFERENCES T_BILLING_STATUS(billing_ym)
+);
+
+-- 公開中の月別パーティションのテーブルの組(0: T_BILLING_DATA_yyyyMM, 1: T_BILLING_DATA_yyyyMM_1)
+-- 作成し直す場合はもう一方の組に作成し、完了後にビューを切り替えて公開する
+ALTER TABLE T_BILLING_PARTITION ADD COLUMN IF NOT EXISTS slot INTEGER NOT NULL DEFAULT 0;
+
+
+-- 共有テーブルの請求データを参照するためのビュー
+-- (月別パーティションが存在する場合は、起動時・パーティションの作成/削除時に月別パーティションを含めて作成し直す)
+CREATE OR REPLACE VIEW V_BILLING_DATA AS
+SELECT billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total, charge_set_id, created_at, modified_at
+FROM T_BILLING_DATA;
@@ -0,0 +1,370 @@
+package com.s_giken.training.batch;
+
+import static com.s_giken.training.batch.BillingTestData.DATE;
+import static com.s_giken.training.batch.BillingTestData.LAST_DATE;
+import static com.s_giken.training.batch.BillingTestData.changeMembers;
+import static com.s_giken.training.batch.BillingTestData.createRows;
+import static com.s_giken.training.batch.BillingTestData.selectBillingData;
+import static com.s_giken.training.batch.BillingTestData.selectBillingDetailData;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.BillingTestData.BillingRows;
+
+/**
+ * 請求データの作成方式(JAVA/SQL)・読み込み方式・書き込み方式・保存形式や差分更新で同一の請求データが作成されることを確認するテスト
+ *
+ * 差分更新は設定値ではなく実行時の指定のため、既定の設定値で確認する。
+ * 読み込み方式・書き込み方式・保存形式は、方式ごとの入れ子のクラスで@TestPropertySourceにより設定値を指定し、
+ * 別のアプリケーションコンテキストで実行する(共有の設定値は変更しない)。比較元の請求データは、このクラスの
+ * 既定の設定値のアプリケーションコンテキストで作成する(メモリ内のデータベースは両方のコンテキストで共有される)。
+ */
+@SpringBootTest
+@Sql("classpath:testData/billing-data.sql")
+class BillingEngineEquivalenceTests {
+	@Autowired
+	private BatchApplication batchApplication;
+
+	@Autowired
+	private SqlBillingEngine sqlBillingEngine;
+
+	@Autowired
+	private DeltaBillingExecutor deltaBillingExecutor;
+
+	@Autowired
+	private ChargeCatalog chargeCatalog;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void javaAndSqlEnginesProduceIdenticalRows() {
+		batchApplication.insertBillingStatus(DATE);
+		countInsertBillingDataAndDetailData javaCount =
+				batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+		List<Map<String, Object>> javaBillingData = selectBillingData(jdbcTemplate);
+		List<Map<String, Object>> javaBillingDetailData = selectBillingDetailData(jdbcTemplate);
+
+		batchApplication.deleteBillingData(DATE);
+		batchApplication.insertBillingStatus(DATE);
+		countInsertBillingDataAndDetailData sqlCount =
+				sqlBillingEngine.insertBillingDataAndDetailData(DATE, LAST_DATE);
+		List<Map<String, Object>> sqlBillingData = selectBillingData(jdbcTemplate);
+		List<Map<String, Object>> sqlBillingDetailData = selectBillingDetailData(jdbcTemplate);
+
+		//有効な加入者4件×有効な料金3件
+		assertEquals(4, javaCount.getMemberCount());
+		assertEquals(12, javaCount.getChargeCount());
+		assertEquals(javaCount.getMemberCount(), sqlCount.getMemberCount());
+		assertEquals(javaCount.getChargeCount(), sqlCount.getChargeCount());
+
+		assertFalse(javaBillingData.isEmpty());
+		assertEquals(javaBillingData, sqlBillingData);
+		assertEquals(javaBillingDetailData, sqlBillingDetailData);
+	}
+
+	@Test
+	void chargeCatalogPlansMatchDatabasePlans() {
+		chargeCatalog.load(Date.valueOf("2023-01-01"), Date.valueOf("2023-12-31"));
+		try {
+			for (YearMonth yearMonth = YearMonth.of(2023, 1); yearMonth.getYear() == 2023;
+					yearMonth = yearMonth.plusMonths(1)) {
+				Date date = Date.valueOf(yearMonth.atDay(1));
+				Date lastDate = Date.valueOf(yearMonth.atEndOfMonth());
+				BillingPlan databasePlan = BillingPlan.load(jdbcTemplate, date, lastDate);
+				BillingPlan catalogPlan = chargeCatalog.getPlan(date, lastDate);
+
+				assertEquals(databasePlan.size(), catalogPlan.size());
+				for (int i = 0; i < databasePlan.size(); i++) {
+					assertEquals(databasePlan.getCharge(i), catalogPlan.getCharge(i));
+				}
+				assertEquals(databasePlan.getTaxIncludedTotal(), catalogPlan.getTaxIncludedTotal());
+			}
+		} finally {
+			chargeCatalog.clear();
+		}
+	}
+
+	@Test
+	void deltaRebillingMatchesFullRebuild() {
+		batchApplication.insertBillingStatus(DATE);
+		batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+
+		//加入者の変更(2: 氏名変更, 5: 解約, 7: 新規加入)
+		changeMembers(jdbcTemplate);
+
+		countInsertBillingDataAndDetailData deltaCount = deltaBillingExecutor.execute(DATE,
+				LAST_DATE, (memberCondition, memberConditionArgs) -> batchApplication
+						.insertBillingDataAndDetailData(DATE, LAST_DATE, memberCondition,
+								memberConditionArgs));
+		List<Map<String, Object>> deltaBillingData = selectBillingData(jdbcTemplate);
+		List<Map<String, Object>> deltaBillingDetailData = selectBillingDetailData(jdbcTemplate);
+
+		batchApplication.deleteBillingData(DATE);
+		batchApplication.insertBillingStatus(DATE);
+		batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+
+		//変更された加入者2と新規加入者7の分のみ作成し直す
+		assertEquals(2, deltaCount.getMemberCount());
+		assertEquals(6, deltaCount.getChargeCount());
+		assertEquals(selectBillingData(jdbcTemplate), deltaBillingData);
+		assertEquals(selectBillingDetailData(jdbcTemplate), deltaBillingDetailData);
+	}
+
+	@Nested
+	@TestPropertySource(properties = "billing.detail-storage=COMPACT")
+	class CompactDetailStorage {
+		@Autowired
+		private BatchApplication batchApplication;
+
+		@Autowired
+		private SqlBillingEngine sqlBillingEngine;
+
+		@Test
+		void compactDetailStorageMatchesExpandedRows() {
+			BillingRows expandedRows = createDefaultRows();
+
+			batchApplication.insertBillingStatus(DATE);
+			countInsertBillingDataAndDetailData javaCount =
+					batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+			assertEquals(4, javaCount.getMemberCount());
+			assertEquals(12, javaCount.getChargeCount());
+			assertEquals(expandedRows.billingData(), selectBillingData(jdbcTemplate));
+			assertEquals(expandedRows.billingDetailData(), selectBillingDetailData(jdbcTemplate));
+
+			//料金セットは請求年月ごとに1組のみ保存され、請求明細データは保存されない
+			assertEquals(1, jdbcTemplate.queryForObject(
+					"SELECT COUNT(*) FROM T_BILLING_CHARGE_SET WHERE billing_ym = ?",
+					Integer.class, DATE));
+			assertEquals(0, jdbcTemplate.queryForObject(
+					"SELECT COUNT(*) FROM T_BILLING_DETAIL_DATA WHERE billing_ym = ?",
+					Integer.class, DATE));
+
+			batchApplication.deleteBillingData(DATE);
+			batchApplication.insertBillingStatus(DATE);
+			countInsertBillingDataAndDetailData sqlCount =
+					sqlBillingEngine.insertBillingDataAndDetailData(DATE, LAST_DATE);
+			assertEquals(12, sqlCount.getChargeCount());
+			assertEquals(expandedRows.billingData(), selectBillingData(jdbcTemplate));
+			assertEquals(expandedRows.billingDetailData(), selectBillingDetailData(jdbcTemplate));
+		}
+	}
+
+	@Nested
+	@TestPropertySource(properties = {
+			"billing.month-storage=PARTITIONED",
+			"billing.summary-dir="})
+	class PartitionedMonthStorage {
+		@Autowired
+		private BatchApplication batchApplication;
+
+		@Autowired
+		private BillingPartitionManager billingPartitionManager;
+
+		@Autowired
+		private BillingMetrics billingMetrics;
+
+		@Test
+		void partitionedMonthStorageMatchesSharedRows() {
+			BillingRows sharedRows = createDefaultRows();
+
+			try {
+				billingPartitionManager.createStaging(DATE);
+				batchApplication.insertBillingStatus(DATE);
+				countInsertBillingDataAndDetailData javaCount =
+						batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+				assertEquals(4, javaCount.getMemberCount());
+				assertEquals(12, javaCount.getChargeCount());
+
+				//公開するまでは作成中のテーブルはビューから参照されない
+				assertEquals(0, selectBillingData(jdbcTemplate).size());
+				billingPartitionManager.publish(DATE);
+				assertEquals(sharedRows.billingData(), selectBillingData(jdbcTemplate));
+				assertEquals(sharedRows.billingDetailData(), selectBillingDetailData(jdbcTemplate));
+
+				//共有テーブルには書き込まれない
+				assertEquals(0, jdbcTemplate.queryForObject(
+						"SELECT COUNT(*) FROM T_BILLING_DATA WHERE billing_ym = ?",
+						Integer.class, DATE));
+
+				//月別パーティションはテーブルごと削除される
+				batchApplication.deleteBillingData(DATE);
+				assertEquals(0, countPartitionTables());
+				assertEquals(0, batchApplication.countBillingStatusRecord(DATE));
+			} finally {
+				//失敗した場合も月別パーティションを残さない(テストデータの投入では削除されないため)
+				batchApplication.deleteBillingData(DATE);
+			}
+		}
+
+		@Test
+		void rebuildReplacesPublishedMonth() {
+			try {
+				batchApplication.run("202304");
+				jdbcTemplate.update("UPDATE T_MEMBER SET name = 'テスト花子2' WHERE member_id = 2");
+
+				//作成し直した請求年月は、もう一方の組のテーブルに作成して公開され、以前のテーブルは削除される
+				batchApplication.run("202304");
+				assertEquals(BillingMetrics.RESULT_CREATED,
+						billingMetrics.getMonthResults().get(0).result());
+				assertEquals("テスト花子2", jdbcTemplate.queryForObject(
+						"SELECT name FROM V_BILLING_DATA WHERE billing_ym = ? AND member_id = 2",
+						String.class, DATE));
+				assertEquals(BillingTables.forMonth(DATE, 1),
+						billingPartitionManager.tablesFor(DATE));
+				assertEquals(2, countPartitionTables());
+			} finally {
+				batchApplication.deleteBillingData(DATE);
+			}
+		}
+
+		@Test
+		void failedRebuildKeepsPublishedMonth() {
+			try {
+				batchApplication.run("202304");
+				List<Map<String, Object>> publishedBillingData = selectBillingData(jdbcTemplate);
+				List<Map<String, Object>> publishedBillingDetailData = selectBillingDetailData(jdbcTemplate);
+				assertEquals(4, publishedBillingData.size());
+
+				//有効な料金が無いため、請求データの作成中に失敗させる
+				jdbcTemplate.update("DELETE FROM T_CHARGE");
+				batchApplication.run("202304");
+				assertEquals(BillingMetrics.RESULT_FAILED,
+						billingMetrics.getMonthResults().get(0).result());
+
+				//公開中の請求データはそのまま参照でき、作成中のテーブルは残らない
+				assertEquals(publishedBillingData, selectBillingData(jdbcTemplate));
+				assertEquals(publishedBillingDetailData, selectBillingDetailData(jdbcTemplate));
+				assertEquals(BillingTables.forMonth(DATE, 0),
+						billingPartitionManager.tablesFor(DATE));
+				assertEquals(2, countPartitionTables());
+				//作成日時は公開中の請求データと一致しないため消去され、次回の差分更新は全件の作成となる
+				assertNull(jdbcTemplate.queryForObject(
+						"SELECT generated_at FROM T_BILLING_STATUS WHERE billing_ym = ?",
+						Timestamp.class, DATE));
+			} finally {
+				batchApplication.deleteBillingData(DATE);
+			}
+		}
+	}
+
+	@Nested
+	@TestPropertySource(properties = {
+			"billing.read-mode=PIPELINED",
+			//1件ずつの塊・容量1のキューで、読み込みが書き込みを待機する状態を作る
+			"billing.fetch-size=1",
+			"billing.pipeline-queue-capacity=1"})
+	class PipelinedReadMode {
+		@Autowired
+		private BatchApplication batchApplication;
+
+		@Test
+		void pipelinedReadModeMatchesStreamRows() {
+			BillingRows streamRows = createDefaultRows();
+
+			batchApplication.insertBillingStatus(DATE);
+			countInsertBillingDataAndDetailData pipelinedCount =
+					batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+			assertEquals(4, pipelinedCount.getMemberCount());
+			assertEquals(12, pipelinedCount.getChargeCount());
+			assertEquals(streamRows.billingData(), selectBillingData(jdbcTemplate));
+			assertEquals(streamRows.billingDetailData(), selectBillingDetailData(jdbcTemplate));
+		}
+	}
+
+	@Nested
+	@TestPropertySource(properties = {
+			"billing.read-mode=PIPELINED",
+			"billing.fetch-size=1",
+			"billing.pipeline-queue-capacity=1",
+			"billing.summary-dir="})
+	class PipelinedDeltaRebilling {
+		@Autowired
+		private BatchApplication batchApplication;
+
+		@Autowired
+		private BillingMetrics billingMetrics;
+
+		@Test
+		void pipelinedDeltaRebillingMatchesFullRebuild() {
+			batchApplication.run("202304");
+
+			//加入者の変更(2: 氏名変更, 5: 解約, 7: 新規加入)
+			changeMembers(jdbcTemplate);
+
+			//差分更新では、同じトランザクションで削除した加入者2の請求データも作成し直される
+			batchApplication.run("202304", "--delta");
+			assertEquals(BillingMetrics.RESULT_DELTA,
+					billingMetrics.getMonthResults().get(0).result());
+			List<Map<String, Object>> deltaBillingData = selectBillingData(jdbcTemplate);
+			List<Map<String, Object>> deltaBillingDetailData = selectBillingDetailData(jdbcTemplate);
+
+			batchApplication.deleteBillingData(DATE);
+			BillingRows rebuiltRows = createDefaultRows();
+			assertEquals(rebuiltRows.billingData(), deltaBillingData);
+			assertEquals(rebuiltRows.billingDetailData(), deltaBillingDetailData);
+		}
+	}
+
+	@Nested
+	@TestPropertySource(properties = {
+			"billing.write-mode=BULK",
+			"billing.staging-dir=${java.io.tmpdir}/billing-equivalence-staging"})
+	class BulkWriteMode {
+		@Autowired
+		private BatchApplication batchApplication;
+
+		@Value("${billing.staging-dir}")
+		private Path stagingDir;
+
+		@Test
+		void bulkWriteModeMatchesBatchRows() throws IOException {
+			BillingRows batchRows = createDefaultRows();
+
+			batchApplication.insertBillingStatus(DATE);
+			countInsertBillingDataAndDetailData bulkCount =
+					batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+			assertEquals(4, bulkCount.getMemberCount());
+			assertEquals(12, bulkCount.getChargeCount());
+			assertEquals(batchRows.billingData(), selectBillingData(jdbcTemplate));
+			assertEquals(batchRows.billingDetailData(), selectBillingDetailData(jdbcTemplate));
+
+			//取り込み後の一時ファイルは削除される
+			try (var files = Files.list(stagingDir)) {
+				assertEquals(0, files
+						.filter(file -> file.getFileName().toString().startsWith("billing-"))
+						.count());
+			}
+		}
+	}
+
+	/**
+	 * 既定の設定値で請求データを作成して取得し、作成した請求情報を削除する(各方式の比較元)
+	 */
+	private BillingRows createDefaultRows() {
+		return createRows(batchApplication, jdbcTemplate);
+	}
+
+	private int countPartitionTables() {
+		return jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME IN ('T_BILLING_DATA_202304', 'T_BILLING_DETAIL_DATA_202304', 'T_BILLING_DATA_202304_1', 'T_BILLING_DETAIL_DATA_202304_1')",
+				Integer.class);
+	}
+}
@@ -0,0 +1,115 @@
+package com.s_giken.training.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+/**
+ * 請求データを支払方法ごとのファイルに出力する処理のテスト
+ *
+ * 出力先・圧縮・保存形式は@TestPropertySourceで指定し、設定値ごとに別のアプリケーションコンテキストで実行する
+ * (共有の設定値は変更しない)。料金セット形式・gzip圧縮の出力は、入れ子のクラスで確認する。
+ */
+@SpringBootTest
+@TestPropertySource(properties =
+		"billing.export-dir=${java.io.tmpdir}/billing-exporter-tests/expanded")
+@Sql("classpath:testData/billing-data.sql")
+class BillingExporterTests {
+	private static final Date DATE = Date.valueOf("2023-04-01");
+	private static final Date LAST_DATE = Date.valueOf("2023-04-30");
+
+	@Autowired
+	private BatchApplication batchApplication;
+
+	@Autowired
+	private BillingExporter billingExporter;
+
+	@Value("${billing.export-dir}")
+	private Path exportDir;
+
+	@Test
+	void exportsOneFilePerPaymentMethod() throws IOException {
+		batchApplication.insertBillingStatus(DATE);
+		batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+
+		BillingExporter.ExportResult result = billingExporter.export(DATE);
+
+		//有効な加入者1, 3(支払方法1)、2(支払方法2)、5(支払方法3)
+		assertEquals(4, result.memberCount());
+		assertEquals(List.of(exportDir.resolve("billing-202304-1.csv"),
+				exportDir.resolve("billing-202304-2.csv"),
+				exportDir.resolve("billing-202304-3.csv")), result.files());
+
+		List<String> lines = readLines(exportDir.resolve("billing-202304-1.csv"), false);
+		assertEquals("H,202304,1", lines.get(0));
+		assertEquals("C,1,1,基本料金,1000", lines.get(2));
+		//ヘッダー + (請求データ1行 + 請求明細データ3行) × 2名 + トレーラー
+		assertEquals(10, lines.size());
+		assertEquals("T,2," + 2 * 3652, lines.get(lines.size() - 1));
+	}
+
+	@Nested
+	@TestPropertySource(properties = {
+			"billing.detail-storage=COMPACT",
+			"billing.export-gzip=true",
+			"billing.export-dir=${java.io.tmpdir}/billing-exporter-tests/compact"})
+	class CompactGzipExport {
+		@Autowired
+		private BatchApplication batchApplication;
+
+		@Autowired
+		private BillingExporter billingExporter;
+
+		@Value("${billing.export-dir}")
+		private Path exportDir;
+
+		@Test
+		void compactGzipExportMatchesExpandedExport() throws IOException {
+			List<String> expandedLines = exportExpandedLines();
+
+			batchApplication.insertBillingStatus(DATE);
+			batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+			billingExporter.export(DATE);
+
+			assertEquals(expandedLines,
+					readLines(exportDir.resolve("billing-202304-1.csv.gz"), true));
+		}
+	}
+
+	/**
+	 * このクラスの設定値(請求明細データ・非圧縮)のアプリケーションコンテキストで請求データを作成して出力し、
+	 * 支払方法1のファイルの内容を取得する(作成した請求データは削除する)
+	 */
+	private List<String> exportExpandedLines() throws IOException {
+		batchApplication.insertBillingStatus(DATE);
+		batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+		billingExporter.export(DATE);
+		List<String> lines = readLines(exportDir.resolve("billing-202304-1.csv"), false);
+		batchApplication.deleteBillingData(DATE);
+		return lines;
+	}
+
+	private static List<String> readLines(Path path, boolean gzip) throws IOException {
+		try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(path))
+				: Files.newInputStream(path);
+				BufferedReader reader =
+						new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			return reader.lines().toList();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.s_giken.training.batch;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 請求データ作成のテストで共通に使用するテストデータの操作
+ *
+ * testData/billing-data.sqlを投入した状態で、2023年4月分の請求データの作成・取得・加入者の変更を行う。
+ */
+final class BillingTestData {
+	static final Date DATE = Date.valueOf("2023-04-01");
+	static final Date LAST_DATE = Date.valueOf("2023-04-30");
+
+	/**
+	 * 請求データと請求明細データの行
+	 */
+	record BillingRows(List<Map<String, Object>> billingData,
+			List<Map<String, Object>> billingDetailData) {
+	}
+
+	private BillingTestData() {
+	}
+
+	/**
+	 * 1つのトランザクションで請求データを作成して取得し、作成した請求情報を削除する(比較元の請求データ)
+	 *
+	 * @param batchApplication 比較元の設定値のアプリケーションコンテキストのBatchApplication
+	 * @param jdbcTemplate JdbcTemplate
+	 * @return 作成した請求データと請求明細データの行
+	 */
+	static BillingRows createRows(BatchApplication batchApplication, JdbcTemplate jdbcTemplate) {
+		batchApplication.insertBillingStatus(DATE);
+		batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE);
+		BillingRows rows = selectRows(jdbcTemplate);
+		batchApplication.deleteBillingData(DATE);
+		return rows;
+	}
+
+	/**
+	 * 2023年4月分の請求データと請求明細データの行をビューから取得する
+	 */
+	static BillingRows selectRows(JdbcTemplate jdbcTemplate) {
+		return new BillingRows(selectBillingData(jdbcTemplate),
+				selectBillingDetailData(jdbcTemplate));
+	}
+
+	static List<Map<String, Object>> selectBillingData(JdbcTemplate jdbcTemplate) {
+		return jdbcTemplate.queryForList(
+				"SELECT billing_ym, member_id, mail, name, address, start_date, end_date, payment_method, amount, tax_ratio, total FROM V_BILLING_DATA WHERE billing_ym = ? ORDER BY member_id",
+				DATE);
+	}
+
+	static List<Map<String, Object>> selectBillingDetailData(JdbcTemplate jdbcTemplate) {
+		return jdbcTemplate.queryForList(
+				"SELECT billing_ym, member_id, charge_id, name, amount, start_date, end_date FROM V_BILLING_DETAIL_DATA WHERE billing_ym = ? ORDER BY member_id, charge_id",
+				DATE);
+	}
+
+	/**
+	 * 請求データの作成後に加入者を変更する(2: 氏名変更, 5: 解約, 7: 新規加入)
+	 *
+	 * 差分更新で検出されるよう、更新日時は作成日時より後にする。
+	 */
+	static void changeMembers(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.update(
+				"UPDATE T_MEMBER SET name = 'テスト花子2', updated_date = DATEADD(SECOND, 1, CURRENT_TIMESTAMP) WHERE member_id = 2");
+		jdbcTemplate.update(
+				"UPDATE T_MEMBER SET end_date = '2023-03-31', updated_date = DATEADD(SECOND, 1, CURRENT_TIMESTAMP) WHERE member_id = 5");
+		jdbcTemplate.update(
+				"INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (7, 7, 'test-rokuro@s-giken.com', 'テスト六郎', '京都府京都市', '2023-04-15', NULL, 1)");
+	}
+}
@@ -0,0 +1,101 @@
+package com.s_giken.training.batch;
+
+import static com.s_giken.training.batch.BillingTestData.DATE;
+import static com.s_giken.training.batch.BillingTestData.LAST_DATE;
+import static com.s_giken.training.batch.BillingTestData.createRows;
+import static com.s_giken.training.batch.BillingTestData.selectBillingData;
+import static com.s_giken.training.batch.BillingTestData.selectRows;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.BillingTestData.BillingRows;
+import com.s_giken.training.batch.PartitionedBillingExecutor.PartitionTask;
+
+/**
+ * チャンクごとにコミットする請求データ作成で、途中で失敗した後にチェックポイントから再開した結果が
+ * 1つのトランザクションで作成した結果と同一になることを確認するテスト
+ */
+@SpringBootTest
+@Sql("classpath:testData/billing-data.sql")
+class ChunkedBillingExecutorTests {
+	@Autowired
+	private BatchApplication batchApplication;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private ChunkedBillingExecutor chunkedBillingExecutor;
+
+	@BeforeEach
+	void setUp() {
+		//チャンクの件数はこのテスト専用の設定値で指定する(共有の設定値は変更しない)
+		BillingProperties billingProperties = new BillingProperties();
+		billingProperties.setChunkSize(1);
+		chunkedBillingExecutor =
+				new ChunkedBillingExecutor(jdbcTemplate, transactionTemplate, billingProperties);
+	}
+
+	@Test
+	void resumeAfterFailedChunkMatchesFullRun() {
+		BillingRows fullRows = createRows(batchApplication, jdbcTemplate);
+
+		//有効な加入者(1, 2, 3, 5)を1件ずつのチャンクで処理し、3チャンク目(加入者3)で失敗させる
+		batchApplication.insertBillingStatus(DATE);
+		AtomicInteger chunkCount = new AtomicInteger();
+		PartitionTask failingTask = (fromMemberId, toMemberId) -> {
+			if (chunkCount.incrementAndGet() == 3) {
+				throw new IllegalStateException("テスト用の失敗");
+			}
+			return createBillingData(fromMemberId, toMemberId);
+		};
+		assertThrows(IllegalStateException.class,
+				() -> chunkedBillingExecutor.execute(DATE, LAST_DATE, false, failingTask));
+
+		//失敗したチャンクはロールバックされ、コミット済みの2チャンク分のみ残る
+		assertTrue(chunkedBillingExecutor.hasCheckpoint(DATE));
+		assertEquals(2, jdbcTemplate.queryForObject(
+				"SELECT last_member_id FROM T_BILLING_CHECKPOINT WHERE billing_ym = ?",
+				Integer.class, DATE));
+		assertEquals(2, selectBillingData(jdbcTemplate).size());
+
+		countInsertBillingDataAndDetailData resumedCount = chunkedBillingExecutor.execute(DATE,
+				LAST_DATE, true, this::createBillingData);
+
+		//再開前にコミット済みの件数を含めた請求年月全体の件数
+		assertEquals(4, resumedCount.getMemberCount());
+		assertEquals(12, resumedCount.getChargeCount());
+		assertEquals(fullRows, selectRows(jdbcTemplate));
+	}
+
+	@Test
+	void freshRunWithoutCheckpointMatchesFullRun() {
+		BillingRows fullRows = createRows(batchApplication, jdbcTemplate);
+
+		//チェックポイントが無い場合は、再開を指定しても先頭から作成する
+		batchApplication.insertBillingStatus(DATE);
+		countInsertBillingDataAndDetailData chunkedCount = chunkedBillingExecutor.execute(DATE,
+				LAST_DATE, true, this::createBillingData);
+
+		assertEquals(4, chunkedCount.getMemberCount());
+		assertEquals(12, chunkedCount.getChargeCount());
+		assertEquals(fullRows, selectRows(jdbcTemplate));
+	}
+
+	private countInsertBillingDataAndDetailData createBillingData(int fromMemberId,
+			int toMemberId) {
+		return batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE, fromMemberId,
+				toMemberId);
+	}
+}
@@ -0,0 +1,123 @@
+package com.s_giken.training.batch;
+
+import static com.s_giken.training.batch.BillingTestData.DATE;
+import static com.s_giken.training.batch.BillingTestData.LAST_DATE;
+import static com.s_giken.training.batch.BillingTestData.createRows;
+import static com.s_giken.training.batch.BillingTestData.selectBillingData;
+import static com.s_giken.training.batch.BillingTestData.selectBillingDetailData;
+import static com.s_giken.training.batch.BillingTestData.selectRows;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.s_giken.training.batch.BatchApplication.countInsertBillingDataAndDetailData;
+import com.s_giken.training.batch.BillingTestData.BillingRows;
+
+/**
+ * 加入者IDの範囲ごとに並列で作成した請求データが、1つのトランザクションで作成した請求データと同一になること、
+ * いずれかの範囲が失敗した場合に請求年月の請求情報が残らないことを確認するテスト
+ */
+@SpringBootTest
+@Sql("classpath:testData/billing-data.sql")
+class PartitionedBillingExecutorTests {
+	@Autowired
+	private BatchApplication batchApplication;
+
+	@Autowired
+	private SqlBillingEngine sqlBillingEngine;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void splitBalancesActiveMembers() {
+		PartitionedBillingExecutor executor = createExecutor(2, 0);
+
+		//有効な加入者(1, 2, 3, 5)を件数で分割する(無効な加入者4・6は含めない)
+		List<int[]> halves = executor.split(DATE, LAST_DATE, 2);
+		assertEquals(2, halves.size());
+		assertArrayEquals(new int[] {1, 2}, halves.get(0));
+		assertArrayEquals(new int[] {3, 5}, halves.get(1));
+
+		List<int[]> thirds = executor.split(DATE, LAST_DATE, 3);
+		assertEquals(3, thirds.size());
+		assertArrayEquals(new int[] {1, 2}, thirds.get(0));
+		assertArrayEquals(new int[] {3, 3}, thirds.get(1));
+		assertArrayEquals(new int[] {5, 5}, thirds.get(2));
+
+		//分割数が加入者数より多い場合は、加入者1件ずつの範囲になる
+		assertEquals(4, executor.split(DATE, LAST_DATE, 10).size());
+	}
+
+	@Test
+	void parallelPartitionsMatchSingleTransaction() {
+		BillingRows singleRows = createRows(batchApplication, jdbcTemplate);
+
+		PartitionedBillingExecutor executor = createExecutor(2, 3);
+
+		//Javaのループで作成
+		batchApplication.insertBillingStatus(DATE);
+		countInsertBillingDataAndDetailData javaCount = executor.execute(DATE, LAST_DATE,
+				(fromMemberId, toMemberId) -> batchApplication.insertBillingDataAndDetailData(
+						DATE, LAST_DATE, fromMemberId, toMemberId),
+				() -> batchApplication.deleteBillingData(DATE));
+		assertEquals(4, javaCount.getMemberCount());
+		assertEquals(12, javaCount.getChargeCount());
+		assertEquals(singleRows, selectRows(jdbcTemplate));
+		batchApplication.deleteBillingData(DATE);
+
+		//集合演算のSQLで作成
+		batchApplication.insertBillingStatus(DATE);
+		countInsertBillingDataAndDetailData sqlCount = executor.execute(DATE, LAST_DATE,
+				(fromMemberId, toMemberId) -> sqlBillingEngine.insertBillingDataAndDetailData(
+						DATE, LAST_DATE, fromMemberId, toMemberId),
+				() -> batchApplication.deleteBillingData(DATE));
+		assertEquals(4, sqlCount.getMemberCount());
+		assertEquals(12, sqlCount.getChargeCount());
+		assertEquals(singleRows, selectRows(jdbcTemplate));
+	}
+
+	@Test
+	void failedPartitionRemovesWholeMonth() {
+		PartitionedBillingExecutor executor = createExecutor(2, 4);
+
+		//加入者3の範囲のみ失敗させる(他の範囲はコミットされる)
+		batchApplication.insertBillingStatus(DATE);
+		assertThrows(IllegalStateException.class, () -> executor.execute(DATE, LAST_DATE,
+				(fromMemberId, toMemberId) -> {
+					if (fromMemberId == 3) {
+						throw new IllegalStateException("テスト用の失敗");
+					}
+					return batchApplication.insertBillingDataAndDetailData(DATE, LAST_DATE,
+							fromMemberId, toMemberId);
+				},
+				() -> batchApplication.deleteBillingData(DATE)));
+
+		//コミット済みの範囲を含めて請求年月の請求情報が削除される
+		assertEquals(0, selectBillingData(jdbcTemplate).size());
+		assertEquals(0, selectBillingDetailData(jdbcTemplate).size());
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM T_BILLING_STATUS WHERE billing_ym = ?", Integer.class,
+				DATE));
+	}
+
+	/**
+	 * このテスト専用の設定値で並列請求データ作成クラスを作成する(共有の設定値は変更しない)
+	 */
+	private PartitionedBillingExecutor createExecutor(int parallelism, int partitionCount) {
+		BillingProperties billingProperties = new BillingProperties();
+		billingProperties.setParallelism(parallelism);
+		billingProperties.setPartitionCount(partitionCount);
+		return new PartitionedBillingExecutor(jdbcTemplate, transactionTemplate,
+				billingProperties);
+	}
+}
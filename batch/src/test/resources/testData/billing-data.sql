@@ -0,0 +1,24 @@
+-- 請求データ作成テスト用のデータ
+DELETE FROM T_BILLING_DETAIL_DATA;
+DELETE FROM T_BILLING_DATA;
+DELETE FROM T_BILLING_CHARGE_SET_ITEM;
+DELETE FROM T_BILLING_CHARGE_SET;
+DELETE FROM T_BILLING_CHECKPOINT;
+DELETE FROM T_BILLING_STATUS;
+DELETE FROM T_MEMBER;
+DELETE FROM T_CHARGE;
+
+-- 2023年4月に有効な加入者(1, 2, 3, 5)と無効な加入者(4: 解約済み, 6: 未加入)
+INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (1, 1, 'test-taro@s-giken.com', 'テスト太郎', '東京都千代田区', '2021-01-01', '9999-12-31', 1);
+INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (2, 2, 'test-hanako@s-giken.com', 'テスト花子', '東京都港区', '2023-04-30', NULL, 2);
+INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (3, 3, 'test-jiro@s-giken.com', 'テスト次郎', '大阪府大阪市', '2022-06-15', '2023-04-01', 1);
+INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (4, 4, 'test-saburo@s-giken.com', 'テスト三郎', '愛知県名古屋市', '2020-01-01', '2023-03-31', 3);
+INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (5, 5, 'test-shiro@s-giken.com', 'テスト四郎', '福岡県福岡市', '2023-01-10', NULL, 3);
+INSERT INTO T_MEMBER (member_id, member_num, mail, name, address, start_date, end_date, payment_method) VALUES (6, 6, 'test-goro@s-giken.com', 'テスト五郎', '北海道札幌市', '2023-05-01', NULL, 2);
+
+-- 2023年4月に有効な料金(1, 2, 4)と無効な料金(3: 終了済み, 5: 開始前)
+INSERT INTO T_CHARGE (charge_id, name, amount, start_date, end_date) VALUES (1, '基本料金', 1000, '2020-01-01', NULL);
+INSERT INTO T_CHARGE (charge_id, name, amount, start_date, end_date) VALUES (2, 'オプションA', 305, '2023-04-01', '2023-04-30');
+INSERT INTO T_CHARGE (charge_id, name, amount, start_date, end_date) VALUES (3, 'オプションB', 500, '2021-01-01', '2023-03-31');
+INSERT INTO T_CHARGE (charge_id, name, amount, start_date, end_date) VALUES (4, 'オプションC', 2015, '2023-04-30', '9999-12-31');
+INSERT INTO T_CHARGE (charge_id, name, amount, start_date, end_date) VALUES (5, 'オプションD', 700, '2023-05-01', NULL);
@@ -0,0 +1,28 @@
+-- Webアプリ側のJPA(Hibernate)が作成する加入者・料金テーブルと同じ定義
+CREATE TABLE IF NOT EXISTS T_MEMBER (
+    member_id INTEGER NOT NULL,
+    member_num INTEGER NOT NULL DEFAULT 0,
+    mail VARCHAR(255),
+    name VARCHAR(255),
+    address VARCHAR(255),
+    start_date TIMESTAMP(6),
+    end_date TIMESTAMP(6),
+    payment_method INTEGER NOT NULL,
+    created_date TIMESTAMP(6),
+    updated_date TIMESTAMP(6),
+
+    PRIMARY KEY (member_id)
+);
+
+
+CREATE TABLE IF NOT EXISTS T_CHARGE (
+    charge_id INTEGER NOT NULL,
+    name VARCHAR(255),
+    amount INTEGER NOT NULL,
+    start_date TIMESTAMP(6),
+    end_date TIMESTAMP(6),
+    created_date TIMESTAMP(6),
+    updated_date TIMESTAMP(6),
+
+    PRIMARY KEY (charge_id)
+);
@@ -0,0 +1,129 @@
+package com.s_giken.training.common;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSVを1レコードずつ読み込むクラス
+ *
+ * 全体をメモリに読み込まず、呼び出しごとに次の1レコードだけを解析する。
+ * ダブルクォートで囲んだ項目(カンマ・改行・「""」によるダブルクォートを含む)と、改行コードCRLF・LF・CRに対応する。
+ * 先頭のBOMは読み飛ばす。
+ */
+public final class CsvReader implements Closeable {
+	private static final int BOM = '\uFEFF';
+
+	private final BufferedReader reader;
+	private final StringBuilder field = new StringBuilder();
+	private int pushedBack = -2;
+	private long nextLineNumber = 1;
+	private long lineNumber = 0;
+	private boolean started = false;
+
+	/**
+	 * CSV読み込みクラスのコンストラクタ
+	 *
+	 * @param reader 読み込み元
+	 */
+	public CsvReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader bufferedReader
+				? bufferedReader
+				: new BufferedReader(reader);
+	}
+
+	/**
+	 * 次のレコードを読み込む
+	 *
+	 * @return レコードの項目(ファイルの終わりに達した場合はnull)
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public List<String> readRecord() throws IOException {
+		int ch = read();
+		if (!started) {
+			started = true;
+			if (ch == BOM) {
+				ch = read();
+			}
+		}
+		if (ch < 0) {
+			return null;
+		}
+		lineNumber = nextLineNumber;
+		List<String> record = new ArrayList<>();
+		field.setLength(0);
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (ch < 0) {
+					throw new IOException(lineNumber + "行目: ダブルクォートが閉じられていません。");
+				}
+				if (ch == '"') {
+					int next = read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						ch = next;
+						continue;
+					}
+				} else {
+					if (ch == '\n' || (ch == '\r' && peek() != '\n')) {
+						nextLineNumber++;
+					}
+					field.append((char) ch);
+				}
+			} else if (ch == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (ch == ',') {
+				record.add(field.toString());
+				field.setLength(0);
+			} else if (ch < 0 || ch == '\n' || ch == '\r') {
+				if (ch == '\r' && peek() == '\n') {
+					read();
+				}
+				if (ch >= 0) {
+					nextLineNumber++;
+				}
+				record.add(field.toString());
+				return record;
+			} else {
+				field.append((char) ch);
+			}
+			ch = read();
+		}
+	}
+
+	/**
+	 * 最後に読み込んだレコードの開始行番号を取得する
+	 *
+	 * @return 行番号(1始まり)
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private int read() throws IOException {
+		if (pushedBack != -2) {
+			int ch = pushedBack;
+			pushedBack = -2;
+			return ch;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (pushedBack == -2) {
+			pushedBack = reader.read();
+		}
+		return pushedBack;
+	}
+}
@@ -0,0 +1,197 @@
+package com.s_giken.training.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 適用開始日・適用終了日を持つデータ(料金・加入者など)を、指定した期間に有効なデータを検索するための索引
+ *
+ * 適用開始日の順に並べた配列を暗黙の二分探索木とし、各部分木の適用終了日の最大値を保持する区間木(Interval Tree)で、
+ * 「期間[from, to]に有効(適用開始日 &lt;= to かつ (適用終了日がnull または 適用終了日 &gt;= from))」なデータを
+ * O(log n + k)で検索する。
+ *
+ * 索引は不変(イミュータブル)で、追加・削除は変更を反映した新しい索引を返す(コピーオンライト)。
+ * 参照側はvolatileなフィールドなどに保持した索引をロックせずに検索できる。
+ *
+ * @param <K> データを識別するキー(検索結果はキーの昇順に並べる)
+ * @param <V> データ
+ */
+public final class EffectiveDateIndex<K extends Comparable<? super K>, V> {
+	private final Function<? super V, ? extends K> keyFunction;
+	private final Function<? super V, ? extends Date> startFunction;
+	private final Function<? super V, ? extends Date> endFunction;
+	private final Object[] values;
+	private final long[] starts;
+	private final long[] ends;
+	private final long[] maxEnds;
+
+	private EffectiveDateIndex(Function<? super V, ? extends K> keyFunction,
+			Function<? super V, ? extends Date> startFunction,
+			Function<? super V, ? extends Date> endFunction, List<? extends V> sortedValues) {
+		this.keyFunction = keyFunction;
+		this.startFunction = startFunction;
+		this.endFunction = endFunction;
+		int size = sortedValues.size();
+		this.values = sortedValues.toArray();
+		this.starts = new long[size];
+		this.ends = new long[size];
+		this.maxEnds = new long[size];
+		for (int i = 0; i < size; i++) {
+			V value = sortedValues.get(i);
+			starts[i] = startOf(value);
+			ends[i] = endOf(value);
+		}
+		buildMaxEnds(0, size - 1);
+	}
+
+	/**
+	 * データの一覧から索引を作成する
+	 *
+	 * @param <K> データを識別するキー
+	 * @param <V> データ
+	 * @param values データの一覧
+	 * @param keyFunction データからキーを取得する関数
+	 * @param startFunction データから適用開始日を取得する関数(nullの場合は無期限に過去から有効)
+	 * @param endFunction データから適用終了日を取得する関数(nullの場合は無期限に有効)
+	 * @return 索引
+	 */
+	public static <K extends Comparable<? super K>, V> EffectiveDateIndex<K, V> of(
+			Collection<? extends V> values, Function<? super V, ? extends K> keyFunction,
+			Function<? super V, ? extends Date> startFunction,
+			Function<? super V, ? extends Date> endFunction) {
+		List<V> sortedValues = new ArrayList<>(values);
+		EffectiveDateIndex<K, V> empty =
+				new EffectiveDateIndex<>(keyFunction, startFunction, endFunction, List.of());
+		sortedValues.sort(empty.order());
+		return new EffectiveDateIndex<>(keyFunction, startFunction, endFunction, sortedValues);
+	}
+
+	/**
+	 * 索引に登録されているデータの件数を取得する
+	 *
+	 * @return データの件数
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * 期間内に有効なデータを検索する
+	 *
+	 * @param from 期間の開始日時(この日時を含む)
+	 * @param to 期間の終了日時(この日時を含む)
+	 * @return 期間内に有効なデータ(キーの昇順)
+	 */
+	public List<V> findEffective(Date from, Date to) {
+		List<V> result = new ArrayList<>();
+		collect(0, values.length - 1, from.getTime(), to.getTime(), result);
+		result.sort(Comparator.comparing(keyFunction));
+		return result;
+	}
+
+	/**
+	 * データを追加(同じキーのデータが存在する場合は置換)した新しい索引を作成する
+	 *
+	 * @param value 追加するデータ
+	 * @return データを追加した新しい索引
+	 */
+	public EffectiveDateIndex<K, V> put(V value) {
+		K key = keyFunction.apply(value);
+		List<V> sortedValues = new ArrayList<>(values.length + 1);
+		for (V current : valueList()) {
+			if (!key.equals(keyFunction.apply(current))) {
+				sortedValues.add(current);
+			}
+		}
+		//キーが重複しないため、二分探索で見つかるのは常に挿入位置(-(挿入位置) - 1)となる
+		int position = Collections.binarySearch(sortedValues, value, order());
+		sortedValues.add(position < 0 ? -position - 1 : position, value);
+		return new EffectiveDateIndex<>(keyFunction, startFunction, endFunction, sortedValues);
+	}
+
+	/**
+	 * キーに一致するデータを削除した新しい索引を作成する
+	 *
+	 * @param key 削除するデータのキー
+	 * @return データを削除した新しい索引(一致するデータが無い場合はこの索引)
+	 */
+	public EffectiveDateIndex<K, V> remove(K key) {
+		List<V> sortedValues = new ArrayList<>(values.length);
+		for (V current : valueList()) {
+			if (!key.equals(keyFunction.apply(current))) {
+				sortedValues.add(current);
+			}
+		}
+		if (sortedValues.size() == values.length) {
+			return this;
+		}
+		return new EffectiveDateIndex<>(keyFunction, startFunction, endFunction, sortedValues);
+	}
+
+	/**
+	 * 部分木[lo, hi]の適用終了日の最大値を求める(部分木の根は中央の要素)
+	 */
+	private long buildMaxEnds(int lo, int hi) {
+		if (lo > hi) {
+			return Long.MIN_VALUE;
+		}
+		int mid = (lo + hi) >>> 1;
+		long max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid - 1), buildMaxEnds(mid + 1, hi)));
+		maxEnds[mid] = max;
+		return max;
+	}
+
+	/**
+	 * 部分木[lo, hi]から期間内に有効なデータを集める
+	 *
+	 * 部分木の適用終了日の最大値が期間の開始より前の場合は部分木全体を、
+	 * 適用開始日が期間の終了より後の場合はその要素と右側の部分木を検索しない。
+	 */
+	@SuppressWarnings("unchecked")
+	private void collect(int lo, int hi, long from, long to, List<V> result) {
+		if (lo > hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (maxEnds[mid] < from) {
+			return;
+		}
+		collect(lo, mid - 1, from, to, result);
+		if (starts[mid] > to) {
+			return;
+		}
+		if (ends[mid] >= from) {
+			result.add((V) values[mid]);
+		}
+		collect(mid + 1, hi, from, to, result);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<V> valueList() {
+		return (List<V>) Arrays.asList(values);
+	}
+
+	/**
+	 * 適用開始日の昇順(同じ場合はキーの昇順)の並び順
+	 */
+	private Comparator<V> order() {
+		return Comparator.<V>comparingLong(this::startOf)
+				.thenComparing(Comparator.comparing(keyFunction));
+	}
+
+	private long startOf(V value) {
+		Date start = startFunction.apply(value);
+		return start == null ? Long.MIN_VALUE : start.getTime();
+	}
+
+	private long endOf(V value) {
+		Date end = endFunction.apply(value);
+		return end == null ? Long.MAX_VALUE : end.getTime();
+	}
+}
@@ -0,0 +1,96 @@
+package com.s_giken.training.common;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * 起動処理のタイムラインを出力するクラス
+ *
+ * BufferingApplicationStartupに記録された起動処理のステップから、コンテキストの初期化時間と
+ * 生成に時間がかかったBeanを出力する。(startup.report.enabled=trueの場合のみ)
+ *
+ * webapp・batchで共通に使用する。各モジュールの起動クラスで@Importし、
+ * SpringApplicationにBufferingApplicationStartup(STARTUP_STEP_CAPACITY件)を設定すること。
+ */
+public class StartupTimelineReporter {
+	/**
+	 * 起動処理のステップを記録する件数の上限
+	 */
+	public static final int STARTUP_STEP_CAPACITY = 4096;
+
+	private static final String CONTEXT_REFRESH_STEP = "spring.context.refresh";
+	private static final String BEAN_INSTANTIATE_STEP = "spring.beans.instantiate";
+	private final Logger logger = LoggerFactory.getLogger(StartupTimelineReporter.class);
+	private final boolean enabled;
+	private final int top;
+	private final boolean exitOnStarted;
+
+	/**
+	 * 起動タイムライン出力クラスのコンストラクタ
+	 *
+	 * @param enabled 起動タイムラインを出力する場合はtrue
+	 * @param top 出力するBeanの件数
+	 * @param exitOnStarted 起動処理の完了後に終了する場合はtrue(AppCDSアーカイブ作成の訓練実行で使用)
+	 */
+	public StartupTimelineReporter(@Value("${startup.report.enabled:false}") boolean enabled,
+			@Value("${startup.report.top:20}") int top,
+			@Value("${startup.exit-on-started:false}") boolean exitOnStarted) {
+		this.enabled = enabled;
+		this.top = top;
+		this.exitOnStarted = exitOnStarted;
+	}
+
+	/**
+	 * 起動処理の完了時(CommandLineRunnerの実行前)に起動タイムラインを出力する
+	 *
+	 * @param event 起動完了イベント
+	 */
+	@EventListener
+	public void onApplicationStarted(ApplicationStartedEvent event) {
+		ConfigurableApplicationContext context = event.getApplicationContext();
+		if (enabled && context.getApplicationStartup() instanceof BufferingApplicationStartup startup) {
+			report(startup.getBufferedTimeline(), event.getTimeTaken());
+		}
+		if (exitOnStarted) {
+			System.exit(SpringApplication.exit(context));
+		}
+	}
+
+	private void report(StartupTimeline timeline, Duration timeTaken) {
+		List<TimelineEvent> events = timeline.getEvents();
+		logger.info("起動処理に" + timeTaken.toMillis() + "msかかりました。");
+		events.stream()
+				.filter(e -> CONTEXT_REFRESH_STEP.equals(e.getStartupStep().getName()))
+				.forEach(e -> logger.info("コンテキストの初期化: " + e.getDuration().toMillis() + "ms"));
+
+		//Beanの生成時間は、そのBeanが依存するBeanの生成時間を含む
+		logger.info("生成に時間がかかったBean(上位" + top + "件):");
+		events.stream()
+				.filter(e -> BEAN_INSTANTIATE_STEP.equals(e.getStartupStep().getName()))
+				.sorted(Comparator.comparing(TimelineEvent::getDuration).reversed())
+				.limit(top)
+				.forEach(e -> logger.info(String.format("%6dms %s", e.getDuration().toMillis(),
+						beanName(e.getStartupStep()))));
+	}
+
+	private static String beanName(StartupStep step) {
+		for (StartupStep.Tag tag : step.getTags()) {
+			if ("beanName".equals(tag.getKey())) {
+				return tag.getValue();
+			}
+		}
+		return step.getName();
+	}
+}
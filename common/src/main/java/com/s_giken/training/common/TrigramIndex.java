@@ -0,0 +1,174 @@
+package com.s_giken.training.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 部分一致検索のための3文字単位(トライグラム)の索引
+ *
+ * 文字列を3文字ずつずらして切り出した文字列(トライグラム)ごとに、それを含むデータのキーを保持する。
+ * 検索文字列の全トライグラムを含むキーを候補として絞り込み、候補の文字列が検索文字列を含むかを確認して結果とする。
+ * 3文字未満の検索文字列はトライグラムを作れないため検索できない(isSearchableで判定する)。
+ *
+ * 大文字・小文字は区別する(データベースのLIKEと同じ)。
+ * 検索は複数スレッドから同時に行え、登録・削除は検索と排他で行う。
+ *
+ * @param <K> データを識別するキー
+ */
+public final class TrigramIndex<K> {
+	/**
+	 * 索引に使用する文字数
+	 */
+	public static final int GRAM_LENGTH = 3;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<K, String> texts = new HashMap<>();
+	private final Map<String, Set<K>> postings = new HashMap<>();
+
+	/**
+	 * 検索文字列が索引で検索できるかを判定する
+	 *
+	 * @param pattern 検索文字列
+	 * @return 3文字以上の場合はtrue
+	 */
+	public static boolean isSearchable(String pattern) {
+		return pattern != null && pattern.length() >= GRAM_LENGTH;
+	}
+
+	/**
+	 * データの文字列を登録する(同じキーが登録済みの場合は置換する)
+	 *
+	 * @param key データのキー
+	 * @param text データの文字列(nullの場合は削除と同じ)
+	 */
+	public void put(K key, String text) {
+		lock.writeLock().lock();
+		try {
+			removeInternal(key);
+			if (text == null) {
+				return;
+			}
+			texts.put(key, text);
+			for (String gram : grams(text)) {
+				postings.computeIfAbsent(gram, g -> new HashSet<>()).add(key);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * データを削除する
+	 *
+	 * @param key データのキー
+	 */
+	public void remove(K key) {
+		lock.writeLock().lock();
+		try {
+			removeInternal(key);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 登録されているデータの件数を取得する
+	 *
+	 * @return データの件数
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return texts.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 検索文字列を含むデータのキーを検索する
+	 *
+	 * @param pattern 検索文字列(3文字以上)
+	 * @return 検索文字列を含むデータのキー(変更可能な新しいSet)
+	 * @throws IllegalArgumentException 検索文字列が3文字未満の場合
+	 */
+	public Set<K> findContaining(String pattern) {
+		if (!isSearchable(pattern)) {
+			throw new IllegalArgumentException("検索文字列は" + GRAM_LENGTH + "文字以上必要です。");
+		}
+		lock.readLock().lock();
+		try {
+			//件数の少ないトライグラムから順に共通するキーを絞り込む
+			List<Set<K>> candidateSets = new ArrayList<>();
+			for (String gram : grams(pattern)) {
+				Set<K> keys = postings.get(gram);
+				if (keys == null) {
+					return new HashSet<>();
+				}
+				candidateSets.add(keys);
+			}
+			candidateSets.sort(Comparator.comparingInt(Set::size));
+			Set<K> candidates = new HashSet<>(candidateSets.get(0));
+			for (int i = 1; i < candidateSets.size() && !candidates.isEmpty(); i++) {
+				candidates.retainAll(candidateSets.get(i));
+			}
+			//トライグラムを全て含んでも、連続して含むとは限らないため文字列で確認する
+			candidates.removeIf(key -> !texts.get(key).contains(pattern));
+			return candidates;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * データの文字列が検索文字列を含むかを判定する(3文字未満の検索文字列も使用できる)
+	 *
+	 * @param key データのキー
+	 * @param pattern 検索文字列
+	 * @return 含む場合はtrue(データが登録されていない場合はfalse)
+	 */
+	public boolean contains(K key, String pattern) {
+		lock.readLock().lock();
+		try {
+			String text = texts.get(key);
+			return text != null && text.contains(pattern);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void removeInternal(K key) {
+		String oldText = texts.remove(key);
+		if (oldText == null) {
+			return;
+		}
+		for (String gram : grams(oldText)) {
+			Set<K> keys = postings.get(gram);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					postings.remove(gram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 文字列から重複のないトライグラムを切り出す
+	 */
+	private static Set<String> grams(String text) {
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+			grams.add(text.substring(i, i + GRAM_LENGTH));
+		}
+		return grams;
+	}
+}
@@ -0,0 +1,44 @@
+package com.s_giken.training.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * CSV読み込みクラスのテスト
+ */
+class CsvReaderTests {
+
+	@Test
+	void readsQuotedFieldsAndLineNumbers() throws IOException {
+		CsvReader reader = new CsvReader(new StringReader(
+				"\uFEFFmail,name\r\n"
+						+ "a@example.com,\"山田, 太郎\"\r\n"
+						+ "\"b@example.com\",\"複数\n行の\"\"氏名\"\"\"\n"
+						+ "c@example.com,\n"
+						+ "d@example.com,末尾改行なし"));
+
+		assertEquals(List.of("mail", "name"), reader.readRecord());
+		assertEquals(1, reader.getLineNumber());
+		assertEquals(List.of("a@example.com", "山田, 太郎"), reader.readRecord());
+		assertEquals(2, reader.getLineNumber());
+		assertEquals(List.of("b@example.com", "複数\n行の\"氏名\""), reader.readRecord());
+		assertEquals(3, reader.getLineNumber());
+		assertEquals(List.of("c@example.com", ""), reader.readRecord());
+		assertEquals(5, reader.getLineNumber());
+		assertEquals(List.of("d@example.com", "末尾改行なし"), reader.readRecord());
+		assertEquals(6, reader.getLineNumber());
+		assertNull(reader.readRecord());
+	}
+
+	@Test
+	void unterminatedQuoteIsAnError() {
+		CsvReader reader = new CsvReader(new StringReader("\"abc,def\n"));
+
+		assertThrows(IOException.class, reader::readRecord);
+	}
+}
@@ -0,0 +1,103 @@
+package com.s_giken.training.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 適用期間の索引のテスト
+ */
+class EffectiveDateIndexTests {
+	private static final long DAY = 24L * 60 * 60 * 1000;
+
+	private record Item(int id, Date startDate, Date endDate) {
+	}
+
+	@Test
+	void findEffectiveMatchesLinearScan() {
+		Random random = new Random(1);
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			items.add(randomItem(random, i));
+		}
+		EffectiveDateIndex<Integer, Item> index = index(items);
+
+		for (int i = 0; i < 200; i++) {
+			Date from = new Date(random.nextInt(400) * DAY);
+			Date to = new Date(from.getTime() + random.nextInt(60) * DAY);
+			assertEquals(scan(items, from, to), index.findEffective(from, to));
+		}
+	}
+
+	@Test
+	void putAndRemoveReturnUpdatedIndex() {
+		Random random = new Random(2);
+		List<Item> items = new ArrayList<>();
+		EffectiveDateIndex<Integer, Item> index = index(items);
+		for (int i = 0; i < 300; i++) {
+			int id = random.nextInt(100);
+			items.removeIf(item -> item.id() == id);
+			if (random.nextInt(3) == 0) {
+				index = index.remove(id);
+			} else {
+				Item item = randomItem(random, id);
+				items.add(item);
+				index = index.put(item);
+			}
+			Date from = new Date(random.nextInt(400) * DAY);
+			Date to = new Date(from.getTime() + 30 * DAY);
+			assertEquals(items.size(), index.size());
+			assertEquals(scan(items, from, to), index.findEffective(from, to));
+		}
+	}
+
+	@Test
+	void removeMissingKeyReturnsSameIndex() {
+		EffectiveDateIndex<Integer, Item> index =
+				index(List.of(new Item(1, new Date(0), null)));
+
+		assertSame(index, index.remove(2));
+	}
+
+	@Test
+	void boundariesAreInclusive() {
+		Item item = new Item(1, new Date(10 * DAY), new Date(20 * DAY));
+		EffectiveDateIndex<Integer, Item> index = index(List.of(item));
+
+		assertEquals(List.of(item), index.findEffective(new Date(0), new Date(10 * DAY)));
+		assertEquals(List.of(item), index.findEffective(new Date(20 * DAY), new Date(30 * DAY)));
+		assertEquals(List.of(), index.findEffective(new Date(0), new Date(10 * DAY - 1)));
+		assertEquals(List.of(), index.findEffective(new Date(20 * DAY + 1), new Date(30 * DAY)));
+	}
+
+	private static Item randomItem(Random random, int id) {
+		Date startDate = new Date(random.nextInt(365) * DAY);
+		Date endDate = random.nextInt(4) == 0 ? null
+				: new Date(startDate.getTime() + random.nextInt(90) * DAY);
+		return new Item(id, startDate, endDate);
+	}
+
+	private static EffectiveDateIndex<Integer, Item> index(List<Item> items) {
+		return EffectiveDateIndex.of(items, Item::id, Item::startDate, Item::endDate);
+	}
+
+	/**
+	 * 全件を走査して期間内に有効なデータを抽出する(索引の結果と比較する期待値)
+	 */
+	private static List<Item> scan(List<Item> items, Date from, Date to) {
+		List<Item> result = new ArrayList<>();
+		for (Item item : items) {
+			if (!item.startDate().after(to)
+					&& (item.endDate() == null || !item.endDate().before(from))) {
+				result.add(item);
+			}
+		}
+		result.sort(Comparator.comparingInt(Item::id));
+		return result;
+	}
+}
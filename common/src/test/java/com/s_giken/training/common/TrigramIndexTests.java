@@ -0,0 +1,87 @@
+package com.s_giken.training.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * トライグラム索引のテスト
+ */
+class TrigramIndexTests {
+	private static final String LETTERS = "abcあいう";
+
+	@Test
+	void findContainingMatchesLinearScan() {
+		Random random = new Random(1);
+		Map<Integer, String> texts = new HashMap<>();
+		TrigramIndex<Integer> index = new TrigramIndex<>();
+		for (int i = 0; i < 1000; i++) {
+			int key = random.nextInt(300);
+			if (random.nextInt(4) == 0) {
+				texts.remove(key);
+				index.remove(key);
+			} else {
+				String text = randomText(random, 12);
+				texts.put(key, text);
+				index.put(key, text);
+			}
+		}
+		assertEquals(texts.size(), index.size());
+
+		for (int i = 0; i < 300; i++) {
+			String pattern = randomText(random, 3 + random.nextInt(3));
+			assertEquals(scan(texts, pattern), index.findContaining(pattern));
+		}
+	}
+
+	@Test
+	void putReplacesPreviousText() {
+		TrigramIndex<Integer> index = new TrigramIndex<>();
+		index.put(1, "yamada@example.com");
+		index.put(1, "suzuki@example.com");
+
+		assertEquals(Set.of(), index.findContaining("yamada"));
+		assertEquals(Set.of(1), index.findContaining("suzuki"));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void shortPatternsAreNotSearchable() {
+		TrigramIndex<Integer> index = new TrigramIndex<>();
+		index.put(1, "山田太郎");
+
+		assertFalse(TrigramIndex.isSearchable("山田"));
+		assertThrows(IllegalArgumentException.class, () -> index.findContaining("山田"));
+		//3文字未満は登録済みの文字列で個別に確認する
+		assertTrue(index.contains(1, "山田"));
+		assertFalse(index.contains(2, "山田"));
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 全件を走査して検索文字列を含むキーを抽出する(索引の結果と比較する期待値)
+	 */
+	private static Set<Integer> scan(Map<Integer, String> texts, String pattern) {
+		Set<Integer> keys = new HashSet<>();
+		texts.forEach((key, text) -> {
+			if (text.contains(pattern)) {
+				keys.add(key);
+			}
+		});
+		return keys;
+	}
+}
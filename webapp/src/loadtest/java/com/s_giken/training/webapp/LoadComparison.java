@@ -0,0 +1,334 @@
+package com.s_giken.training.webapp;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 起動中のwebappに負荷をかけ、スループットと応答時間を出力する負荷比較ツール
+ *
+ * フォームログインしたセッションで、指定した同時実行数のクライアントが応答を待っては次のリクエストを送る(クローズドループ)。
+ * 結果は標準出力と、出力先ディレクトリの「ラベル.json」に出力する。
+ *
+ * loadtest.warにwebappのwarを指定した場合は、スレッドプール(既定)と仮想スレッド(spring.threads.virtual.enabled=true)の
+ * 各モードでwarを順に起動して同じ条件で実行し、各モードの結果(platform.json・virtual.json)と比較表(comparison.md)を出力する
+ * (起動したwebappのログは「ラベル-server.log」に出力する)。
+ *
+ * 設定はシステムプロパティで指定する。
+ * <ul>
+ * <li>loadtest.war: 各モードで起動するwebappのwar(指定しない場合は起動中のwebappに実行する)</li>
+ * <li>loadtest.port: warを起動するポート番号(既定 18080、loadtest.warを指定した場合のみ)</li>
+ * <li>loadtest.baseUrl: webappのURL(既定 http://localhost:8080、loadtest.warを指定しない場合のみ)</li>
+ * <li>loadtest.path: リクエストするパス(既定 /member/edit/1)</li>
+ * <li>loadtest.user / loadtest.password: ログインユーザー(既定 user / password)</li>
+ * <li>loadtest.apiKey: API(/api/**)のAPIキー(X-API-Keyヘッダーで送る。起動するwarにはapi.keyとして渡す)</li>
+ * <li>loadtest.concurrency: 同時実行数(既定 400)</li>
+ * <li>loadtest.warmup: ウォームアップの秒数(既定 10、結果に含めない)</li>
+ * <li>loadtest.duration: 計測の秒数(既定 30)</li>
+ * <li>loadtest.label: 結果のラベル(既定 platform、loadtest.warを指定しない場合のみ)</li>
+ * <li>loadtest.output: 結果の出力先ディレクトリ(既定 build/results/loadtest)</li>
+ * </ul>
+ */
+public class LoadComparison {
+    private static final int STARTUP_TIMEOUT_SECONDS = 120;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final HttpClient client;
+    private final URI target;
+    private final String apiKey;
+
+    private LoadComparison(HttpClient client, URI target, String apiKey) {
+        this.client = client;
+        this.target = target;
+        this.apiKey = apiKey;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String path = System.getProperty("loadtest.path", "/member/edit/1");
+        int concurrency = Integer.getInteger("loadtest.concurrency", 400);
+        int warmup = Integer.getInteger("loadtest.warmup", 10);
+        int duration = Integer.getInteger("loadtest.duration", 30);
+        Path output = Path.of(System.getProperty("loadtest.output", "build/results/loadtest"));
+        Files.createDirectories(output);
+
+        String war = System.getProperty("loadtest.war");
+        if (war == null) {
+            String baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8080");
+            String label = System.getProperty("loadtest.label", "platform");
+            Result result = measure(baseUrl, path, concurrency, warmup, duration);
+            writeResult(output, label, result.toJson(label, path, concurrency));
+            return;
+        }
+
+        int port = Integer.getInteger("loadtest.port", 18080);
+        String baseUrl = "http://localhost:" + port;
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String label : List.of("platform", "virtual")) {
+            Process server = startServer(Path.of(war), port, label.equals("virtual"),
+                    output.resolve(label + "-server.log"));
+            try {
+                awaitStarted(server, baseUrl);
+                Result result = measure(baseUrl, path, concurrency, warmup, duration);
+                writeResult(output, label, result.toJson(label, path, concurrency));
+                results.put(label, result);
+            } finally {
+                stopServer(server);
+            }
+        }
+        String comparison = toMarkdown(results, path, concurrency, duration);
+        System.out.println(comparison);
+        Files.writeString(output.resolve("comparison.md"), comparison);
+    }
+
+    /**
+     * ログインしてウォームアップした後、計測した結果を返す
+     */
+    private static Result measure(String baseUrl, String path, int concurrency, int warmup,
+            int duration) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        login(client, baseUrl, System.getProperty("loadtest.user", "user"),
+                System.getProperty("loadtest.password", "password"));
+
+        var loadComparison = new LoadComparison(client, URI.create(baseUrl + path),
+                System.getProperty("loadtest.apiKey"));
+        System.out.printf("%s%s に同時実行数%dで負荷をかけます(ウォームアップ%d秒, 計測%d秒)%n",
+                baseUrl, path, concurrency, warmup, duration);
+        loadComparison.run(concurrency, Duration.ofSeconds(warmup));
+        return loadComparison.run(concurrency, Duration.ofSeconds(duration));
+    }
+
+    private static void writeResult(Path output, String label, String json) throws IOException {
+        System.out.println(json);
+        Files.writeString(output.resolve(label + ".json"), json);
+    }
+
+    /**
+     * warを指定したモードで起動する(このツールと同じJavaで起動する)
+     */
+    private static Process startServer(Path war, int port, boolean virtual, Path log)
+            throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        System.out.printf("%sを起動します(spring.threads.virtual.enabled=%s)%n", war, virtual);
+        ProcessBuilder processBuilder = new ProcessBuilder(java, "-jar", war.toString(),
+                "--server.port=" + port, "--spring.threads.virtual.enabled=" + virtual);
+        String apiKey = System.getProperty("loadtest.apiKey");
+        if (apiKey != null) {
+            //コマンドラインに残らないよう、環境変数で渡す
+            processBuilder.environment().put("API_KEY", apiKey);
+        }
+        return processBuilder
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+    }
+
+    /**
+     * 起動したwebappがログイン画面を返すまで待つ
+     */
+    private static void awaitStarted(Process server, String baseUrl)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/login")).GET().build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STARTUP_TIMEOUT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException(
+                        "webappの起動に失敗しました。(終了コード " + server.exitValue() + ")");
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding())
+                        .statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                //起動中のため接続できない
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException(
+                "webappが" + STARTUP_TIMEOUT_SECONDS + "秒以内に起動しませんでした。");
+    }
+
+    /**
+     * 起動したwebappを停止する(時間内に停止しない場合は強制終了する)
+     */
+    private static void stopServer(Process server) throws InterruptedException {
+        server.destroy();
+        if (!server.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            server.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * 各モードの結果を比較表(Markdown)にする
+     */
+    private static String toMarkdown(Map<String, Result> results, String path, int concurrency,
+            int duration) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "# 負荷比較 (%s, 同時実行数 %d, 計測 %d秒)%n%n",
+                path, concurrency, duration));
+        sb.append("| 項目 |");
+        results.keySet().forEach(label -> sb.append(' ').append(label).append(" |"));
+        sb.append(System.lineSeparator()).append("| --- |");
+        results.keySet().forEach(label -> sb.append(" ---: |"));
+        sb.append(System.lineSeparator());
+        appendRow(sb, "リクエスト数", results, r -> String.valueOf(r.latencies().length));
+        appendRow(sb, "エラー数", results, r -> String.valueOf(r.errors()));
+        appendRow(sb, "スループット(件/秒)", results,
+                r -> String.format(Locale.ROOT, "%.1f", r.throughput()));
+        appendRow(sb, "p50 (ms)", results,
+                r -> String.format(Locale.ROOT, "%.2f", r.percentile(50)));
+        appendRow(sb, "p95 (ms)", results,
+                r -> String.format(Locale.ROOT, "%.2f", r.percentile(95)));
+        appendRow(sb, "p99 (ms)", results,
+                r -> String.format(Locale.ROOT, "%.2f", r.percentile(99)));
+        appendRow(sb, "最大 (ms)", results,
+                r -> String.format(Locale.ROOT, "%.2f", r.percentile(100)));
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, Map<String, Result> results,
+            Function<Result, String> value) {
+        sb.append("| ").append(name).append(" |");
+        results.values().forEach(result -> sb.append(' ').append(value.apply(result)).append(" |"));
+        sb.append(System.lineSeparator());
+    }
+
+    /**
+     * フォームログインし、セッションのCookieをクライアントに保持する
+     */
+    private static void login(HttpClient client, String baseUrl, String user, String password)
+            throws IOException, InterruptedException {
+        String form = "username=" + URLEncoder.encode(user, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException(
+                    "ログインに失敗しました。(" + response.statusCode() + " " + location + ")");
+        }
+    }
+
+    /**
+     * 指定した時間、同時実行数のクライアントでリクエストを送り続ける
+     */
+    private Result run(int concurrency, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            workers.add(Thread.ofVirtual().start(() -> {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                        .timeout(Duration.ofSeconds(60)).GET();
+                if (apiKey != null) {
+                    builder.header("X-API-Key", apiKey);
+                }
+                HttpRequest request = builder.build();
+                while (System.nanoTime() < deadline) {
+                    long requestStart = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding())
+                                .statusCode();
+                        if (status != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                        continue;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    recorder.add(System.nanoTime() - requestStart);
+                }
+                latencies.add(recorder.toArray());
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray(),
+                errors.get(), elapsed);
+    }
+
+    /**
+     * 1クライアント分の応答時間(ナノ秒)の記録
+     */
+    private static class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * 計測結果
+     *
+     * @param latencies 成功したリクエストの応答時間(ナノ秒、昇順)
+     * @param errors 失敗したリクエストの件数(200以外の応答・通信エラー)
+     * @param elapsed 計測にかかった時間(ナノ秒)
+     */
+    private record Result(long[] latencies, long errors, long elapsed) {
+        double throughput() {
+            return latencies.length / (elapsed / 1e9);
+        }
+
+        double percentile(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+
+        String toJson(String label, String path, int concurrency) {
+            return String.format(Locale.ROOT,
+                    "{\"label\":\"%s\",\"path\":\"%s\",\"concurrency\":%d,"
+                    + "\"requests\":%d,\"errors\":%d,\"throughputPerSec\":%.1f,"
+                    + "\"p50Ms\":%.2f,\"p95Ms\":%.2f,\"p99Ms\":%.2f,\"maxMs\":%.2f}",
+                    label, path, concurrency, latencies.length, errors, throughput(),
+                    percentile(50), percentile(95), percentile(99), percentile(100));
+        }
+    }
+}
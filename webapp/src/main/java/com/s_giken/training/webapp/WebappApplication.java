@@ -2,13 +2,17 @@ package com.s_giken.training.webapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import com.s_giken.training.common.StartupTimelineReporter;
 
 /**
  * Spring Bootの起動クラス
  */
 @SpringBootApplication
 @EnableJpaAuditing
+@Import(StartupTimelineReporter.class)
 public class WebappApplication {
 	/**
 	 * Spring Bootの起動メソッド
@@ -16,6 +20,10 @@ public class WebappApplication {
 	 * @param args コマンドライン引数
 	 */
 	public static void main(String[] args) {
-		SpringApplication.run(WebappApplication.class, args);
+		SpringApplication application = new SpringApplication(WebappApplication.class);
+		// 起動処理の各ステップの所要時間を記録する(StartupTimelineReporterで出力)
+		application.setApplicationStartup(
+				new BufferingApplicationStartup(StartupTimelineReporter.STARTUP_STEP_CAPACITY));
+		application.run(args);
 	}
 }
@@ -0,0 +1,66 @@
+package com.s_giken.training.webapp.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * APIキーで認証するフィルタークラス(API(/api/**)のみ)
+ *
+ * リクエストヘッダー「X-API-Key」の値を設定したAPIキーと照合し、一致した場合は認証済みとする。
+ * Basic認証のパスワード(BCrypt)の照合は1回ごとに意図的に時間がかかるため、頻繁にポーリングするツールはAPIキーを使用する。
+ * 照合はSHA-256のハッシュ値をMessageDigest.isEqualで比較し、キーの内容・長さによって照合時間が変わらないようにする。
+ * ヘッダーが無い場合は何もしない(Basic認証で認証する)。
+ */
+public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
+    /** APIキーを指定するリクエストヘッダー */
+    public static final String HEADER_NAME = "X-API-Key";
+
+    private final byte[] apiKeyHash;
+
+    /**
+     * APIキー認証フィルターのコンストラクタ
+     *
+     * @param apiKey 照合するAPIキー
+     */
+    public ApiKeyAuthenticationFilter(String apiKey) {
+        this.apiKeyHash = sha256(apiKey);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String presented = request.getHeader(HEADER_NAME);
+        if (presented != null) {
+            if (!MessageDigest.isEqual(apiKeyHash, sha256(presented))) {
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated("api",
+                    null, AuthorityUtils.createAuthorityList("ROLE_API")));
+            SecurityContextHolder.setContext(context);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            //SHA-256はすべてのJava実行環境で使用できる
+            throw new IllegalStateException(e);
+        }
+    }
+}
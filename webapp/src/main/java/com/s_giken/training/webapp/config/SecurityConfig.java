@@ -1,16 +1,21 @@
 package com.s_giken.training.webapp.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 /**
@@ -20,6 +25,39 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 @EnableWebSecurity
 @EnableMethodSecurity
 public class SecurityConfig {
+    /**
+     * API(/api/**)のSpring Securityの設定
+     *
+     * APIはAPIキー(X-API-Keyヘッダー)またはBasic認証で認証し、セッションを作成しない。
+     * (画面のフォームログインより先に判定する)
+     * Basic認証はリクエストごとにパスワードをBCryptで照合するため、頻繁にポーリングするツールはAPIキーを使用する。
+     * APIキー(api.key)を設定しない場合は、Basic認証のみとなる。
+     *
+     * @param http HttpSecurityオブジェクト
+     * @param apiKey APIキー
+     * @return SecurityFilterChainオブジェクト
+     * @throws Exception 例外全般
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http,
+            @Value("${api.key:}") String apiKey) throws Exception {
+        if (!apiKey.isBlank()) {
+            http.addFilterBefore(new ApiKeyAuthenticationFilter(apiKey),
+                    BasicAuthenticationFilter.class);
+        }
+        http
+                .securityMatcher(AntPathRequestMatcher.antMatcher("/api/**"))
+                .csrf(csrf -> csrf.disable()) // CSRF対策を無効化
+                .httpBasic(Customizer.withDefaults())
+                .sessionManagement((session) -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests((authorize) -> authorize
+                        .anyRequest().authenticated());
+
+        return http.build();
+    }
+
     /**
      * Spring Securityの設定
      *
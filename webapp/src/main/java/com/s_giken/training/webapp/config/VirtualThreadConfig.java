@@ -0,0 +1,74 @@
+package com.s_giken.training.webapp.config;
+
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+/**
+ * 仮想スレッドでリクエストを処理する設定クラス(spring.threads.virtual.enabled=trueの場合のみ仮想スレッドを使用する)
+ *
+ * Tomcatのリクエスト処理と、アプリケーションのタスク実行(StreamingResponseBodyによるCSV出力・@Async)を、
+ * スレッドプールの代わりに1タスクごとに作成する仮想スレッドで実行する。
+ * データベースの応答待ちの間はキャリアスレッドが解放されるため、スレッドプールの上限(既定200)に達して
+ * リクエストが待たされることがない(データベースへの同時接続数はコネクションプールの上限までに制限される)。
+ *
+ * Spring AOT(bootRunFast・fastStartJar)ではBeanの登録条件(@ConditionalOnProperty)がビルド時に評価され、
+ * 起動時に指定したプロパティが反映されないため、Beanは常に登録し、仮想スレッドを使用するかどうかは起動時の
+ * プロパティで判定する(無効の場合はSpring Bootの既定と同じスレッドプールを使用する)。
+ *
+ * Spring Boot 3.2以降は同じプロパティで仮想スレッドが有効になるため、このクラスは不要になる。
+ */
+@Configuration
+public class VirtualThreadConfig {
+    private final boolean virtualThreadsEnabled;
+
+    /**
+     * 仮想スレッドの設定クラスのコンストラクタ
+     *
+     * @param virtualThreadsEnabled 仮想スレッドを使用する場合はtrue
+     */
+    public VirtualThreadConfig(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    /**
+     * Tomcatのリクエスト処理を仮想スレッドで実行する(無効の場合はTomcatのスレッドプールのまま変更しない)
+     *
+     * @return Tomcatのプロトコルハンドラーの設定
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (virtualThreadsEnabled) {
+                protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            }
+        };
+    }
+
+    /**
+     * アプリケーションのタスク実行を仮想スレッドで行う
+     *
+     * Spring Bootが作成するスレッドプール(applicationTaskExecutor)の代わりに使用される。
+     * Spring MVCの非同期処理と、@Asyncのメソッド(@EnableAsyncの場合)の実行に使用される。
+     * 無効の場合は、Spring Bootの既定と同じくspring.task.execution.*の設定でスレッドプールを作成する。
+     *
+     * @param builder spring.task.execution.*の設定を反映したスレッドプールの作成クラス
+     * @return 仮想スレッドまたはスレッドプールでタスクを実行するExecutor
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        if (virtualThreadsEnabled) {
+            return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.s_giken.training.webapp.controller;
+
+import java.util.Map;
+import com.s_giken.training.webapp.exception.BadRequestException;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
+
+/**
+ * APIのページ分割・並び替えのパラメータの確認
+ */
+final class ApiPaging {
+    /**
+     * 1ページの件数の既定値
+     */
+    static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * 1ページの件数の上限
+     */
+    static final int MAX_PAGE_SIZE = 500;
+
+    private ApiPaging() {
+    }
+
+    /**
+     * 1ページの件数を確認する
+     *
+     * @param size 1ページの件数
+     * @return 1ページの件数
+     * @throws BadRequestException 1～MAX_PAGE_SIZEの範囲外の場合
+     */
+    static int pageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException(
+                    String.format("sizeは1～%dの範囲で指定してください。", MAX_PAGE_SIZE));
+        }
+        return size;
+    }
+
+    /**
+     * 並び替え項目を確認する
+     *
+     * @param type 参照用の射影の型
+     * @param column 並び替え項目(未指定の場合はdefaultColumn)
+     * @param defaultColumn 並び替え項目の既定値
+     * @return 並び替え項目
+     * @throws BadRequestException 射影に存在しない項目が指定された場合
+     */
+    static String column(Class<? extends Record> type, String column, String defaultColumn) {
+        if (column == null || column.isBlank()) {
+            return defaultColumn;
+        }
+        if (!FieldSelection.exists(type, column)) {
+            throw new BadRequestException(String.format("指定した並び替え項目(%s)は存在しません。", column));
+        }
+        return column;
+    }
+
+    /**
+     * 並び順を確認する
+     *
+     * @param sortDirection 並び順(ASC/DESC、未指定の場合はASC)
+     * @return 並び順
+     * @throws BadRequestException ASC/DESC以外が指定された場合
+     */
+    static String sortDirection(String sortDirection) {
+        if (sortDirection == null || sortDirection.isBlank()) {
+            return "ASC";
+        }
+        if (!sortDirection.equalsIgnoreCase("ASC") && !sortDirection.equalsIgnoreCase("DESC")) {
+            throw new BadRequestException("sortDirectionはASCまたはDESCを指定してください。");
+        }
+        return sortDirection.toUpperCase();
+    }
+
+    /**
+     * 検索結果の1ページ分から、選択した項目のみを取り出す
+     *
+     * @param page 検索結果の1ページ分
+     * @param selection 応答に含める項目
+     * @return 選択した項目のみの1ページ分
+     */
+    static SearchResultPage<Map<String, Object>> select(SearchResultPage<? extends Record> page,
+            FieldSelection selection) {
+        return new SearchResultPage<>(
+                page.getContent().stream().map(selection::select).toList(),
+                page.getCount(), page.getPage(), page.getPageSize(), page.isHasPrevious(),
+                page.isHasNext());
+    }
+}
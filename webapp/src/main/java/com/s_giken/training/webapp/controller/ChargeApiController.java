@@ -0,0 +1,76 @@
+package com.s_giken.training.webapp.controller;
+
+import java.util.Map;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import com.s_giken.training.webapp.exception.NotFoundException;
+import com.s_giken.training.webapp.model.entity.ChargeSearchCondition;
+import com.s_giken.training.webapp.model.entity.ChargeView;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
+import com.s_giken.training.webapp.service.ChargeService;
+
+/**
+ * 料金情報を参照するAPIのコントローラークラス
+ *
+ * 料金情報をJSONで返す(参照のみ)。応答には参照用の射影(ChargeView)の項目のうち、
+ * fieldsパラメータ(カンマ区切り)で指定した項目のみを含める(未指定の場合は全項目)。
+ */
+@RestController // 戻り値をJSONで返すコントローラークラスであることを示す
+@RequestMapping("/api/charges") // リクエストパスを指定
+public class ChargeApiController {
+    private final ChargeService chargeService;
+
+    /**
+     * 料金情報APIのコントローラークラスのコンストラクタ
+     *
+     * @param chargeService 料金管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     */
+    public ChargeApiController(ChargeService chargeService) {
+        this.chargeService = chargeService;
+    }
+
+    /**
+     * 料金を条件検索し、1ページ分を返す
+     *
+     * @param chargeSearchCondition 検索条件(name・column・sortDirection・pageパラメータ)
+     * @param size 1ページの件数(上限はApiPaging.MAX_PAGE_SIZE)
+     * @param fields 応答に含める項目名(カンマ区切り)
+     * @return 条件に一致した料金情報の1ページ分
+     */
+    @GetMapping
+    public SearchResultPage<Map<String, Object>> searchCharges(
+            @ModelAttribute ChargeSearchCondition chargeSearchCondition,
+            @RequestParam(defaultValue = "" + ApiPaging.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.of(ChargeView.class, fields);
+        chargeSearchCondition.setColumn(
+                ApiPaging.column(ChargeView.class, chargeSearchCondition.getColumn(), "chargeId"));
+        chargeSearchCondition.setSortDirection(
+                ApiPaging.sortDirection(chargeSearchCondition.getSortDirection()));
+
+        var page = chargeService.findViewsByConditions(chargeSearchCondition,
+                ApiPaging.pageSize(size));
+        return ApiPaging.select(page, selection);
+    }
+
+    /**
+     * 料金を1件返す
+     *
+     * @param id URLに指定された料金ID
+     * @param fields 応答に含める項目名(カンマ区切り)
+     * @return 料金IDに一致した料金情報
+     */
+    @GetMapping("/{id}")
+    public Map<String, Object> getCharge(
+            @PathVariable int id,
+            @RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.of(ChargeView.class, fields);
+        var charge = chargeService.findViewById(id).orElseThrow(() -> new NotFoundException(
+                String.format("指定したchargeId(%d)の料金情報が存在しません。", id)));
+        return selection.select(charge);
+    }
+}
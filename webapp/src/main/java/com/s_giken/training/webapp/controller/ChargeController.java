@@ -1,15 +1,26 @@
 package com.s_giken.training.webapp.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.s_giken.training.webapp.exception.NotFoundException;
 import com.s_giken.training.webapp.model.entity.Charge;
 import com.s_giken.training.webapp.model.entity.ChargeSearchCondition;
+import com.s_giken.training.webapp.service.CsvExportService;
+import com.s_giken.training.webapp.service.CsvImportService;
 import com.s_giken.training.webapp.service.ChargeService;
 
 import org.springframework.stereotype.Controller;
@@ -24,14 +35,21 @@ import org.springframework.validation.annotation.Validated;
 @RequestMapping("/charge") // リクエストパスを指定
 public class ChargeController {
     private final ChargeService chargeService;
+    private final CsvImportService csvImportService;
+    private final CsvExportService csvExportService;
 
     /**
      * 加入者管理機能のコントローラークラスのコンストラクタ
      * 
      * @param chargeService 加入者管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     * @param csvImportService CSV取込サービスクラス(SpringのDIコンテナから渡される)
+     * @param csvExportService CSV出力サービスクラス(SpringのDIコンテナから渡される)
      */
-    public ChargeController(ChargeService chargeService) {
+    public ChargeController(ChargeService chargeService, CsvImportService csvImportService,
+            CsvExportService csvExportService) {
         this.chargeService = chargeService;
+        this.csvImportService = csvImportService;
+        this.csvExportService = csvExportService;
     }
 
     /**
@@ -58,13 +76,32 @@ public class ChargeController {
     public String searchAndListing(
             @ModelAttribute("chargeSearchCondition") ChargeSearchCondition chargeSearchCodition,
             Model model) {
-        var result = chargeService.findByConditions(chargeSearchCodition);
-        int count = result.size();
-        model.addAttribute("result", result);
-        model.addAttribute("count", count);
+        var page = chargeService.findByConditions(chargeSearchCodition);
+        model.addAttribute("page", page);
+        model.addAttribute("result", page.getContent());
+        model.addAttribute("count", page.getCount());
         return "charge_search_result";
     }
 
+    /**
+     * 料金の検索結果をCSVで出力する
+     * 
+     * 検索結果は1件ずつ読み込みながら応答に書き込む(画面の検索結果と異なり、全件を出力する)。
+     * 
+     * @param chargeSearchCondition 料金検索結果画面から渡された検索条件
+     * @return CSVを書き込む応答
+     */
+    @PostMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCharges(
+            @ModelAttribute("chargeSearchCondition") ChargeSearchCondition chargeSearchCondition) {
+        StreamingResponseBody body =
+                output -> csvExportService.exportCharges(chargeSearchCondition, output);
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"charges.csv\"")
+                .body(body);
+    }
+
     /**
      * 加入者編集画面を表示する
      * 
@@ -143,4 +180,38 @@ public class ChargeController {
         redirectAttributes.addFlashAttribute("message", "削除しました。");
         return "redirect:/charge/search";
     }
+
+    /**
+     * 料金CSV取込画面を表示する
+     * 
+     * @return 料金CSV取込画面のテンプレート名
+     */
+    @GetMapping("/import")
+    public String showImport() {
+        return "charge_import";
+    }
+
+    /**
+     * アップロードされたCSVから料金情報を取り込む
+     * 
+     * @param file アップロードされたCSVファイル
+     * @param model Thymeleafに渡すデータ
+     * @return 料金CSV取込画面のテンプレート名
+     */
+    @PostMapping("/import")
+    public String importCharges(
+            @RequestParam("file") MultipartFile file,
+            Model model) {
+        if (file.isEmpty()) {
+            model.addAttribute("error", "CSVファイルを選択してください。");
+            return "charge_import";
+        }
+        try {
+            var importResult = csvImportService.importCharges(file.getInputStream());
+            model.addAttribute("importResult", importResult);
+        } catch (IOException | IllegalArgumentException e) {
+            model.addAttribute("error", e.getMessage());
+        }
+        return "charge_import";
+    }
 }
@@ -0,0 +1,95 @@
+package com.s_giken.training.webapp.controller;
+
+import java.lang.reflect.RecordComponent;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.s_giken.training.webapp.exception.BadRequestException;
+
+/**
+ * APIの応答に含める項目の選択
+ *
+ * 参照用の射影(record)の項目のうち、リクエストのfieldsパラメータ(カンマ区切り)で指定した項目のみを応答に含める。
+ * 日付の項目はシステムのタイムゾーンの日付(yyyy-MM-dd)として出力する。
+ */
+final class FieldSelection {
+    private final List<RecordComponent> components;
+
+    private FieldSelection(List<RecordComponent> components) {
+        this.components = components;
+    }
+
+    /**
+     * 応答に含める項目を解析する
+     *
+     * @param type 参照用の射影の型
+     * @param fields 応答に含める項目名(カンマ区切り、未指定の場合は全項目)
+     * @return 応答に含める項目
+     * @throws BadRequestException 射影に存在しない項目が指定された場合
+     */
+    static FieldSelection of(Class<? extends Record> type, String fields) {
+        RecordComponent[] all = type.getRecordComponents();
+        if (fields == null || fields.isBlank()) {
+            return new FieldSelection(List.of(all));
+        }
+        List<RecordComponent> selected = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            RecordComponent component = find(all, field.trim());
+            if (component == null) {
+                throw new BadRequestException(String.format("指定した項目(%s)は存在しません。", field));
+            }
+            if (!selected.contains(component)) {
+                selected.add(component);
+            }
+        }
+        return new FieldSelection(selected);
+    }
+
+    /**
+     * 射影に項目が存在するか確認する
+     *
+     * @param type 参照用の射影の型
+     * @param field 項目名
+     * @return 存在する場合はtrue
+     */
+    static boolean exists(Class<? extends Record> type, String field) {
+        return find(type.getRecordComponents(), field) != null;
+    }
+
+    /**
+     * 射影から選択した項目のみを取り出す
+     *
+     * @param view 参照用の射影
+     * @return 項目名と値(項目の指定順)
+     */
+    Map<String, Object> select(Record view) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (RecordComponent component : components) {
+            Object value;
+            try {
+                value = component.getAccessor().invoke(view);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+            if (value instanceof Date date) {
+                value = Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault())
+                        .toLocalDate();
+            }
+            values.put(component.getName(), value);
+        }
+        return values;
+    }
+
+    private static RecordComponent find(RecordComponent[] components, String field) {
+        for (RecordComponent component : components) {
+            if (component.getName().equals(field)) {
+                return component;
+            }
+        }
+        return null;
+    }
+}
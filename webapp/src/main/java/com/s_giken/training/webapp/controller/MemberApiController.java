@@ -0,0 +1,76 @@
+package com.s_giken.training.webapp.controller;
+
+import java.util.Map;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import com.s_giken.training.webapp.exception.NotFoundException;
+import com.s_giken.training.webapp.model.entity.MemberSearchCondition;
+import com.s_giken.training.webapp.model.entity.MemberView;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
+import com.s_giken.training.webapp.service.MemberService;
+
+/**
+ * 加入者情報を参照するAPIのコントローラークラス
+ *
+ * 加入者情報をJSONで返す(参照のみ)。応答には参照用の射影(MemberView)の項目のうち、
+ * fieldsパラメータ(カンマ区切り)で指定した項目のみを含める(未指定の場合は全項目)。
+ */
+@RestController // 戻り値をJSONで返すコントローラークラスであることを示す
+@RequestMapping("/api/members") // リクエストパスを指定
+public class MemberApiController {
+    private final MemberService memberService;
+
+    /**
+     * 加入者情報APIのコントローラークラスのコンストラクタ
+     *
+     * @param memberService 加入者管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     */
+    public MemberApiController(MemberService memberService) {
+        this.memberService = memberService;
+    }
+
+    /**
+     * 加入者を条件検索し、1ページ分を返す
+     *
+     * @param memberSearchCondition 検索条件(mail・name・column・sortDirection・pageパラメータ)
+     * @param size 1ページの件数(上限はApiPaging.MAX_PAGE_SIZE)
+     * @param fields 応答に含める項目名(カンマ区切り)
+     * @return 条件に一致した加入者情報の1ページ分
+     */
+    @GetMapping
+    public SearchResultPage<Map<String, Object>> searchMembers(
+            @ModelAttribute MemberSearchCondition memberSearchCondition,
+            @RequestParam(defaultValue = "" + ApiPaging.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.of(MemberView.class, fields);
+        memberSearchCondition.setColumn(
+                ApiPaging.column(MemberView.class, memberSearchCondition.getColumn(), "memberId"));
+        memberSearchCondition.setSortDirection(
+                ApiPaging.sortDirection(memberSearchCondition.getSortDirection()));
+
+        var page = memberService.findViewsByConditions(memberSearchCondition,
+                ApiPaging.pageSize(size));
+        return ApiPaging.select(page, selection);
+    }
+
+    /**
+     * 加入者を1件返す
+     *
+     * @param id URLに指定された加入者ID
+     * @param fields 応答に含める項目名(カンマ区切り)
+     * @return 加入者IDに一致した加入者情報
+     */
+    @GetMapping("/{id}")
+    public Map<String, Object> getMember(
+            @PathVariable int id,
+            @RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.of(MemberView.class, fields);
+        var member = memberService.findViewById(id).orElseThrow(() -> new NotFoundException(
+                String.format("指定したmemberId(%d)の加入者情報が存在しません。", id)));
+        return selection.select(member);
+    }
+}
@@ -1,15 +1,26 @@
 package com.s_giken.training.webapp.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.s_giken.training.webapp.exception.NotFoundException;
 import com.s_giken.training.webapp.model.entity.Member;
 import com.s_giken.training.webapp.model.entity.MemberSearchCondition;
+import com.s_giken.training.webapp.service.CsvExportService;
+import com.s_giken.training.webapp.service.CsvImportService;
 import com.s_giken.training.webapp.service.MemberService;
 
 import org.springframework.stereotype.Controller;
@@ -24,14 +35,21 @@ import org.springframework.validation.annotation.Validated;
 @RequestMapping("/member") // リクエストパスを指定
 public class MemberController {
 	private final MemberService memberService;
+	private final CsvImportService csvImportService;
+	private final CsvExportService csvExportService;
 
 	/**
 	 * 加入者管理機能のコントローラークラスのコンストラクタ
 	 * 
 	 * @param memberService 加入者管理機能のサービスクラス(SpringのDIコンテナから渡される)
+	 * @param csvImportService CSV取込サービスクラス(SpringのDIコンテナから渡される)
+	 * @param csvExportService CSV出力サービスクラス(SpringのDIコンテナから渡される)
 	 */
-	public MemberController(MemberService memberService) {
+	public MemberController(MemberService memberService, CsvImportService csvImportService,
+			CsvExportService csvExportService) {
 		this.memberService = memberService;
+		this.csvImportService = csvImportService;
+		this.csvExportService = csvExportService;
 	}
 
 	/**
@@ -58,13 +76,32 @@ public class MemberController {
 	public String searchAndListing(
 			@ModelAttribute("memberSearchCondition") MemberSearchCondition memberSearchCodition,
 			Model model) {
-		var result = memberService.findByConditions(memberSearchCodition);
-		int count = result.size();
-		model.addAttribute("result", result);
-		model.addAttribute("count", count);
+		var page = memberService.findByConditions(memberSearchCodition);
+		model.addAttribute("page", page);
+		model.addAttribute("result", page.getContent());
+		model.addAttribute("count", page.getCount());
 		return "member_search_result";
 	}
 
+	/**
+	 * 加入者の検索結果をCSVで出力する
+	 * 
+	 * 検索結果は1件ずつ読み込みながら応答に書き込む(画面の検索結果と異なり、全件を出力する)。
+	 * 
+	 * @param memberSearchCondition 加入者検索結果画面から渡された検索条件
+	 * @return CSVを書き込む応答
+	 */
+	@PostMapping("/export")
+	public ResponseEntity<StreamingResponseBody> exportMembers(
+			@ModelAttribute("memberSearchCondition") MemberSearchCondition memberSearchCondition) {
+		StreamingResponseBody body =
+				output -> csvExportService.exportMembers(memberSearchCondition, output);
+		return ResponseEntity.ok()
+				.contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"members.csv\"")
+				.body(body);
+	}
+
 	/**
 	 * 加入者編集画面を表示する
 	 * 
@@ -110,7 +147,7 @@ public class MemberController {
 	 * @return リダイレクト先のURL
 	 */
 	@PostMapping("/save")
-	synchronized public String saveMember(
+	public String saveMember(
 			@Validated Member member,
 			BindingResult bindingResult,
 			RedirectAttributes redirectAttributes) {
@@ -118,7 +155,6 @@ public class MemberController {
 			return "member_edit";
 		}
 		memberService.save(member);
-		memberService.saveMemberNum(member);
 		redirectAttributes.addFlashAttribute("message", "保存しました。");
 		return "redirect:/member/edit/" + member.getMemberId();
 	}
@@ -143,4 +179,38 @@ public class MemberController {
 		redirectAttributes.addFlashAttribute("message", "削除しました。");
 		return "redirect:/member/search";
 	}
+
+	/**
+	 * 加入者CSV取込画面を表示する
+	 * 
+	 * @return 加入者CSV取込画面のテンプレート名
+	 */
+	@GetMapping("/import")
+	public String showImport() {
+		return "member_import";
+	}
+
+	/**
+	 * アップロードされたCSVから加入者情報を取り込む
+	 * 
+	 * @param file アップロードされたCSVファイル
+	 * @param model Thymeleafに渡すデータ
+	 * @return 加入者CSV取込画面のテンプレート名
+	 */
+	@PostMapping("/import")
+	public String importMembers(
+			@RequestParam("file") MultipartFile file,
+			Model model) {
+		if (file.isEmpty()) {
+			model.addAttribute("error", "CSVファイルを選択してください。");
+			return "member_import";
+		}
+		try {
+			var importResult = csvImportService.importMembers(file.getInputStream());
+			model.addAttribute("importResult", importResult);
+		} catch (IOException | IllegalArgumentException e) {
+			model.addAttribute("error", e.getMessage());
+		}
+		return "member_import";
+	}
 }
@@ -0,0 +1,19 @@
+package com.s_giken.training.webapp.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * リクエストの内容が正しくない場合の例外クラス
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException {
+    /**
+     * コンストラクタ
+     * 
+     * @param message エラーメッセージ
+     */
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
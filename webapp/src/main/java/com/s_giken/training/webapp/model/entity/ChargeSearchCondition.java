@@ -12,4 +12,7 @@ public class ChargeSearchCondition {
     private String name;
     private String sortDirection;
     private String column;
+    private int page; // 表示するページ番号(0始まり)
+    private Integer after; // 次のページを表示する場合の、表示中のページの最後の行のID
+    private Integer before; // 前のページを表示する場合の、表示中のページの最初の行のID
 }
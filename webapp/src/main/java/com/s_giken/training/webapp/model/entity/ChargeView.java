@@ -0,0 +1,23 @@
+package com.s_giken.training.webapp.model.entity;
+
+import java.util.Date;
+
+/**
+ * 料金情報の参照用の射影(API用)
+ *
+ * 料金(Charge)のうち参照に必要な項目のみを持つ。リポジトリの検索で型に指定すると、
+ * この項目のみをSELECTし、永続化コンテキストで管理されない(変更の検出が行われない)オブジェクトとして取得する。
+ *
+ * @param chargeId 料金ID
+ * @param name 料金名
+ * @param amount 月額料金
+ * @param startDate 適用開始日
+ * @param endDate 適用終了日
+ */
+public record ChargeView(
+        int chargeId,
+        String name,
+        int amount,
+        Date startDate,
+        Date endDate) {
+}
@@ -0,0 +1,45 @@
+package com.s_giken.training.webapp.model.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * CSV取込の結果
+ *
+ * 取り込めなかった行は、先頭からMAX_REJECTED_ROWS件までの行番号と理由を保持する(件数は全件を数える)。
+ */
+@Data // メンバー変数に対するゲッター・セッターを自動生成
+public class ImportResult {
+    /**
+     * 取り込めなかった行の詳細を保持する件数の上限
+     */
+    public static final int MAX_REJECTED_ROWS = 100;
+
+    /**
+     * 取り込めなかった行
+     *
+     * @param lineNumber CSVの行番号(1始まり)
+     * @param message 取り込めなかった理由
+     */
+    public record RejectedRow(long lineNumber, String message) {
+    }
+
+    private long processedCount; // 読み込んだ行数(見出し行を除く)
+    private long importedCount; // 登録した行数
+    private long rejectedCount; // 取り込めなかった行数
+    private List<RejectedRow> rejectedRows = new ArrayList<>(); // 取り込めなかった行の詳細
+
+    /**
+     * 取り込めなかった行を記録する
+     *
+     * @param lineNumber CSVの行番号
+     * @param message 取り込めなかった理由
+     */
+    public void reject(long lineNumber, String message) {
+        rejectedCount++;
+        if (rejectedRows.size() < MAX_REJECTED_ROWS) {
+            rejectedRows.add(new RejectedRow(lineNumber, message));
+        }
+    }
+}
@@ -14,6 +14,7 @@ import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -32,6 +33,7 @@ import lombok.NoArgsConstructor;
  * @AllArgsConstructor ：全てのメンバー変数を引数に持つコンストラクタを自動生成する。
  * @Id ：主キーであることを示す。
  * @GeneratedValue ：主キーの採番方法を指定する。
+ * @SequenceGenerator ：主キーを採番するシーケンスと、一度に確保する件数を指定する。
  * @Column ：対応する列名を指定する。
  * @NotNull ：null不可であることを示す。
  * @NotBlank ：空文字不可であることを示す。
@@ -47,7 +49,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class Member {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "Member_SEQ", allocationSize = 50)
     @Column(name = "member_id")
     private int memberId;
 
@@ -0,0 +1,29 @@
+package com.s_giken.training.webapp.model.entity;
+
+import java.util.Date;
+
+/**
+ * 加入者情報の参照用の射影(API用)
+ *
+ * 加入者(Member)のうち参照に必要な項目のみを持つ。リポジトリの検索で型に指定すると、
+ * この項目のみをSELECTし、永続化コンテキストで管理されない(変更の検出が行われない)オブジェクトとして取得する。
+ *
+ * @param memberId 加入者ID
+ * @param memberNum 会員番号
+ * @param mail メールアドレス
+ * @param name 氏名
+ * @param address 住所
+ * @param startDate 加入日
+ * @param endDate 解約日
+ * @param paymentMethod 支払方法
+ */
+public record MemberView(
+        int memberId,
+        int memberNum,
+        String mail,
+        String name,
+        String address,
+        Date startDate,
+        Date endDate,
+        int paymentMethod) {
+}
@@ -0,0 +1,31 @@
+package com.s_giken.training.webapp.model.entity;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 検索結果の1ページ分のデータ
+ *
+ * @param <T> 検索結果のエンティティ
+ */
+@Data // メンバー変数に対するゲッター・セッターを自動生成
+@AllArgsConstructor // 全てのメンバ変数に対する引数を持つコンストラクタを自動生成
+public class SearchResultPage<T> {
+
+    private List<T> content; // このページの検索結果
+    private long count; // 検索条件に一致した全件数
+    private int page; // ページ番号(0始まり)
+    private int pageSize; // 1ページの件数
+    private boolean hasPrevious; // 前のページがあるか
+    private boolean hasNext; // 次のページがあるか
+
+    /**
+     * 全ページ数を取得する
+     *
+     * @return 全ページ数
+     */
+    public int getTotalPages() {
+        return (int) ((count + pageSize - 1) / pageSize);
+    }
+}
@@ -1,11 +1,21 @@
 package com.s_giken.training.webapp.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import com.s_giken.training.webapp.model.entity.Charge;
+import jakarta.persistence.QueryHint;
 
 import java.util.Date;
 
@@ -30,6 +40,40 @@ public interface ChargeRepository extends JpaRepository<Charge, Integer> {
 
     public List<Charge> findByNameLike(String name, Sort sort);
 
+    public Window<Charge> findFirst50ByNameLike(String name, ScrollPosition position, Sort sort);
+
+    public Page<Charge> findByNameLike(String name, Pageable pageable);
+
+    public long countByNameLike(String name);
+
+    /*
+     * API用(typeに射影の型を指定し、その項目のみを取得する)
+     */
+    public <T> Page<T> findByNameLike(String name, Pageable pageable, Class<T> type);
+
+    public <T> Optional<T> findByChargeId(int chargeId, Class<T> type);
+
+    /*
+     * CSV出力用(読み取り専用のトランザクション内で使用し、読み終えたらStreamを閉じる)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    public Stream<Charge> streamByNameLike(String name, Sort sort);
+
+    public Window<Charge> findFirst50ByChargeIdIn(Collection<Integer> chargeIds,
+            ScrollPosition position, Sort sort);
+
+    public Page<Charge> findByChargeIdIn(Collection<Integer> chargeIds, Pageable pageable);
+
+    public <T> Page<T> findByChargeIdIn(Collection<Integer> chargeIds, Pageable pageable,
+            Class<T> type);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    public Stream<Charge> streamByChargeIdIn(Collection<Integer> chargeIds, Sort sort);
+
     @Query("SELECT e FROM Charge e WHERE e.startDate <= ?2 AND (e.endDate >= ?1 OR e.endDate IS NULL)")
     public List<Charge> findByStartDateAndEndDate(Date date, Date lastDate);
 }
@@ -1,10 +1,20 @@
 package com.s_giken.training.webapp.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import com.s_giken.training.webapp.model.entity.Member;
+import jakarta.persistence.QueryHint;
 
 public interface MemberRepository extends JpaRepository<Member, Integer> {
     /*
@@ -27,6 +37,42 @@ public interface MemberRepository extends JpaRepository<Member, Integer> {
 
     public List<Member> findByMailLikeAndNameLike(String mail, String name, Sort sort);
 
+    public Window<Member> findFirst50ByMailLikeAndNameLike(String mail, String name,
+            ScrollPosition position, Sort sort);
+
+    public Page<Member> findByMailLikeAndNameLike(String mail, String name, Pageable pageable);
+
+    public long countByMailLikeAndNameLike(String mail, String name);
+
+    /*
+     * API用(typeに射影の型を指定し、その項目のみを取得する)
+     */
+    public <T> Page<T> findByMailLikeAndNameLike(String mail, String name, Pageable pageable,
+            Class<T> type);
+
+    public <T> Optional<T> findByMemberId(int memberId, Class<T> type);
+
+    /*
+     * CSV出力用(読み取り専用のトランザクション内で使用し、読み終えたらStreamを閉じる)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    public Stream<Member> streamByMailLikeAndNameLike(String mail, String name, Sort sort);
+
+    public Window<Member> findFirst50ByMemberIdIn(Collection<Integer> memberIds,
+            ScrollPosition position, Sort sort);
+
+    public Page<Member> findByMemberIdIn(Collection<Integer> memberIds, Pageable pageable);
+
+    public <T> Page<T> findByMemberIdIn(Collection<Integer> memberIds, Pageable pageable,
+            Class<T> type);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    public Stream<Member> streamByMemberIdIn(Collection<Integer> memberIds, Sort sort);
+
     @Query("select max(m.memberNum) from Member m")
     public Integer findMaxMemberNum();
 }
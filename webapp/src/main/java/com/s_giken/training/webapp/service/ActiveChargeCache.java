@@ -0,0 +1,132 @@
+package com.s_giken.training.webapp.service;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.s_giken.training.common.EffectiveDateIndex;
+import com.s_giken.training.webapp.model.entity.Charge;
+import com.s_giken.training.webapp.repository.ChargeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 期間内に有効な料金のキャッシュ
+ *
+ * トップ画面で表示する当月・翌月の有効な料金を、全料金を読み込んだ適用期間の索引(EffectiveDateIndex)から取得する。
+ * キャッシュするのは索引のみで、期間ごとの一覧は保持しない(索引は日付で検索するため、月が変わっても作り直す必要はない)。
+ * 索引は初回の取得時に作成し、料金の登録・削除で更新する(まとめて登録した場合は破棄し、次回の取得時に作成し直す)。
+ * 取得の結果はMeterRegistryの「charge.active.cache」(result=hit/miss)に記録する(missは索引を作成した場合)。
+ *
+ * charge.active-cache.enabled=trueの場合のみ索引を使用し、既定(false)では索引を作成せず、毎回データベースから取得する
+ * (他のプロセスによる料金の更新は反映されないため、有効にできる構成はREADMEの「メモリ上の索引」を参照)。
+ */
+@Component
+public class ActiveChargeCache {
+    private final ChargeRepository chargeRepository;
+    private final boolean enabled;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile EffectiveDateIndex<Integer, Charge> index;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * 有効な料金のキャッシュのコンストラクタ
+     *
+     * @param chargeRepository 料金管理機能のリポジトリクラス(SpringのDIコンテナから渡される)
+     * @param registry MeterRegistry(Beanが存在しない場合はSimpleMeterRegistryを使用する)
+     * @param enabled 適用期間の索引をキャッシュする場合はtrue(1台構成のみ)
+     */
+    public ActiveChargeCache(ChargeRepository chargeRepository,
+            ObjectProvider<MeterRegistry> registry,
+            @Value("${charge.active-cache.enabled:false}") boolean enabled) {
+        this.chargeRepository = chargeRepository;
+        this.enabled = enabled;
+        MeterRegistry meterRegistry = registry.getIfAvailable(SimpleMeterRegistry::new);
+        this.hits = Counter.builder("charge.active.cache").tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("charge.active.cache").tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 期間内に有効な料金を取得する
+     *
+     * @param from 期間の開始日
+     * @param to 期間の終了日
+     * @return 期間内に有効な料金(料金IDの昇順)
+     */
+    public List<Charge> findEffective(Date from, Date to) {
+        if (!enabled) {
+            return chargeRepository.findByStartDateAndEndDate(from, to).stream()
+                    .sorted(Comparator.comparing(Charge::getChargeId))
+                    .toList();
+        }
+        EffectiveDateIndex<Integer, Charge> current = index;
+        if (current != null) {
+            hits.increment();
+            return current.findEffective(from, to);
+        }
+        lock.lock();
+        try {
+            if (index == null) {
+                misses.increment();
+                index = EffectiveDateIndex.of(chargeRepository.findAll(), Charge::getChargeId,
+                        Charge::getStartDate, Charge::getEndDate);
+            } else {
+                hits.increment();
+            }
+            return index.findEffective(from, to);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 登録した料金を索引に反映する(料金の登録後に呼び出す)
+     *
+     * @param charge 登録した料金
+     */
+    public void put(Charge charge) {
+        lock.lock();
+        try {
+            if (index != null) {
+                index = index.put(charge);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 削除した料金を索引から取り除く(料金の削除後に呼び出す)
+     *
+     * @param chargeId 削除した料金の料金ID
+     */
+    public void remove(int chargeId) {
+        lock.lock();
+        try {
+            if (index != null) {
+                index = index.remove(chargeId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 索引を破棄する(料金をまとめて登録した後に呼び出す。次回の取得時に全件から作成し直す)
+     */
+    public void invalidate() {
+        lock.lock();
+        try {
+            index = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.s_giken.training.webapp.service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import com.s_giken.training.webapp.model.entity.Charge;
 import com.s_giken.training.webapp.model.entity.ChargeSearchCondition;
+import com.s_giken.training.webapp.model.entity.ChargeView;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
 import java.time.LocalDate;
 /*
  * 【ヒント】
@@ -19,10 +22,19 @@ public interface ChargeService {
 
     public Optional<Charge> findById(int chargeId);
 
-    public List<Charge> findByConditions(ChargeSearchCondition chargeSearchCondition);
+    public SearchResultPage<Charge> findByConditions(ChargeSearchCondition chargeSearchCondition);
+
+    public Stream<Charge> streamByConditions(ChargeSearchCondition chargeSearchCondition);
+
+    public SearchResultPage<ChargeView> findViewsByConditions(
+            ChargeSearchCondition chargeSearchCondition, int pageSize);
+
+    public Optional<ChargeView> findViewById(int chargeId);
 
     public void save(Charge charge);
 
+    public void saveAll(List<Charge> charges);
+
     public void deleteById(int chargeId);
 
     public List<Charge> findByStartDateAndEndDate(LocalDate today, LocalDate lastDayOfMonth);
@@ -1,33 +1,61 @@
 package com.s_giken.training.webapp.service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.s_giken.training.webapp.model.entity.Charge;
 import com.s_giken.training.webapp.model.entity.ChargeSearchCondition;
+import com.s_giken.training.webapp.model.entity.ChargeView;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
 import com.s_giken.training.webapp.repository.ChargeRepository;
+import com.s_giken.training.common.TrigramIndex;
 import java.util.Date;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.format.DateTimeFormatter;
-
 import java.time.LocalDate;
+import java.time.ZoneId;
 
 /**
  * 加入者管理機能のサービスクラス(実態クラス)
+ *
+ * 当月・翌月に有効な料金の検索は、ActiveChargeCache(料金の適用期間の索引)から取得する(料金の登録・削除で更新する)。
+ * search.trigram-index.enabled=trueの場合、料金名の部分一致検索は、3文字以上の場合はトライグラム索引(TrigramIndex)で
+ * 料金IDを絞り込んでから取得する(検索画面・CSV出力・APIで同じ絞り込みを使用する)。
+ * 既定(false)では常にLIKEで検索する(加入者の検索と同じ索引の扱い。MemberServiceImplを参照)。
  */
 @Service
 public class ChargeServiceImpl implements ChargeService {
     private ChargeRepository chargeRepository;
+    private ActiveChargeCache activeChargeCache;
+    private KeysetSearch<Charge> keysetSearch;
+    private final TrigramIndex<Integer> nameIndex = new TrigramIndex<>();
+    private volatile boolean nameIndexLoaded = false;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private final boolean trigramIndexEnabled;
 
     /**
      * 加入者管理機能のサービスクラスのコンストラクタ
      * 
      * @param chargeRepository 加入者管理機能のリポジトリクラス(SpringのDIコンテナから渡される)
+     * @param activeChargeCache 月ごとの有効な料金のキャッシュ(SpringのDIコンテナから渡される)
+     * @param trigramIndexEnabled 部分一致検索にトライグラム索引を使用する場合はtrue(1台構成のみ)
      */
-    public ChargeServiceImpl(ChargeRepository chargeRepository) {
+    public ChargeServiceImpl(ChargeRepository chargeRepository,
+            ActiveChargeCache activeChargeCache,
+            @Value("${search.trigram-index.enabled:false}") boolean trigramIndexEnabled) {
         this.chargeRepository = chargeRepository;
+        this.activeChargeCache = activeChargeCache;
+        this.trigramIndexEnabled = trigramIndexEnabled;
+        this.keysetSearch =
+                new KeysetSearch<>("chargeId", Set.of("endDate"), chargeRepository::findById);
     }
 
     /**
@@ -52,54 +80,166 @@ public class ChargeServiceImpl implements ChargeService {
     }
 
     /**
-     * 加入者を条件検索する
+     * 加入者を条件検索する(1ページ分のみ取得する)
      * 
      * @param chargeSearchCondition 加入者検索条件
-     * @return 条件に一致した加入者情報
+     * @return 条件に一致した加入者情報の1ページ分
      */
     @Override
-    public List<Charge> findByConditions(ChargeSearchCondition chargeSearchCondition) {
-        Sort sort = Sort.by(
-                Sort.Direction.fromString(chargeSearchCondition.getSortDirection()),
-                chargeSearchCondition.getColumn());
+    public SearchResultPage<Charge> findByConditions(ChargeSearchCondition chargeSearchCondition) {
+        Set<Integer> candidates =
+                findCandidates(Objects.toString(chargeSearchCondition.getName(), ""));
+        if (candidates != null) {
+            //索引で絞り込んだ料金IDで検索
+            if (candidates.isEmpty()) {
+                return new SearchResultPage<>(List.of(), 0, 0, KeysetSearch.PAGE_SIZE, false,
+                        false);
+            }
+            return keysetSearch.search(
+                    chargeSearchCondition.getColumn(),
+                    chargeSearchCondition.getSortDirection(),
+                    chargeSearchCondition.getPage(),
+                    chargeSearchCondition.getAfter(),
+                    chargeSearchCondition.getBefore(),
+                    (position, sort) -> chargeRepository.findFirst50ByChargeIdIn(candidates,
+                            position, sort),
+                    pageable -> chargeRepository.findByChargeIdIn(candidates, pageable),
+                    candidates::size);
+        }
+
+        String name = "%" + chargeSearchCondition.getName() + "%";
 
-        return chargeRepository.findByNameLike("%" + chargeSearchCondition.getName() + "%",
-                sort);
+        return keysetSearch.search(
+                chargeSearchCondition.getColumn(),
+                chargeSearchCondition.getSortDirection(),
+                chargeSearchCondition.getPage(),
+                chargeSearchCondition.getAfter(),
+                chargeSearchCondition.getBefore(),
+                (position, sort) -> chargeRepository.findFirst50ByNameLike(name, position, sort),
+                pageable -> chargeRepository.findByNameLike(name, pageable),
+                () -> chargeRepository.countByNameLike(name));
     }
 
+    /**
+     * 料金を条件検索し、検索結果を1件ずつ読み込むStreamを取得する(CSV出力用)
+     *
+     * 検索画面と同じ条件・並び順で全件を取得する。読み取り専用のトランザクション内で呼び出し、読み終えたら閉じること。
+     *
+     * @param chargeSearchCondition 料金検索条件
+     * @return 条件に一致した料金情報のStream
+     */
+    @Override
+    public Stream<Charge> streamByConditions(ChargeSearchCondition chargeSearchCondition) {
+        Sort sort = keysetSearch.sortOf(chargeSearchCondition.getColumn(),
+                chargeSearchCondition.getSortDirection());
+        Set<Integer> candidates =
+                findCandidates(Objects.toString(chargeSearchCondition.getName(), ""));
+        if (candidates != null) {
+            //検索画面と同じく、索引で絞り込んだ料金IDで検索
+            return candidates.isEmpty() ? Stream.empty()
+                    : chargeRepository.streamByChargeIdIn(candidates, sort);
+        }
 
+        String name = "%" + chargeSearchCondition.getName() + "%";
 
-    public List<Charge> findByStartDateAndEndDate(LocalDate today, LocalDate lastDayOfMonth) {
-        String formatToday = today.format(DateTimeFormatter.ofPattern("yyyyMM" + "01"));
-        String formatLastDayOfMonth =
-                lastDayOfMonth.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        Date date = null;
-        Date lastDay = null;
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-            date = sdf.parse(formatToday);
-            lastDay = sdf.parse(formatLastDayOfMonth);
-        } catch (ParseException e) {
-            e.printStackTrace();
+        return chargeRepository.streamByNameLike(name, sort);
+    }
+
+    /**
+     * 料金を条件検索し、参照用の射影で1ページ分を取得する(API用)
+     *
+     * 射影の項目のみをSELECTし、読み取り専用のトランザクションで取得する。
+     *
+     * @param chargeSearchCondition 料金検索条件(並び替え項目・並び順・ページ番号を含む)
+     * @param pageSize 1ページの件数
+     * @return 条件に一致した料金情報の1ページ分
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public SearchResultPage<ChargeView> findViewsByConditions(
+            ChargeSearchCondition chargeSearchCondition, int pageSize) {
+        String namePattern = Objects.toString(chargeSearchCondition.getName(), "");
+        int page = Math.max(0, chargeSearchCondition.getPage());
+        PageRequest pageable = PageRequest.of(page, pageSize, keysetSearch.sortOf(
+                chargeSearchCondition.getColumn(), chargeSearchCondition.getSortDirection()));
+
+        //検索画面と同じく、索引で絞り込める場合は料金IDで検索
+        Set<Integer> candidates = findCandidates(namePattern);
+        Page<ChargeView> result = candidates != null
+                ? candidates.isEmpty() ? new PageImpl<>(List.of(), pageable, 0)
+                        : chargeRepository.findByChargeIdIn(candidates, pageable,
+                                ChargeView.class)
+                : chargeRepository.findByNameLike("%" + namePattern + "%", pageable,
+                        ChargeView.class);
+        return new SearchResultPage<>(result.getContent(), result.getTotalElements(), page,
+                pageSize, result.hasPrevious(), result.hasNext());
+    }
+
+    /**
+     * 料金を参照用の射影で1件取得する(API用)
+     *
+     * @param chargeId 料金ID
+     * @return 料金IDに一致した料金情報
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ChargeView> findViewById(int chargeId) {
+        return chargeRepository.findByChargeId(chargeId, ChargeView.class);
+    }
+
+    /**
+     * トライグラム索引で料金名を含む料金IDを絞り込む
+     *
+     * @param name 料金名の検索文字列
+     * @return 条件に一致する料金ID(索引を使用しない場合はnull)
+     */
+    private Set<Integer> findCandidates(String name) {
+        if (!trigramIndexEnabled || !SubstringSearch.isIndexable(name)) {
+            return null;
         }
-        return chargeRepository.findByStartDateAndEndDate(date, lastDay);
+        Set<Integer> candidates = getNameIndex().findContaining(name);
+        return candidates.size() <= SubstringSearch.MAX_CANDIDATES ? candidates : null;
+    }
+
+
+
+    /**
+     * 当月に有効な料金を取得する
+     *
+     * @param today 当月の日付
+     * @param lastDayOfMonth 当月の月末日
+     * @return 当月に有効な料金(料金IDの昇順)
+     */
+    @Override
+    public List<Charge> findByStartDateAndEndDate(LocalDate today, LocalDate lastDayOfMonth) {
+        return findEffective(today.withDayOfMonth(1), lastDayOfMonth);
     }
 
+    /**
+     * 翌月に有効な料金を取得する
+     *
+     * @param todayOfNextMonth 翌月の日付
+     * @param lastDayOfNextMonth 翌月の月末日
+     * @return 翌月に有効な料金(料金IDの昇順)
+     */
+    @Override
     public List<Charge> findByNextStartDateAndEndDate(LocalDate todayOfNextMonth,
             LocalDate lastDayOfNextMonth) {
-        String formatToday = todayOfNextMonth.format(DateTimeFormatter.ofPattern("yyyyMM" + "01"));
-        String formatLastDayOfMonth =
-                lastDayOfNextMonth.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        Date date = null;
-        Date lastDay = null;
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-            date = sdf.parse(formatToday);
-            lastDay = sdf.parse(formatLastDayOfMonth);
-        } catch (ParseException e) {
-            e.printStackTrace();
-        }
-        return chargeRepository.findByStartDateAndEndDate(date, lastDay);
+        return findEffective(todayOfNextMonth.withDayOfMonth(1), lastDayOfNextMonth);
+    }
+
+    /**
+     * 期間内に有効な料金をキャッシュから取得する
+     */
+    private List<Charge> findEffective(LocalDate firstDay, LocalDate lastDay) {
+        return activeChargeCache.findEffective(toDate(firstDay), toDate(lastDay));
+    }
+
+    /**
+     * 日付をシステムのタイムゾーンの0時のDateに変換する
+     */
+    private static Date toDate(LocalDate localDate) {
+        return Date.from(localDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
     }
 
     /**
@@ -110,7 +250,40 @@ public class ChargeServiceImpl implements ChargeService {
      */
     @Override
     public void save(Charge charge) {
-        chargeRepository.save(charge);
+        Charge savedCharge = chargeRepository.save(charge);
+        activeChargeCache.put(savedCharge);
+        indexLock.lock();
+        try {
+            if (nameIndexLoaded) {
+                nameIndex.put(savedCharge.getChargeId(), savedCharge.getName());
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * 複数の料金をまとめて登録する(CSV取込用)
+     *
+     * 登録はJDBCのバッチ更新で行われる(hibernate.jdbc.batch_size)。
+     * 有効な料金のキャッシュは1件ずつ追加せずに破棄し、次回の検索時に全件から作成し直す。
+     *
+     * @param charges 登録する料金情報
+     */
+    @Override
+    public void saveAll(List<Charge> charges) {
+        List<Charge> savedCharges = chargeRepository.saveAll(charges);
+        activeChargeCache.invalidate();
+        indexLock.lock();
+        try {
+            if (nameIndexLoaded) {
+                for (Charge savedCharge : savedCharges) {
+                    nameIndex.put(savedCharge.getChargeId(), savedCharge.getName());
+                }
+            }
+        } finally {
+            indexLock.unlock();
+        }
     }
 
     /**
@@ -122,5 +295,35 @@ public class ChargeServiceImpl implements ChargeService {
     @Override
     public void deleteById(int chargeId) {
         chargeRepository.deleteById(chargeId);
+        activeChargeCache.remove(chargeId);
+        indexLock.lock();
+        try {
+            nameIndex.remove(chargeId);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * 料金名のトライグラム索引を取得する(初回のみ全件を読み込んで作成する)
+     *
+     * @return 料金名のトライグラム索引
+     */
+    private TrigramIndex<Integer> getNameIndex() {
+        if (nameIndexLoaded) {
+            return nameIndex;
+        }
+        indexLock.lock();
+        try {
+            if (!nameIndexLoaded) {
+                for (Charge charge : chargeRepository.findAll()) {
+                    nameIndex.put(charge.getChargeId(), charge.getName());
+                }
+                nameIndexLoaded = true;
+            }
+            return nameIndex;
+        } finally {
+            indexLock.unlock();
+        }
     }
 }
@@ -0,0 +1,154 @@
+package com.s_giken.training.webapp.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.stream.Stream;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.s_giken.training.webapp.model.entity.Charge;
+import com.s_giken.training.webapp.model.entity.ChargeSearchCondition;
+import com.s_giken.training.webapp.model.entity.Member;
+import com.s_giken.training.webapp.model.entity.MemberSearchCondition;
+import jakarta.persistence.EntityManager;
+
+/**
+ * 加入者・料金の検索結果をCSVに出力するサービスクラス
+ *
+ * 検索結果をStreamで1件ずつ読み込みながら書き込むため、件数が多くても検索結果全体をメモリに保持しない。
+ * 書き込んだエンティティは永続化コンテキストから切り離し、読み込んだ件数に応じて永続化コンテキストが大きくならないようにする。
+ * 出力するCSV(UTF-8、1行目は見出し)の日付はyyyy-MM-dd形式で、CSV取込と同じ形式で読み込める。
+ */
+@Service
+public class CsvExportService {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MemberService memberService;
+    private final ChargeService chargeService;
+    private final EntityManager entityManager;
+
+    /**
+     * CSV出力サービスクラスのコンストラクタ
+     *
+     * @param memberService 加入者管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     * @param chargeService 料金管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     * @param entityManager EntityManager(SpringのDIコンテナから渡される)
+     */
+    public CsvExportService(MemberService memberService, ChargeService chargeService,
+            EntityManager entityManager) {
+        this.memberService = memberService;
+        this.chargeService = chargeService;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * 加入者の検索結果をCSVに出力する
+     *
+     * @param memberSearchCondition 加入者検索条件
+     * @param output 出力先(閉じない)
+     * @throws IOException 書き込みに失敗した場合
+     */
+    @Transactional(readOnly = true)
+    public void exportMembers(MemberSearchCondition memberSearchCondition, OutputStream output)
+            throws IOException {
+        Writer writer = openWriter(output);
+        writer.write("member_id,member_num,mail,name,address,start_date,end_date,payment_method\n");
+        StringBuilder line = new StringBuilder();
+        try (Stream<Member> members = memberService.streamByConditions(memberSearchCondition)) {
+            members.forEach(member -> {
+                line.setLength(0);
+                line.append(member.getMemberId()).append(',').append(member.getMemberNum());
+                appendField(line, member.getMail());
+                appendField(line, member.getName());
+                appendField(line, member.getAddress());
+                line.append(',').append(formatDate(member.getStartDate()));
+                line.append(',').append(formatDate(member.getEndDate()));
+                line.append(',').append(member.getPaymentMethod());
+                writeLine(writer, line);
+                entityManager.detach(member);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * 料金の検索結果をCSVに出力する
+     *
+     * @param chargeSearchCondition 料金検索条件
+     * @param output 出力先(閉じない)
+     * @throws IOException 書き込みに失敗した場合
+     */
+    @Transactional(readOnly = true)
+    public void exportCharges(ChargeSearchCondition chargeSearchCondition, OutputStream output)
+            throws IOException {
+        Writer writer = openWriter(output);
+        writer.write("charge_id,name,amount,start_date,end_date\n");
+        StringBuilder line = new StringBuilder();
+        try (Stream<Charge> charges = chargeService.streamByConditions(chargeSearchCondition)) {
+            charges.forEach(charge -> {
+                line.setLength(0);
+                line.append(charge.getChargeId());
+                appendField(line, charge.getName());
+                line.append(',').append(charge.getAmount());
+                line.append(',').append(formatDate(charge.getStartDate()));
+                line.append(',').append(formatDate(charge.getEndDate()));
+                writeLine(writer, line);
+                entityManager.detach(charge);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static Writer openWriter(OutputStream output) {
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    private static void writeLine(Writer writer, CharSequence line) {
+        try {
+            writer.append(line).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * CSVの項目を追加する(カンマ・ダブルクォート・改行を含む場合はダブルクォートで囲む)
+     */
+    private static void appendField(StringBuilder line, String value) {
+        line.append(',');
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * 日付をシステムのタイムゾーンのyyyy-MM-dd形式に変換する(nullの場合は空文字)
+     */
+    private static String formatDate(Date date) {
+        if (date == null) {
+            return "";
+        }
+        return DATE_FORMAT.format(Instant.ofEpochMilli(date.getTime())
+                .atZone(ZoneId.systemDefault()));
+    }
+}
@@ -0,0 +1,244 @@
+package com.s_giken.training.webapp.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import com.s_giken.training.common.CsvReader;
+import com.s_giken.training.webapp.model.entity.Charge;
+import com.s_giken.training.webapp.model.entity.ImportResult;
+import com.s_giken.training.webapp.model.entity.Member;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * 加入者・料金のCSV取込を行うサービスクラス
+ *
+ * アップロードされたCSV(UTF-8、1行目は見出し)を1行ずつ読み込み、エンティティの入力チェック(Bean Validation)を
+ * 通った行をCHUNK_SIZE件ずつまとめて登録する。CSV全体をメモリに読み込まないため、件数の多いファイルも取り込める。
+ * 入力チェックで不正な行や登録に失敗した行は取り込まずに、行番号と理由を結果に記録する。
+ *
+ * 登録はCHUNK_SIZE件ごとのトランザクションで行うため、途中で失敗した場合もそれまでに登録した行は取り消さない。
+ */
+@Service
+public class CsvImportService {
+    /**
+     * まとめて登録する件数(hibernate.jdbc.batch_sizeと合わせる)
+     */
+    static final int CHUNK_SIZE = 50;
+
+    /**
+     * 進捗をログに出力する間隔(行数)
+     */
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private static final List<String> MEMBER_COLUMNS =
+            List.of("mail", "name", "address", "start_date", "end_date", "payment_method");
+    private static final List<String> CHARGE_COLUMNS =
+            List.of("name", "amount", "start_date", "end_date");
+
+    private final Logger logger = LoggerFactory.getLogger(CsvImportService.class);
+    private final MemberService memberService;
+    private final ChargeService chargeService;
+    private final Validator validator;
+
+    /**
+     * CSV取込サービスクラスのコンストラクタ
+     *
+     * @param memberService 加入者管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     * @param chargeService 料金管理機能のサービスクラス(SpringのDIコンテナから渡される)
+     * @param validator 入力チェックを行うクラス(SpringのDIコンテナから渡される)
+     */
+    public CsvImportService(MemberService memberService, ChargeService chargeService,
+            Validator validator) {
+        this.memberService = memberService;
+        this.chargeService = chargeService;
+        this.validator = validator;
+    }
+
+    /**
+     * 加入者をCSVから取り込む
+     *
+     * 見出しは「mail,name,address,start_date,end_date,payment_method」。会員番号は登録時に採番する。
+     *
+     * @param input CSVの入力ストリーム
+     * @return 取込結果
+     * @throws IOException CSVの読み込みに失敗した場合
+     * @throws IllegalArgumentException 見出しが正しくない場合
+     */
+    public ImportResult importMembers(InputStream input) throws IOException {
+        return importCsv(input, "加入者", MEMBER_COLUMNS, this::toMember,
+                memberService::saveAll);
+    }
+
+    /**
+     * 料金をCSVから取り込む
+     *
+     * 見出しは「name,amount,start_date,end_date」。
+     *
+     * @param input CSVの入力ストリーム
+     * @return 取込結果
+     * @throws IOException CSVの読み込みに失敗した場合
+     * @throws IllegalArgumentException 見出しが正しくない場合
+     */
+    public ImportResult importCharges(InputStream input) throws IOException {
+        return importCsv(input, "料金", CHARGE_COLUMNS, this::toCharge, chargeService::saveAll);
+    }
+
+    private <T> ImportResult importCsv(InputStream input, String label, List<String> columns,
+            Function<List<String>, T> mapper, Consumer<List<T>> saver) throws IOException {
+        ImportResult result = new ImportResult();
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<Long> chunkLineNumbers = new ArrayList<>(CHUNK_SIZE);
+
+        try (CsvReader reader =
+                new CsvReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> header = reader.readRecord();
+            if (header == null || !columns.equals(header.stream().map(String::trim).toList())) {
+                throw new IllegalArgumentException(
+                        "1行目の見出しが正しくありません。(" + String.join(",", columns) + ")");
+            }
+
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                //空行は読み飛ばす
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                long lineNumber = reader.getLineNumber();
+                result.setProcessedCount(result.getProcessedCount() + 1);
+                if (result.getProcessedCount() % PROGRESS_INTERVAL == 0) {
+                    logger.info("{}のCSV取込: {}行処理 (登録 {}件, 不正 {}件)", label,
+                            result.getProcessedCount(), result.getImportedCount(),
+                            result.getRejectedCount());
+                }
+
+                if (record.size() != columns.size()) {
+                    result.reject(lineNumber, String.format(
+                            "項目数が正しくありません。(%d項目, 正しくは%d項目)", record.size(),
+                            columns.size()));
+                    continue;
+                }
+                T entity;
+                try {
+                    entity = mapper.apply(record);
+                } catch (IllegalArgumentException e) {
+                    result.reject(lineNumber, e.getMessage());
+                    continue;
+                }
+                String violations = validate(entity);
+                if (violations != null) {
+                    result.reject(lineNumber, violations);
+                    continue;
+                }
+
+                chunk.add(entity);
+                chunkLineNumbers.add(lineNumber);
+                if (chunk.size() == CHUNK_SIZE) {
+                    saveChunk(chunk, chunkLineNumbers, saver, result);
+                }
+            }
+            saveChunk(chunk, chunkLineNumbers, saver, result);
+        }
+
+        logger.info("{}のCSV取込が完了しました: {}行処理 (登録 {}件, 不正 {}件)", label,
+                result.getProcessedCount(), result.getImportedCount(), result.getRejectedCount());
+        return result;
+    }
+
+    /**
+     * 溜めた行をまとめて登録する(登録に失敗した場合は、その全行を取り込めなかった行とする)
+     */
+    private <T> void saveChunk(List<T> chunk, List<Long> chunkLineNumbers,
+            Consumer<List<T>> saver, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            saver.accept(chunk);
+            result.setImportedCount(result.getImportedCount() + chunk.size());
+        } catch (DataAccessException e) {
+            logger.warn("CSV取込の登録に失敗しました。", e);
+            String message = "登録に失敗しました。(" + e.getMostSpecificCause().getMessage() + ")";
+            for (long lineNumber : chunkLineNumbers) {
+                result.reject(lineNumber, message);
+            }
+        }
+        chunk.clear();
+        chunkLineNumbers.clear();
+    }
+
+    /**
+     * エンティティの入力チェックを行う
+     *
+     * @return 入力チェックのエラー内容(エラーが無い場合はnull)
+     */
+    private <T> String validate(T entity) {
+        Set<ConstraintViolation<T>> violations = validator.validate(entity);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private Member toMember(List<String> record) {
+        var member = new Member();
+        member.setMail(record.get(0));
+        member.setName(record.get(1));
+        member.setAddress(record.get(2));
+        member.setStartDate(parseDate("start_date", record.get(3)));
+        member.setEndDate(parseDate("end_date", record.get(4)));
+        member.setPaymentMethod(parseInt("payment_method", record.get(5)));
+        return member;
+    }
+
+    private Charge toCharge(List<String> record) {
+        var charge = new Charge();
+        charge.setName(record.get(0));
+        charge.setAmount(parseInt("amount", record.get(1)));
+        charge.setStartDate(parseDate("start_date", record.get(2)));
+        charge.setEndDate(parseDate("end_date", record.get(3)));
+        return charge;
+    }
+
+    /**
+     * 日付(yyyy-MM-dd)をシステムのタイムゾーンの0時のDateに変換する(空の場合はnull)
+     */
+    private static Date parseDate(String column, String value) {
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return Date.from(LocalDate.parse(value.trim()).atStartOfDay(ZoneId.systemDefault())
+                    .toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(
+                    column + ": 日付(yyyy-MM-dd)で入力してください。(" + value + ")");
+        }
+    }
+
+    private static int parseInt(String column, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + ": 数値で入力してください。(" + value + ")");
+        }
+    }
+}
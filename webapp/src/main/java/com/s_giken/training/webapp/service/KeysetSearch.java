@@ -0,0 +1,132 @@
+package com.s_giken.training.webapp.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
+
+/**
+ * 検索結果をキーセット(シーク)方式でページ分割するクラス
+ *
+ * 表示中のページの最初・最後の行のIDを受け取り、その行をデータベースから読み直して
+ * 「並び替え項目の値, ID」をキーに前後のページを取得する。OFFSETで読み飛ばさないため、後ろのページでも取得件数は1ページ分で済む。
+ * 並び替え項目がnullを含む場合はキーで比較できないため、OFFSETによるページ分割で取得する。
+ *
+ * @param <T> 検索結果のエンティティ
+ */
+final class KeysetSearch<T> {
+    /**
+     * 1ページの件数(リポジトリのfindFirst50By～と合わせる)
+     */
+    static final int PAGE_SIZE = 50;
+
+    private final String idProperty;
+    private final Set<String> nullableColumns;
+    private final Function<Integer, Optional<T>> findById;
+
+    /**
+     * キーセット方式のページ分割クラスのコンストラクタ
+     *
+     * @param idProperty IDのプロパティ名
+     * @param nullableColumns nullを含む並び替え項目のプロパティ名
+     * @param findById IDでエンティティを取得する関数
+     */
+    KeysetSearch(String idProperty, Set<String> nullableColumns,
+            Function<Integer, Optional<T>> findById) {
+        this.idProperty = idProperty;
+        this.nullableColumns = nullableColumns;
+        this.findById = findById;
+    }
+
+    /**
+     * 検索結果の1ページ分を取得する
+     *
+     * @param column 並び替え項目のプロパティ名
+     * @param sortDirection 並び順(ASC/DESC)
+     * @param page 表示するページ番号(0始まり)
+     * @param after 次のページを表示する場合の、表示中のページの最後の行のID
+     * @param before 前のページを表示する場合の、表示中のページの最初の行のID
+     * @param findWindow キーセット方式で1ページ分を取得する関数
+     * @param findPage OFFSET方式で1ページ分を取得する関数
+     * @param count 検索条件に一致した全件数を取得する関数
+     * @return 検索結果の1ページ分
+     */
+    SearchResultPage<T> search(String column, String sortDirection, int page, Integer after,
+            Integer before, BiFunction<ScrollPosition, Sort, Window<T>> findWindow,
+            Function<Pageable, Page<T>> findPage, LongSupplier count) {
+        Sort sort = sortOf(column, sortDirection);
+        int currentPage = Math.max(0, page);
+
+        if (nullableColumns.contains(column)) {
+            Page<T> result = findPage.apply(PageRequest.of(currentPage, PAGE_SIZE, sort));
+            return new SearchResultPage<>(result.getContent(), result.getTotalElements(),
+                    currentPage, PAGE_SIZE, result.hasPrevious(), result.hasNext());
+        }
+
+        long total = count.getAsLong();
+        Integer anchorId = before != null ? before : after;
+        Optional<T> anchor = anchorId == null ? Optional.empty() : findById.apply(anchorId);
+        if (anchor.isEmpty()) {
+            //最初のページ(基準の行が削除されている場合も最初のページに戻る)
+            Window<T> window = findWindow.apply(ScrollPosition.keyset(), sort);
+            return new SearchResultPage<>(window.getContent(), total, 0, PAGE_SIZE, false,
+                    window.hasNext());
+        }
+
+        Map<String, Object> keys = keysOf(anchor.get(), column);
+        if (before != null) {
+            //前のページは逆順で基準の行の直前から取得し、元の並び順に戻す
+            Window<T> window = findWindow.apply(ScrollPosition.forward(keys), sort.reverse());
+            List<T> content = new ArrayList<>(window.getContent());
+            Collections.reverse(content);
+            return new SearchResultPage<>(content, total,
+                    window.hasNext() ? currentPage : 0, PAGE_SIZE, window.hasNext(), true);
+        }
+        Window<T> window = findWindow.apply(ScrollPosition.forward(keys), sort);
+        return new SearchResultPage<>(window.getContent(), total, currentPage, PAGE_SIZE, true,
+                window.hasNext());
+    }
+
+    /**
+     * 並び替え項目とIDで並べる並び順を作成する
+     *
+     * 並び替え項目が同じ値の行の順序を固定するため、IDを第2キーにする。
+     *
+     * @param column 並び替え項目のプロパティ名
+     * @param sortDirection 並び順(ASC/DESC)
+     * @return 並び順
+     */
+    Sort sortOf(String column, String sortDirection) {
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Sort sort = Sort.by(direction, column);
+        if (!column.equals(idProperty)) {
+            sort = sort.and(Sort.by(direction, idProperty));
+        }
+        return sort;
+    }
+
+    /**
+     * 基準の行から「並び替え項目の値, ID」のキーを作成する
+     */
+    private Map<String, Object> keysOf(T entity, String column) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(entity);
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(column, wrapper.getPropertyValue(column));
+        keys.put(idProperty, wrapper.getPropertyValue(idProperty));
+        return keys;
+    }
+}
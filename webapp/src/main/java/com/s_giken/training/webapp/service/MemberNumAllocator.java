@@ -0,0 +1,101 @@
+package com.s_giken.training.webapp.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import com.s_giken.training.webapp.repository.MemberRepository;
+
+/**
+ * 会員番号を採番するクラス
+ *
+ * データベースのシーケンス(MEMBER_NUM_SEQ)から50件分の番号をまとめて取得し、メモリ上のカウンタで1件ずつ払い出す。
+ * 払い出しはロックを使わずに行い、シーケンスから次の50件を取得する時のみ排他する
+ * (排他中にデータベースにアクセスするため、仮想スレッドを固定しないReentrantLockを使用する)。
+ * シーケンスは全プロセスで共有するため、複数のwebappを起動しても番号は重複しない
+ * (プロセスの停止時に払い出していない番号は欠番になる)。
+ *
+ * シーケンスが存在しない場合は、既存の会員番号の最大値の次の番号から始まるシーケンスを作成する。
+ */
+@Component
+public class MemberNumAllocator {
+    /**
+     * シーケンスから一度に取得する番号の件数(シーケンスの増分)
+     */
+    static final int BLOCK_SIZE = 50;
+
+    /**
+     * シーケンスから取得した番号の範囲(next以上end未満)
+     */
+    private record Block(AtomicLong next, long end) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberRepository memberRepository;
+    private final AtomicReference<Block> currentBlock =
+            new AtomicReference<>(new Block(new AtomicLong(), 0));
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile boolean sequenceReady = false;
+
+    /**
+     * 会員番号採番クラスのコンストラクタ
+     *
+     * @param jdbcTemplate JdbcTemplate(SpringのDIコンテナから渡される)
+     * @param memberRepository 加入者管理機能のリポジトリクラス(SpringのDIコンテナから渡される)
+     */
+    public MemberNumAllocator(JdbcTemplate jdbcTemplate, MemberRepository memberRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.memberRepository = memberRepository;
+    }
+
+    /**
+     * 次の会員番号を払い出す
+     *
+     * @return 会員番号
+     */
+    public int next() {
+        while (true) {
+            Block block = currentBlock.get();
+            long memberNum = block.next().getAndIncrement();
+            if (memberNum < block.end()) {
+                return Math.toIntExact(memberNum);
+            }
+            refill(block);
+        }
+    }
+
+    /**
+     * 払い出し済みの範囲をシーケンスから取得した次の範囲に切り替える
+     *
+     * 他のスレッドが既に切り替えている場合は何もしない。
+     */
+    private void refill(Block exhaustedBlock) {
+        refillLock.lock();
+        try {
+            if (currentBlock.get() != exhaustedBlock) {
+                return;
+            }
+            createSequenceIfAbsent();
+            long start = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR MEMBER_NUM_SEQ",
+                    Long.class);
+            currentBlock.set(new Block(new AtomicLong(start), start + BLOCK_SIZE));
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * シーケンスが存在しない場合は、既存の会員番号の最大値の次の番号から始まるシーケンスを作成する
+     */
+    private void createSequenceIfAbsent() {
+        if (sequenceReady) {
+            return;
+        }
+        Integer maxMemberNum = memberRepository.findMaxMemberNum();
+        long start = maxMemberNum == null ? 1 : maxMemberNum + 1L;
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS MEMBER_NUM_SEQ START WITH " + start
+                + " INCREMENT BY " + BLOCK_SIZE);
+        sequenceReady = true;
+    }
+}
@@ -2,8 +2,11 @@ package com.s_giken.training.webapp.service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import com.s_giken.training.webapp.model.entity.Member;
 import com.s_giken.training.webapp.model.entity.MemberSearchCondition;
+import com.s_giken.training.webapp.model.entity.MemberView;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
 
 /*
  * 【ヒント】
@@ -19,11 +22,18 @@ public interface MemberService {
 
     public Optional<Member> findById(int memberId);
 
-    public List<Member> findByConditions(MemberSearchCondition memberSearchCondition);
+    public SearchResultPage<Member> findByConditions(MemberSearchCondition memberSearchCondition);
+
+    public Stream<Member> streamByConditions(MemberSearchCondition memberSearchCondition);
+
+    public SearchResultPage<MemberView> findViewsByConditions(
+            MemberSearchCondition memberSearchCondition, int pageSize);
+
+    public Optional<MemberView> findViewById(int memberId);
 
     public void save(Member member);
 
-    public void deleteById(int memberId);
+    public void saveAll(List<Member> members);
 
-    public void saveMemberNum(Member member);
+    public void deleteById(int memberId);
 }
@@ -1,27 +1,59 @@
 package com.s_giken.training.webapp.service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.s_giken.training.common.TrigramIndex;
 import com.s_giken.training.webapp.model.entity.Member;
 import com.s_giken.training.webapp.model.entity.MemberSearchCondition;
+import com.s_giken.training.webapp.model.entity.MemberView;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
 import com.s_giken.training.webapp.repository.MemberRepository;
 
 /**
  * 加入者管理機能のサービスクラス(実態クラス)
+ *
+ * search.trigram-index.enabled=trueの場合、メールアドレス・氏名の部分一致検索は、3文字以上の場合はトライグラム索引
+ * (TrigramIndex)で加入者IDを絞り込んでから取得する(検索画面・CSV出力・APIで同じ絞り込みを使用する)。
+ * 索引は初回の検索時に全加入者から作成し、このサービス経由の登録・削除で更新する(有効にできる構成はREADMEの
+ * 「メモリ上の索引」を参照)。既定(false)では索引を作成せず、常にLIKEで検索する。
  */
 @Service
 public class MemberServiceImpl implements MemberService {
     private MemberRepository memberRepository;
+    private MemberNumAllocator memberNumAllocator;
+    private KeysetSearch<Member> keysetSearch;
+    private final TrigramIndex<Integer> mailIndex = new TrigramIndex<>();
+    private final TrigramIndex<Integer> nameIndex = new TrigramIndex<>();
+    private volatile boolean indexLoaded = false;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private final boolean trigramIndexEnabled;
 
     /**
      * 加入者管理機能のサービスクラスのコンストラクタ
      * 
      * @param memberRepository 加入者管理機能のリポジトリクラス(SpringのDIコンテナから渡される)
+     * @param memberNumAllocator 会員番号採番クラス(SpringのDIコンテナから渡される)
+     * @param trigramIndexEnabled 部分一致検索にトライグラム索引を使用する場合はtrue(1台構成のみ)
      */
-    public MemberServiceImpl(MemberRepository memberRepository) {
+    public MemberServiceImpl(MemberRepository memberRepository,
+            MemberNumAllocator memberNumAllocator,
+            @Value("${search.trigram-index.enabled:false}") boolean trigramIndexEnabled) {
         this.memberRepository = memberRepository;
+        this.memberNumAllocator = memberNumAllocator;
+        this.trigramIndexEnabled = trigramIndexEnabled;
+        this.keysetSearch =
+                new KeysetSearch<>("memberId", Set.of("endDate"), memberRepository::findById);
     }
 
     /**
@@ -46,21 +78,178 @@ public class MemberServiceImpl implements MemberService {
     }
 
     /**
-     * 加入者を条件検索する
+     * 加入者を条件検索する(1ページ分のみ取得する)
      * 
      * @param memberSearchCondition 加入者検索条件
-     * @return 条件に一致した加入者情報
+     * @return 条件に一致した加入者情報の1ページ分
      */
     @Override
-    public List<Member> findByConditions(MemberSearchCondition memberSearchCondition) {
-        Sort sort = Sort.by(
-                Sort.Direction.fromString(memberSearchCondition.getSortDirection()),
-                memberSearchCondition.getColumn());
-
-        return memberRepository.findByMailLikeAndNameLike(
-                "%" + memberSearchCondition.getMail() + "%",
-                "%" + memberSearchCondition.getName() + "%",
-                sort);
+    public SearchResultPage<Member> findByConditions(MemberSearchCondition memberSearchCondition) {
+        Set<Integer> candidates = findCandidates(
+                Objects.toString(memberSearchCondition.getMail(), ""),
+                Objects.toString(memberSearchCondition.getName(), ""));
+        if (candidates != null) {
+            //索引で絞り込んだ加入者IDで検索
+            if (candidates.isEmpty()) {
+                return new SearchResultPage<>(List.of(), 0, 0, KeysetSearch.PAGE_SIZE, false,
+                        false);
+            }
+            return keysetSearch.search(
+                    memberSearchCondition.getColumn(),
+                    memberSearchCondition.getSortDirection(),
+                    memberSearchCondition.getPage(),
+                    memberSearchCondition.getAfter(),
+                    memberSearchCondition.getBefore(),
+                    (position, sort) -> memberRepository.findFirst50ByMemberIdIn(candidates,
+                            position, sort),
+                    pageable -> memberRepository.findByMemberIdIn(candidates, pageable),
+                    candidates::size);
+        }
+
+        String mail = "%" + memberSearchCondition.getMail() + "%";
+        String name = "%" + memberSearchCondition.getName() + "%";
+
+        return keysetSearch.search(
+                memberSearchCondition.getColumn(),
+                memberSearchCondition.getSortDirection(),
+                memberSearchCondition.getPage(),
+                memberSearchCondition.getAfter(),
+                memberSearchCondition.getBefore(),
+                (position, sort) -> memberRepository.findFirst50ByMailLikeAndNameLike(
+                        mail, name, position, sort),
+                pageable -> memberRepository.findByMailLikeAndNameLike(mail, name, pageable),
+                () -> memberRepository.countByMailLikeAndNameLike(mail, name));
+    }
+
+    /**
+     * 加入者を条件検索し、検索結果を1件ずつ読み込むStreamを取得する(CSV出力用)
+     *
+     * 検索画面と同じ条件・並び順で全件を取得する。読み取り専用のトランザクション内で呼び出し、読み終えたら閉じること。
+     *
+     * @param memberSearchCondition 加入者検索条件
+     * @return 条件に一致した加入者情報のStream
+     */
+    @Override
+    public Stream<Member> streamByConditions(MemberSearchCondition memberSearchCondition) {
+        Sort sort = keysetSearch.sortOf(memberSearchCondition.getColumn(),
+                memberSearchCondition.getSortDirection());
+        Set<Integer> candidates = findCandidates(
+                Objects.toString(memberSearchCondition.getMail(), ""),
+                Objects.toString(memberSearchCondition.getName(), ""));
+        if (candidates != null) {
+            //検索画面と同じく、索引で絞り込んだ加入者IDで検索
+            return candidates.isEmpty() ? Stream.empty()
+                    : memberRepository.streamByMemberIdIn(candidates, sort);
+        }
+
+        String mail = "%" + memberSearchCondition.getMail() + "%";
+        String name = "%" + memberSearchCondition.getName() + "%";
+
+        return memberRepository.streamByMailLikeAndNameLike(mail, name, sort);
+    }
+
+    /**
+     * 加入者を条件検索し、参照用の射影で1ページ分を取得する(API用)
+     *
+     * 射影の項目のみをSELECTし、読み取り専用のトランザクションで取得する。
+     *
+     * @param memberSearchCondition 加入者検索条件(並び替え項目・並び順・ページ番号を含む)
+     * @param pageSize 1ページの件数
+     * @return 条件に一致した加入者情報の1ページ分
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public SearchResultPage<MemberView> findViewsByConditions(
+            MemberSearchCondition memberSearchCondition, int pageSize) {
+        String mailPattern = Objects.toString(memberSearchCondition.getMail(), "");
+        String namePattern = Objects.toString(memberSearchCondition.getName(), "");
+        int page = Math.max(0, memberSearchCondition.getPage());
+        PageRequest pageable = PageRequest.of(page, pageSize, keysetSearch.sortOf(
+                memberSearchCondition.getColumn(), memberSearchCondition.getSortDirection()));
+
+        //検索画面と同じく、索引で絞り込める場合は加入者IDで検索
+        Set<Integer> candidates = findCandidates(mailPattern, namePattern);
+        Page<MemberView> result = candidates != null
+                ? candidates.isEmpty() ? new PageImpl<>(List.of(), pageable, 0)
+                        : memberRepository.findByMemberIdIn(candidates, pageable,
+                                MemberView.class)
+                : memberRepository.findByMailLikeAndNameLike("%" + mailPattern + "%",
+                        "%" + namePattern + "%", pageable, MemberView.class);
+        return new SearchResultPage<>(result.getContent(), result.getTotalElements(), page,
+                pageSize, result.hasPrevious(), result.hasNext());
+    }
+
+    /**
+     * 加入者を参照用の射影で1件取得する(API用)
+     *
+     * @param memberId 加入者ID
+     * @return 加入者IDに一致した加入者情報
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<MemberView> findViewById(int memberId) {
+        return memberRepository.findByMemberId(memberId, MemberView.class);
+    }
+
+    /**
+     * トライグラム索引でメールアドレス・氏名を含む加入者IDを絞り込む
+     *
+     * @param mail メールアドレスの検索文字列
+     * @param name 氏名の検索文字列
+     * @return 条件に一致する加入者ID(索引を使用しない場合はnull)
+     */
+    private Set<Integer> findCandidates(String mail, String name) {
+        if (!trigramIndexEnabled) {
+            return null;
+        }
+        boolean mailIndexable = SubstringSearch.isIndexable(mail);
+        boolean nameIndexable = SubstringSearch.isIndexable(name);
+        if ((!mailIndexable && !nameIndexable) || SubstringSearch.hasWildcard(mail)
+                || SubstringSearch.hasWildcard(name)) {
+            return null;
+        }
+        loadIndex();
+
+        Set<Integer> candidates = mailIndexable
+                ? mailIndex.findContaining(mail)
+                : nameIndex.findContaining(name);
+        if (mailIndexable && nameIndexable) {
+            candidates.retainAll(nameIndex.findContaining(name));
+        } else if (!mailIndexable && !mail.isEmpty()) {
+            //3文字未満の条件は、絞り込んだ候補の文字列で確認する
+            candidates.removeIf(memberId -> !mailIndex.contains(memberId, mail));
+        } else if (!nameIndexable && !name.isEmpty()) {
+            candidates.removeIf(memberId -> !nameIndex.contains(memberId, name));
+        }
+        return candidates.size() <= SubstringSearch.MAX_CANDIDATES ? candidates : null;
+    }
+
+    /**
+     * 全加入者のメールアドレス・氏名をトライグラム索引に読み込む(初回のみ)
+     */
+    private void loadIndex() {
+        if (indexLoaded) {
+            return;
+        }
+        indexLock.lock();
+        try {
+            if (!indexLoaded) {
+                for (Member member : memberRepository.findAll()) {
+                    updateIndex(member);
+                }
+                indexLoaded = true;
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * 加入者のメールアドレス・氏名を索引に登録する(索引の読み込み後に、indexLockを取得して呼び出す)
+     */
+    private void updateIndex(Member member) {
+        mailIndex.put(member.getMemberId(), member.getMail());
+        nameIndex.put(member.getMemberId(), member.getName());
     }
 
 
@@ -68,12 +257,53 @@ public class MemberServiceImpl implements MemberService {
     /**
      * 加入者を登録する
      *
+     * 会員番号が未採番(0)の場合は、採番してから登録する。
+     *
      * @param member 登録する加入者情報
      * @return 登録した加入者情報
      */
     @Override
     public void save(Member member) {
-        memberRepository.save(member);
+        if (member.getMemberNum() <= 0) {
+            member.setMemberNum(memberNumAllocator.next());
+        }
+        Member savedMember = memberRepository.save(member);
+        indexLock.lock();
+        try {
+            if (indexLoaded) {
+                updateIndex(savedMember);
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * 複数の加入者をまとめて登録する(CSV取込用)
+     *
+     * 会員番号が未採番(0)の加入者は採番してから登録する。
+     * 登録はJDBCのバッチ更新で行われる(hibernate.jdbc.batch_size)。
+     *
+     * @param members 登録する加入者情報
+     */
+    @Override
+    public void saveAll(List<Member> members) {
+        for (Member member : members) {
+            if (member.getMemberNum() <= 0) {
+                member.setMemberNum(memberNumAllocator.next());
+            }
+        }
+        List<Member> savedMembers = memberRepository.saveAll(members);
+        indexLock.lock();
+        try {
+            if (indexLoaded) {
+                for (Member savedMember : savedMembers) {
+                    updateIndex(savedMember);
+                }
+            }
+        } finally {
+            indexLock.unlock();
+        }
     }
 
     /**
@@ -85,20 +315,12 @@ public class MemberServiceImpl implements MemberService {
     @Override
     public void deleteById(int memberId) {
         memberRepository.deleteById(memberId);
-    }
-
-    @Override
-    public void saveMemberNum(Member member) {
-        if (member.getMemberNum() > 0) {
-            return;
-        }
-        Integer maxMemberNum = memberRepository.findMaxMemberNum();
-        if (maxMemberNum == null) {
-            maxMemberNum = 1;
-        } else {
-            maxMemberNum += 1;
+        indexLock.lock();
+        try {
+            mailIndex.remove(memberId);
+            nameIndex.remove(memberId);
+        } finally {
+            indexLock.unlock();
         }
-        member.setMemberNum(maxMemberNum);
-        memberRepository.save(member);
     }
 }
@@ -0,0 +1,39 @@
+package com.s_giken.training.webapp.service;
+
+import com.s_giken.training.common.TrigramIndex;
+
+/**
+ * 部分一致検索でトライグラム索引を使用するかを判定するクラス
+ *
+ * 索引は入力された文字列をそのまま含むかで検索するため、LIKEのワイルドカード(%, _)や
+ * エスケープ文字(\)を含む検索文字列は、従来どおりLIKEで検索する。
+ */
+final class SubstringSearch {
+    /**
+     * 索引で絞り込んだ候補の上限(これを超える場合は絞り込みの効果が小さいため、LIKEで検索する)
+     */
+    static final int MAX_CANDIDATES = 1000;
+
+    private SubstringSearch() {
+    }
+
+    /**
+     * 検索文字列がトライグラム索引で検索できるかを判定する
+     *
+     * @param value 検索文字列
+     * @return 3文字以上でワイルドカードを含まない場合はtrue
+     */
+    static boolean isIndexable(String value) {
+        return TrigramIndex.isSearchable(value) && !hasWildcard(value);
+    }
+
+    /**
+     * 検索文字列がLIKEのワイルドカード・エスケープ文字を含むかを判定する
+     *
+     * @param value 検索文字列
+     * @return 含む場合はtrue
+     */
+    static boolean hasWildcard(String value) {
+        return value.indexOf('%') >= 0 || value.indexOf('_') >= 0 || value.indexOf('\\') >= 0;
+    }
+}
@@ -0,0 +1,96 @@
+package com.s_giken.training.webapp.config;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * 仮想スレッドの設定(spring.threads.virtual.enabled)で、Tomcatのリクエスト処理とアプリケーションのタスク実行の
+ * スレッドが切り替わることを確認するテスト
+ *
+ * Tomcatのプロトコルハンドラーの設定を確認するため、組み込みのTomcatを起動する。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class VirtualThreadConfigTests {
+
+	@Nested
+	@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+	class Enabled {
+		@Autowired
+		private ServletWebServerApplicationContext applicationContext;
+
+		@Autowired
+		@Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+		private AsyncTaskExecutor applicationTaskExecutor;
+
+		@Test
+		void applicationTaskExecutorRunsOnVirtualThreads() throws Exception {
+			assertInstanceOf(TaskExecutorAdapter.class, applicationTaskExecutor);
+			assertTrue(runsOnVirtualThread(applicationTaskExecutor));
+			//@Asyncの既定のExecutorも同じBeanを使用する
+			assertSame(applicationTaskExecutor, applicationContext.getBean(
+					AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME));
+		}
+
+		@Test
+		void tomcatRunsRequestsOnVirtualThreads() throws Exception {
+			assertTrue(runsOnVirtualThread(tomcatExecutor(applicationContext)));
+		}
+	}
+
+	@Nested
+	@TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+	class Disabled {
+		@Autowired
+		private ServletWebServerApplicationContext applicationContext;
+
+		@Autowired
+		@Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+		private AsyncTaskExecutor applicationTaskExecutor;
+
+		@Test
+		void applicationTaskExecutorUsesThreadPool() throws Exception {
+			assertInstanceOf(ThreadPoolTaskExecutor.class, applicationTaskExecutor);
+			assertFalse(runsOnVirtualThread(applicationTaskExecutor));
+		}
+
+		@Test
+		void tomcatKeepsItsThreadPool() throws Exception {
+			assertFalse(runsOnVirtualThread(tomcatExecutor(applicationContext)));
+		}
+	}
+
+	/**
+	 * 組み込みのTomcatがリクエストの処理に使用するExecutorを取得する
+	 */
+	private static Executor tomcatExecutor(ServletWebServerApplicationContext applicationContext) {
+		TomcatWebServer webServer = (TomcatWebServer) applicationContext.getWebServer();
+		return webServer.getTomcat().getConnector().getProtocolHandler().getExecutor();
+	}
+
+	/**
+	 * Executorで実行したタスクが仮想スレッドで実行されたかどうかを返す
+	 */
+	private static boolean runsOnVirtualThread(Executor executor) throws Exception {
+		CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+		executor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+		return virtual.get(10, TimeUnit.SECONDS);
+	}
+}
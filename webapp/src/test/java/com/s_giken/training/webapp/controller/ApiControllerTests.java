@@ -0,0 +1,140 @@
+package com.s_giken.training.webapp.controller;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrlPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import com.s_giken.training.webapp.config.ApiKeyAuthenticationFilter;
+
+/**
+ * API(/api/**)の認証とパラメータの確認のテスト
+ *
+ * APIキー(X-API-Key)・Basic認証で認証し、セッションを作成しないこと、画面はフォームログインのままであること、
+ * 項目名・並び替え項目・並び順・1ページの件数の誤りが400になることを確認する。
+ */
+@SpringBootTest(properties = "api.key=" + ApiControllerTests.API_KEY)
+@AutoConfigureMockMvc
+class ApiControllerTests {
+	static final String API_KEY = "test-api-key";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void validApiKeyIsAuthenticated() throws Exception {
+		mockMvc.perform(get("/api/members").header(ApiKeyAuthenticationFilter.HEADER_NAME, API_KEY))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.pageSize").value(ApiPaging.DEFAULT_PAGE_SIZE));
+	}
+
+	@Test
+	void wrongApiKeyIsRejected() throws Exception {
+		mockMvc.perform(get("/api/members").header(ApiKeyAuthenticationFilter.HEADER_NAME,
+				"wrong-key"))
+				.andExpect(status().isUnauthorized());
+		//誤ったAPIキーはBasic認証の資格情報があっても認証しない
+		mockMvc.perform(get("/api/members")
+				.header(ApiKeyAuthenticationFilter.HEADER_NAME, "wrong-key")
+				.header(HttpHeaders.AUTHORIZATION, basic("user", "password")))
+				.andExpect(status().isUnauthorized());
+	}
+
+	@Test
+	void requestWithoutApiKeyFallsThroughToBasicAuthentication() throws Exception {
+		mockMvc.perform(get("/api/members"))
+				.andExpect(status().isUnauthorized())
+				.andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE,
+						startsWith("Basic")));
+		mockMvc.perform(get("/api/members").header(HttpHeaders.AUTHORIZATION,
+				basic("user", "password")))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/api/members").header(HttpHeaders.AUTHORIZATION,
+				basic("user", "wrong")))
+				.andExpect(status().isUnauthorized());
+	}
+
+	@Test
+	void apiDoesNotCreateSession() throws Exception {
+		MvcResult apiKeyResult = mockMvc.perform(get("/api/members")
+				.header(ApiKeyAuthenticationFilter.HEADER_NAME, API_KEY))
+				.andExpect(status().isOk())
+				.andReturn();
+		assertNull(apiKeyResult.getRequest().getSession(false));
+
+		MvcResult basicResult = mockMvc.perform(get("/api/members")
+				.header(HttpHeaders.AUTHORIZATION, basic("user", "password")))
+				.andExpect(status().isOk())
+				.andReturn();
+		assertNull(basicResult.getRequest().getSession(false));
+	}
+
+	@Test
+	void screensStillRequireFormLogin() throws Exception {
+		mockMvc.perform(get("/"))
+				.andExpect(status().is3xxRedirection())
+				.andExpect(redirectedUrlPattern("**/login"));
+		//APIキー・Basic認証は画面の認証には使用できない
+		mockMvc.perform(get("/").header(ApiKeyAuthenticationFilter.HEADER_NAME, API_KEY))
+				.andExpect(status().is3xxRedirection())
+				.andExpect(redirectedUrlPattern("**/login"));
+		mockMvc.perform(get("/member/search").header(HttpHeaders.AUTHORIZATION,
+				basic("user", "password")))
+				.andExpect(status().is3xxRedirection())
+				.andExpect(redirectedUrlPattern("**/login"));
+	}
+
+	@Test
+	void unknownFieldIsBadRequest() throws Exception {
+		mockMvc.perform(apiGet("/api/members?fields=memberId,password"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/charges?fields=unknown"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/members?fields=memberId,name"))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void unknownSortColumnIsBadRequest() throws Exception {
+		mockMvc.perform(apiGet("/api/members?column=password"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/charges?column=unknown"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/members?sortDirection=UP"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/members?column=name&sortDirection=desc"))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void pageSizeOutOfRangeIsBadRequest() throws Exception {
+		mockMvc.perform(apiGet("/api/members?size=0"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/members?size=" + (ApiPaging.MAX_PAGE_SIZE + 1)))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(apiGet("/api/members?size=" + ApiPaging.MAX_PAGE_SIZE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.pageSize").value(ApiPaging.MAX_PAGE_SIZE));
+	}
+
+	private static RequestBuilder apiGet(String uri) {
+		return get(uri).header(ApiKeyAuthenticationFilter.HEADER_NAME, API_KEY);
+	}
+
+	private static String basic(String username, String password) {
+		return "Basic " + Base64.getEncoder().encodeToString(
+				(username + ":" + password).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,163 @@
+package com.s_giken.training.webapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import com.s_giken.training.webapp.model.entity.ImportResult;
+import com.s_giken.training.webapp.model.entity.Member;
+import com.s_giken.training.webapp.repository.MemberRepository;
+
+/**
+ * CSV取込(CsvImportService)のテスト
+ *
+ * 正しい行と不正な行が混在する加入者のCSVを取り込み、不正な行が行番号付きで記録されること、
+ * 正しい行がCHUNK_SIZE件ずつ登録され会員番号が採番されること、登録に失敗したチャンクは全行が
+ * 取り込めなかった行になることを確認する。
+ * 登録の失敗は、列の長さ(255文字)を超えるメールアドレスをデータベースに拒否させて発生させる。
+ */
+@SpringBootTest
+class CsvImportServiceTests {
+	private static final String MEMBER_HEADER =
+			"mail,name,address,start_date,end_date,payment_method";
+
+	/** データ行の件数(見出しを除く。データ行nはCSVのn+1行目) */
+	private static final int ROW_COUNT = 130;
+
+	/** 入力チェックで不正となるデータ行 */
+	private static final List<Integer> INVALID_ROWS = List.of(3, 10, 20, 30);
+
+	/** 登録に失敗させるデータ行(2つ目のチャンクに含まれる) */
+	private static final int UNSAVABLE_ROW = 70;
+
+	@Autowired
+	private CsvImportService csvImportService;
+
+	@Autowired
+	private MemberRepository memberRepository;
+
+	@SpyBean
+	private MemberService memberService;
+
+	private final List<Integer> chunkSizes = new ArrayList<>();
+
+	@BeforeEach
+	void recordChunkSizes() {
+		memberRepository.deleteAll();
+		doAnswer(invocation -> {
+			chunkSizes.add(invocation.<List<Member>>getArgument(0).size());
+			return invocation.callRealMethod();
+		}).when(memberService).saveAll(anyList());
+	}
+
+	@AfterEach
+	void deleteMembers() {
+		memberRepository.deleteAll();
+	}
+
+	@Test
+	void importsValidRowsAndReportsRejectedRows() throws Exception {
+		ImportResult result = csvImportService.importMembers(csv(memberCsv()));
+
+		//不正な4行を除いた126行を50件・50件・26件で登録し、2つ目のチャンクは登録に失敗する
+		assertEquals(List.of(50, 50, 26), chunkSizes);
+		assertEquals(ROW_COUNT, result.getProcessedCount());
+		assertEquals(50 + 26, result.getImportedCount());
+		assertEquals(INVALID_ROWS.size() + 50, result.getRejectedCount());
+
+		List<ImportResult.RejectedRow> rejectedRows = result.getRejectedRows();
+		assertEquals(List.of(4L, 11L, 21L, 31L), rejectedRows.subList(0, 4).stream()
+				.map(ImportResult.RejectedRow::lineNumber).toList());
+		assertTrue(rejectedRows.get(0).message().startsWith("start_date: "));
+		assertTrue(rejectedRows.get(1).message().startsWith("項目数が正しくありません。"));
+		assertTrue(rejectedRows.get(2).message().startsWith("name: "));
+		assertTrue(rejectedRows.get(3).message().startsWith("payment_method: "));
+
+		//2つ目のチャンク(データ行55～104)は全行が取り込めなかった行になる
+		List<ImportResult.RejectedRow> failedChunk = rejectedRows.subList(4, rejectedRows.size());
+		assertEquals(LongStream.rangeClosed(56, 105).boxed().toList(), failedChunk.stream()
+				.map(ImportResult.RejectedRow::lineNumber).toList());
+		assertTrue(failedChunk.stream()
+				.allMatch(row -> row.message().startsWith("登録に失敗しました。")));
+
+		//登録されたのは1つ目・3つ目のチャンクの行のみで、会員番号は重複なく採番される
+		List<Member> members = memberRepository.findAll();
+		Set<String> expectedMails = IntStream.rangeClosed(1, ROW_COUNT)
+				.filter(row -> row <= 54 || row >= 105)
+				.filter(row -> !INVALID_ROWS.contains(row))
+				.mapToObj(CsvImportServiceTests::mail)
+				.collect(Collectors.toSet());
+		assertEquals(expectedMails,
+				members.stream().map(Member::getMail).collect(Collectors.toSet()));
+		assertTrue(members.stream().allMatch(member -> member.getMemberNum() > 0));
+		assertEquals(members.size(),
+				members.stream().map(Member::getMemberNum).distinct().count());
+	}
+
+	@Test
+	void wrongHeaderIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> csvImportService.importMembers(
+				csv("mail,name,address,start_date,payment_method\n")));
+		assertThrows(IllegalArgumentException.class,
+				() -> csvImportService.importMembers(csv("")));
+		assertTrue(chunkSizes.isEmpty());
+		assertEquals(0, memberRepository.count());
+	}
+
+	@Test
+	void headerWithSpacesIsAccepted() throws Exception {
+		ImportResult result = csvImportService.importMembers(csv(
+				" mail , name , address , start_date , end_date , payment_method \n"
+						+ mail(1) + ",加入者1,東京都,2023-04-01,,1\n"
+						+ "\n"));
+		//空行は読み飛ばす
+		assertEquals(1, result.getProcessedCount());
+		assertEquals(1, result.getImportedCount());
+		assertEquals(0, result.getRejectedCount());
+		assertEquals(List.of(1), chunkSizes);
+	}
+
+	/**
+	 * 正しい行と不正な行が混在する加入者のCSVを作成する
+	 */
+	private static String memberCsv() {
+		StringBuilder csv = new StringBuilder(MEMBER_HEADER).append('\n');
+		for (int row = 1; row <= ROW_COUNT; row++) {
+			String line = switch (row) {
+				case 3 -> mail(row) + ",加入者3,東京都,2023/04/01,,1";
+				case 10 -> mail(row) + ",加入者10,東京都,2023-04-01,";
+				case 20 -> mail(row) + ", ,東京都,2023-04-01,,1";
+				case 30 -> mail(row) + ",加入者30,東京都,2023-04-01,,abc";
+				case UNSAVABLE_ROW -> "x".repeat(300) + "@example.com,加入者70,東京都,2023-04-01,,1";
+				default -> mail(row) + ",加入者" + row + ",東京都,2023-04-01,2024-03-31,"
+						+ (row % 3 + 1);
+			};
+			csv.append(line).append('\n');
+		}
+		return csv.toString();
+	}
+
+	private static String mail(int row) {
+		return String.format("import%03d@example.com", row);
+	}
+
+	private static InputStream csv(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
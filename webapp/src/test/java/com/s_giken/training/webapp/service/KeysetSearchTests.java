@@ -0,0 +1,206 @@
+package com.s_giken.training.webapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import com.s_giken.training.webapp.model.entity.Member;
+import com.s_giken.training.webapp.model.entity.MemberSearchCondition;
+import com.s_giken.training.webapp.model.entity.SearchResultPage;
+import com.s_giken.training.webapp.repository.MemberRepository;
+
+/**
+ * 検索結果のキーセット方式のページ分割(KeysetSearch)のテスト
+ *
+ * 加入者の検索(MemberService)から、1ページの件数(PAGE_SIZE)より多い加入者で次へ・前へのページ移動を確認する。
+ * 期待値は同じ並び順で全件を取得した結果から作成する。
+ */
+@SpringBootTest
+class KeysetSearchTests {
+	/** 加入者の件数(50件・50件・20件の3ページ) */
+	private static final int MEMBER_COUNT = KeysetSearch.PAGE_SIZE * 2 + 20;
+
+	@Autowired
+	private MemberService memberService;
+
+	@Autowired
+	private MemberRepository memberRepository;
+
+	@BeforeEach
+	void insertMembers() {
+		memberRepository.deleteAll();
+		List<Member> members = new ArrayList<>();
+		for (int i = 1; i <= MEMBER_COUNT; i++) {
+			Member member = new Member();
+			member.setMemberNum(i);
+			member.setMail(String.format("member%03d@example.com", i));
+			//同じ氏名の加入者が複数ある(並び替え項目が一意でない)
+			member.setName("加入者" + (i % 4));
+			member.setAddress("東京都");
+			member.setStartDate(Date.valueOf("2023-04-01"));
+			//半数は終了日がnull(OFFSETによるページ分割)
+			member.setEndDate(i % 2 == 0 ? null : Date.valueOf("2024-03-31"));
+			member.setPaymentMethod(1);
+			members.add(member);
+		}
+		memberRepository.saveAll(members);
+	}
+
+	@AfterEach
+	void deleteMembers() {
+		memberRepository.deleteAll();
+	}
+
+	@Test
+	void idAscendingRoundTrip() {
+		assertRoundTrip("memberId", "ASC");
+	}
+
+	@Test
+	void idDescendingRoundTrip() {
+		assertRoundTrip("memberId", "DESC");
+	}
+
+	@Test
+	void nonUniqueColumnAscendingRoundTrip() {
+		assertRoundTrip("name", "ASC");
+	}
+
+	@Test
+	void nonUniqueColumnDescendingRoundTrip() {
+		assertRoundTrip("name", "DESC");
+	}
+
+	@Test
+	void nullableColumnUsesOffsetPaging() {
+		List<Integer> expected = expectedIds("endDate", "ASC");
+		List<Integer> actual = new ArrayList<>();
+		for (int page = 0; page < 3; page++) {
+			//OFFSET方式では基準の行のIDは使用せず、ページ番号で取得する
+			SearchResultPage<Member> result = memberService.findByConditions(
+					condition("endDate", "ASC", page, 1, null));
+			assertEquals(page, result.getPage());
+			assertEquals(MEMBER_COUNT, result.getCount());
+			assertEquals(page > 0, result.isHasPrevious());
+			assertEquals(page < 2, result.isHasNext());
+			actual.addAll(ids(result));
+		}
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void previousPageResetsToFirstPageWhenEarlierRowsAreDeleted() {
+		List<Integer> expected = expectedIds("name", "ASC");
+		SearchResultPage<Member> firstPage =
+				memberService.findByConditions(condition("name", "ASC", 0, null, null));
+		SearchResultPage<Member> secondPage = memberService.findByConditions(
+				condition("name", "ASC", 1, lastId(firstPage), null));
+		assertEquals(1, secondPage.getPage());
+
+		//2ページ目を表示している間に、1ページ目の加入者が10件削除された
+		memberRepository.deleteAllById(expected.subList(0, 10));
+
+		//前へ: 基準の行より前は40件のみのため、最初のページとして表示する
+		SearchResultPage<Member> previous = memberService.findByConditions(
+				condition("name", "ASC", 0, null, firstId(secondPage)));
+		assertEquals(expected.subList(10, KeysetSearch.PAGE_SIZE), ids(previous));
+		assertEquals(0, previous.getPage());
+		assertFalse(previous.isHasPrevious());
+		assertTrue(previous.isHasNext());
+		assertEquals(MEMBER_COUNT - 10, previous.getCount());
+
+		//ページ番号が実際より大きく指定されても、前のページが無ければ最初のページに戻る
+		previous = memberService.findByConditions(
+				condition("name", "ASC", 5, null, firstId(secondPage)));
+		assertEquals(0, previous.getPage());
+		assertFalse(previous.isHasPrevious());
+	}
+
+	@Test
+	void deletedAnchorFallsBackToFirstPage() {
+		List<Integer> expected = expectedIds("memberId", "ASC");
+		SearchResultPage<Member> firstPage =
+				memberService.findByConditions(condition("memberId", "ASC", 0, null, null));
+		int anchorId = lastId(firstPage);
+		memberRepository.deleteById(anchorId);
+
+		//次へ・前への基準の行が削除されている場合は最初のページを表示する
+		for (MemberSearchCondition condition : List.of(
+				condition("memberId", "ASC", 1, anchorId, null),
+				condition("memberId", "ASC", 1, null, anchorId))) {
+			SearchResultPage<Member> result = memberService.findByConditions(condition);
+			assertEquals(0, result.getPage());
+			assertFalse(result.isHasPrevious());
+			assertTrue(result.isHasNext());
+			assertEquals(expected.subList(0, KeysetSearch.PAGE_SIZE - 1),
+					ids(result).subList(0, KeysetSearch.PAGE_SIZE - 1));
+			assertEquals(expected.get(KeysetSearch.PAGE_SIZE), lastId(result));
+		}
+	}
+
+	/**
+	 * 最初のページから次へで最後のページまで移動した後、前へで最初のページまで戻り、
+	 * 全件の並び順と一致すること・前後で同じページが表示されることを確認する
+	 */
+	private void assertRoundTrip(String column, String sortDirection) {
+		List<SearchResultPage<Member>> pages = new ArrayList<>();
+		SearchResultPage<Member> result =
+				memberService.findByConditions(condition(column, sortDirection, 0, null, null));
+		pages.add(result);
+		while (result.isHasNext()) {
+			result = memberService.findByConditions(condition(column, sortDirection,
+					result.getPage() + 1, lastId(result), null));
+			pages.add(result);
+		}
+
+		assertEquals(3, pages.size());
+		List<Integer> forward = new ArrayList<>();
+		for (int page = 0; page < pages.size(); page++) {
+			assertEquals(page, pages.get(page).getPage());
+			assertEquals(page > 0, pages.get(page).isHasPrevious());
+			assertEquals(MEMBER_COUNT, pages.get(page).getCount());
+			forward.addAll(ids(pages.get(page)));
+		}
+		assertEquals(expectedIds(column, sortDirection), forward);
+
+		for (int page = pages.size() - 1; page > 0; page--) {
+			SearchResultPage<Member> previous = memberService.findByConditions(condition(
+					column, sortDirection, page - 1, null, firstId(pages.get(page))));
+			assertEquals(ids(pages.get(page - 1)), ids(previous));
+			assertEquals(page - 1, previous.getPage());
+			assertEquals(page - 1 > 0, previous.isHasPrevious());
+			assertTrue(previous.isHasNext());
+		}
+	}
+
+	private List<Integer> expectedIds(String column, String sortDirection) {
+		Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+		return memberRepository.findAll(Sort.by(direction, column).and(Sort.by(direction,
+				"memberId"))).stream().map(Member::getMemberId).toList();
+	}
+
+	private static MemberSearchCondition condition(String column, String sortDirection,
+			int page, Integer after, Integer before) {
+		return new MemberSearchCondition("", "", sortDirection, column, page, after, before);
+	}
+
+	private static List<Integer> ids(SearchResultPage<Member> page) {
+		return page.getContent().stream().map(Member::getMemberId).toList();
+	}
+
+	private static int firstId(SearchResultPage<Member> page) {
+		return page.getContent().get(0).getMemberId();
+	}
+
+	private static int lastId(SearchResultPage<Member> page) {
+		return page.getContent().get(page.getContent().size() - 1).getMemberId();
+	}
+}
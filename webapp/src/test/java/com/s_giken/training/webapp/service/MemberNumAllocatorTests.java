@@ -0,0 +1,101 @@
+package com.s_giken.training.webapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.s_giken.training.webapp.model.entity.Member;
+import com.s_giken.training.webapp.repository.MemberRepository;
+
+/**
+ * 会員番号の採番(MemberNumAllocator)のテスト
+ *
+ * シーケンスを作成し直すため、他のテストとは別のデータベースを使用し、テストごとに新しい採番クラスで確認する
+ * (アプリケーションコンテキストの採番クラスは、作成済みのシーケンスを前提に番号を払い出すため使用しない)。
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:membernumtest;DB_CLOSE_DELAY=-1")
+class MemberNumAllocatorTests {
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MemberRepository memberRepository;
+
+	@BeforeEach
+	void dropSequence() {
+		memberRepository.deleteAll();
+		jdbcTemplate.execute("DROP SEQUENCE IF EXISTS MEMBER_NUM_SEQ");
+	}
+
+	@Test
+	void concurrentCallsReturnUniqueContiguousNumbers() throws Exception {
+		MemberNumAllocator allocator = new MemberNumAllocator(jdbcTemplate, memberRepository);
+		int threads = 16;
+		int callsPerThread = 250;
+		CountDownLatch startSignal = new CountDownLatch(1);
+		List<Future<List<Integer>>> futures = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					startSignal.await();
+					List<Integer> memberNums = new ArrayList<>(callsPerThread);
+					for (int j = 0; j < callsPerThread; j++) {
+						memberNums.add(allocator.next());
+					}
+					return memberNums;
+				}));
+			}
+			startSignal.countDown();
+
+			List<Integer> allMemberNums = new ArrayList<>();
+			for (Future<List<Integer>> future : futures) {
+				List<Integer> memberNums = future.get();
+				//1つのスレッドが払い出しを受けた番号は昇順になる
+				assertEquals(memberNums.stream().sorted().toList(), memberNums);
+				allMemberNums.addAll(memberNums);
+			}
+
+			//重複・欠番なく1から払い出され、各ブロック(50件)の番号がすべて使用される
+			int total = threads * callsPerThread;
+			assertEquals(IntStream.rangeClosed(1, total).boxed().toList(),
+					allMemberNums.stream().sorted().toList());
+			//シーケンスはブロックごとに1回だけ進められる
+			assertEquals(total + 1, jdbcTemplate.queryForObject(
+					"SELECT NEXT VALUE FOR MEMBER_NUM_SEQ", Integer.class));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void sequenceStartsAfterExistingMaxMemberNum() {
+		Member member = new Member();
+		member.setMemberNum(1000);
+		member.setMail("existing@example.com");
+		member.setName("既存会員");
+		member.setAddress("東京都");
+		member.setStartDate(Date.valueOf("2023-04-01"));
+		member.setPaymentMethod(1);
+		memberRepository.save(member);
+
+		MemberNumAllocator allocator = new MemberNumAllocator(jdbcTemplate, memberRepository);
+		assertEquals(1001, allocator.next());
+		assertEquals(1002, allocator.next());
+		//次のブロックはシーケンスの増分(50件)だけ先から始まる
+		for (int i = 2; i < MemberNumAllocator.BLOCK_SIZE; i++) {
+			allocator.next();
+		}
+		assertEquals(1001 + MemberNumAllocator.BLOCK_SIZE, allocator.next());
+	}
+}